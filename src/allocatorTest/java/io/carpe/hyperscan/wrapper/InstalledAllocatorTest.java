@@ -0,0 +1,55 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.db.ChimeraDatabase;
+import io.carpe.hyperscan.db.HyperscanDatabase;
+import io.carpe.hyperscan.wrapper.flags.HyperscanModeFlag;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Installs allocators for the whole process, so memory of databases and scratch spaces left to the finalizer by other
+ * tests would be freed with the wrong allocator. Runs in a JVM of its own with the allocatorTest task.
+ */
+class InstalledAllocatorTest {
+
+    @Test
+    void memoryHandedOverByTheEngineIsFreedByItsAllocator() throws HyperscanException {
+        final TrackingAllocator misc = new TrackingAllocator();
+        Allocators.set(Allocators.Category.MISC, misc);
+
+        try (final HyperscanDatabase db = HyperscanDatabase.compile(new HyperscanExpression("penny"), HyperscanModeFlag.BLOCK)) {
+            assertThat(db.serialize()).isNotEmpty();
+            assertThat(ExpressionInfo.analyze("pen+y", 0)).isNotNull();
+
+            assertThat(misc.getAllocationCount()).isPositive();
+            assertThat(misc.getLiveBytes()).isZero();
+        } finally {
+            Allocators.set(Allocators.Category.MISC, null);
+        }
+    }
+
+    @Test
+    void chimeraDatabasesAndScratchAreFreedByTheirAllocators() throws HyperscanException {
+        final TrackingAllocator database = new TrackingAllocator();
+        final TrackingAllocator scratch = new TrackingAllocator();
+        Allocators.set(Allocators.Category.DATABASE, database);
+        Allocators.set(Allocators.Category.SCRATCH, scratch);
+
+        try {
+            try (final ChimeraDatabase db = ChimeraDatabase.compile(new ChimeraExpression("(a)\\1"));
+                 final Scanner scanner = new Scanner()) {
+                scanner.allocScratch(db);
+
+                assertThat(database.getLiveBytes()).isPositive();
+                assertThat(scratch.getLiveBytes()).isPositive();
+            }
+
+            assertThat(database.getLiveBytes()).isZero();
+            assertThat(scratch.getLiveBytes()).isZero();
+        } finally {
+            Allocators.set(Allocators.Category.DATABASE, null);
+            Allocators.set(Allocators.Category.SCRATCH, null);
+        }
+    }
+}
@@ -4,7 +4,6 @@ import io.carpe.hyperscan.wrapper.HyperscanException;
 import io.carpe.hyperscan.wrapper.flags.HyperscanBitFlag;
 
 import java.security.InvalidParameterException;
-import java.util.Arrays;
 import java.util.EnumSet;
 
 public class HyperscanUtils {
@@ -25,32 +24,28 @@ public class HyperscanUtils {
         return bitValue;
     }
 
-    public static int[] utf8ByteIndexesMapping(String s, int bytesLength) {
-        final int[] byteIndexes = new int[bytesLength];
-        int currentByte = 0;
+    /**
+     * Count the bytes of the UTF-8 encoding of a string without encoding it
+     *
+     * @param s string to measure
+     * @return count of bytes
+     */
+    public static int utf8Length(String s) {
+        int bytesLength = 0;
 
         for (int stringPosition = 0; stringPosition < s.length(); stringPosition++) {
-            final int c = s.codePointAt(stringPosition);
+            final char c = s.charAt(stringPosition);
 
-            final int unicodeCharLength;
-
-            if (c <= 0x7F) unicodeCharLength = 1;
-            else if (c <= 0x7FF) unicodeCharLength = 2;
-            else if (c <= 0xFFFF) unicodeCharLength = 3;
-            else if (c <= 0x1FFFFF) unicodeCharLength = 4;
-            else
-                throw new Error();
-
-            Arrays.fill(byteIndexes, currentByte, currentByte + unicodeCharLength, stringPosition);
-
-            currentByte += unicodeCharLength;
-
-            if (Character.charCount(c) == 2) {
+            if (c <= 0x7F) bytesLength += 1;
+            else if (c <= 0x7FF) bytesLength += 2;
+            else if (Character.isHighSurrogate(c) && stringPosition + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(stringPosition + 1))) {
+                bytesLength += 4;
                 stringPosition++;
-            }
+            } else bytesLength += 3;
         }
 
-        return byteIndexes;
+        return bytesLength;
     }
 
     public static HyperscanException hsErrorIntToException(int hsError) {
@@ -0,0 +1,131 @@
+package io.carpe.hyperscan;
+
+/**
+ * Reports compile, scratch allocation and scan operations as JDK Flight Recorder events, so the time spent in the
+ * engine shows up with its inputs instead of as an opaque native frame.
+ * <p>
+ * The events are defined in the Java 11 part of the multi-release jar and looked up reflectively. On Java 8, or
+ * while no recording has enabled an event type, operations get a shared span which does nothing. Scans are only
+ * recorded if they take longer than the threshold of the event type, 10 ms unless configured otherwise in the
+ * recording settings, like {@code io.carpe.hyperscan.Scan#threshold=1 ms}.
+ */
+public class Telemetry {
+    public static final String CHIMERA = "chimera";
+    public static final String HYPERSCAN = "hyperscan";
+
+    private static final Telemetry INSTANCE = load();
+
+    protected Telemetry() {
+    }
+
+    private static Telemetry load() {
+        try {
+            return (Telemetry) Class.forName("io.carpe.hyperscan.jfr.JfrTelemetry").getDeclaredConstructor().newInstance();
+        } catch (final ReflectiveOperationException | LinkageError e) {
+            // Java 8, or a runtime without the jdk.jfr module
+            return new Telemetry();
+        }
+    }
+
+    /**
+     * Get the telemetry of the current runtime
+     *
+     * @return Telemetry
+     */
+    public static Telemetry get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Start timing a compilation
+     *
+     * @param engine       {@link #CHIMERA} or {@link #HYPERSCAN}
+     * @param patternCount count of expressions compiled
+     * @return Span to finish once the compilation is done
+     */
+    public Span compile(String engine, int patternCount) {
+        return Span.NONE;
+    }
+
+    /**
+     * Start timing the allocation of a scratch space
+     *
+     * @param engine {@link #CHIMERA} or {@link #HYPERSCAN}
+     * @return Span to finish once the scratch space is allocated
+     */
+    public Span allocScratch(String engine) {
+        return Span.NONE;
+    }
+
+    /**
+     * Start timing a scan
+     *
+     * @param engine      {@link #CHIMERA} or {@link #HYPERSCAN}
+     * @param inputLength count of bytes of the input
+     * @return Span to finish once the scan is done
+     */
+    public Span scan(String engine, long inputLength) {
+        return Span.NONE;
+    }
+
+    /**
+     * Start timing a scan of a string, whose length is recorded in bytes of its UTF-8 encoding
+     *
+     * @param engine {@link #CHIMERA} or {@link #HYPERSCAN}
+     * @param input  String to scan
+     * @return Span to finish once the scan is done
+     */
+    public Span scan(String engine, String input) {
+        return Span.NONE;
+    }
+
+    /**
+     * A single timed operation
+     */
+    public interface Span {
+        /**
+         * Span of operations which are not recorded
+         */
+        Span NONE = new Span() {
+        };
+
+        /**
+         * Check if the operation is recorded, to skip collecting details which are expensive to get
+         *
+         * @return true if recorded, otherwise false
+         */
+        default boolean isRecording() {
+            return false;
+        }
+
+        /**
+         * Set the size of the database compiled or scanned with
+         *
+         * @param bytes count of bytes
+         */
+        default void setDatabaseSize(long bytes) {
+        }
+
+        /**
+         * Set the count of matches found
+         *
+         * @param count count of matches
+         */
+        default void setMatchCount(long count) {
+        }
+
+        /**
+         * Record the error the operation failed with
+         *
+         * @param error Throwable thrown by the operation
+         */
+        default void setError(Throwable error) {
+        }
+
+        /**
+         * Stop timing and commit the event if it passes the threshold
+         */
+        default void finish() {
+        }
+    }
+}
@@ -1,20 +1,26 @@
 package io.carpe.hyperscan.db;
 
 import io.carpe.hyperscan.HyperscanUtils;
+import io.carpe.hyperscan.Telemetry;
 import io.carpe.hyperscan.jna.ChimeraLibrary;
 import io.carpe.hyperscan.jna.CompileErrorStruct;
 import io.carpe.hyperscan.jna.HyperscanLibrary;
 import io.carpe.hyperscan.jna.SizeTByReference;
 import io.carpe.hyperscan.wrapper.ChimeraExpression;
+import io.carpe.hyperscan.wrapper.Expression;
+import io.carpe.hyperscan.wrapper.ExpressionInfo;
 import io.carpe.hyperscan.wrapper.HyperscanException;
+import com.sun.jna.NativeLong;
 import com.sun.jna.Pointer;
 import com.sun.jna.ptr.PointerByReference;
 
-import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Database containing compiled expressions ready for scanning using the Scanner.
@@ -22,18 +28,58 @@ import java.util.concurrent.atomic.AtomicInteger;
  * Make sure to remember to close after you're done using.
  * But beware, rebuilding is expensive.
  */
-public class ChimeraDatabase implements Closeable {
-    private static final int HS_MODE_BLOCK = 1048576;
+public class ChimeraDatabase implements Database {
+    static final int HS_MODE_BLOCK = 1048576;
     private static final int HS_COMPILE_ERROR = -4;
+    private static final AtomicLong VERSIONS = new AtomicLong();
     private Pointer database;
     private List<ChimeraExpression> expressions;
+    private final Runnable release;
+    private final long minWidth;
+    private final long maxWidth;
+    private final PlatformInfo platform;
+    private final long version = VERSIONS.incrementAndGet();
+    private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
 
-    private ChimeraDatabase(Pointer ch_database, List<ChimeraExpression> expressions) {
+    private ChimeraDatabase(Pointer ch_database, List<ChimeraExpression> expressions, PlatformInfo platform) {
         this.database = ch_database;
         this.expressions = expressions;
+        this.release = null;
+        this.platform = platform;
+
+        long minWidth = Long.MAX_VALUE;
+        long maxWidth = 0;
+        for (final ChimeraExpression expression : expressions) {
+            final Optional<ExpressionInfo> info = expression.getExpressionInfo();
+
+            if (info.isPresent()) {
+                minWidth = Math.min(minWidth, info.get().getMinWidth());
+                maxWidth = Math.max(maxWidth, info.get().getMaxWidth());
+            } else {
+                // only valid for chimera, its prefiltering approximation gives a lower bound
+                minWidth = Math.min(minWidth, expression.getPrefilterInfo().map(ExpressionInfo::getMinWidth).orElse(0L));
+                maxWidth = ExpressionInfo.UNBOUNDED;
+            }
+        }
+
+        this.minWidth = expressions.isEmpty() ? 0 : minWidth;
+        this.maxWidth = maxWidth;
+    }
+
+    /**
+     * Create a view on a database owned by someone else, which runs the release callback instead of freeing it
+     */
+    ChimeraDatabase(ChimeraDatabase owner, List<ChimeraExpression> expressions, Runnable release) {
+        this.database = owner.database;
+        this.expressions = expressions;
+        this.release = release;
+        this.minWidth = owner.minWidth;
+        this.maxWidth = owner.maxWidth;
+        this.platform = owner.platform;
     }
 
-    private static void handleErrors(int chError, Pointer compileError, List<ChimeraExpression> expressions) throws HyperscanException {
+    static void handleErrors(int chError, Pointer compileError, List<? extends Expression> expressions) throws HyperscanException {
         if (chError == 0)
             return;
 
@@ -62,18 +108,30 @@ public class ChimeraDatabase implements Closeable {
      * @throws HyperscanException CompileErrorException on errors concerning the pattern, otherwise different Throwable's
      */
     public static ChimeraDatabase compile(ChimeraExpression expression) throws HyperscanException {
+        return compile(expression, null);
+    }
+
+    /**
+     * compile an expression into a database to use for scanning on a different platform
+     *
+     * @param expression HyperscanExpression to compile
+     * @param platform   target platform, or null for the current host
+     * @return Compiled database
+     * @throws HyperscanException CompileErrorException on errors concerning the pattern, otherwise different Throwable's
+     */
+    public static ChimeraDatabase compile(ChimeraExpression expression, PlatformInfo platform) throws HyperscanException {
         final PointerByReference database = new PointerByReference();
         final PointerByReference error = new PointerByReference();
 
         int hsError = ChimeraLibrary.INSTANCE.ch_compile(expression.getExpression(),
-                HyperscanUtils.bitEnumSetToInt(expression.getFlags()), HS_MODE_BLOCK, Pointer.NULL, database, error);
+                HyperscanUtils.bitEnumSetToInt(expression.getFlags()), HS_MODE_BLOCK, platformPointer(platform), database, error);
 
         ArrayList<ChimeraExpression> expressions = new ArrayList<ChimeraExpression>(1);
         expressions.add(expression);
 
         handleErrors(hsError, error.getValue(), expressions);
 
-        return new ChimeraDatabase(database.getValue(), expressions);
+        return new ChimeraDatabase(database.getValue(), expressions, platform);
     }
 
     /**
@@ -84,19 +142,102 @@ public class ChimeraDatabase implements Closeable {
      * @throws HyperscanException CompileErrorException on errors concerning the pattern, otherwise different Throwable's
      */
     public static ChimeraDatabase compile(Collection<ChimeraExpression> expressions) throws HyperscanException {
+        return compile(expressions, null);
+    }
+
+    /**
+     * compile expressions into a database to use for scanning on a different platform
+     *
+     * @param expressions HyperscanExpression to compile
+     * @param platform    target platform, or null for the current host
+     * @return Compiled database
+     * @throws HyperscanException CompileErrorException on errors concerning the pattern, otherwise different Throwable's
+     */
+    public static ChimeraDatabase compile(Collection<ChimeraExpression> expressions, PlatformInfo platform) throws HyperscanException {
+        final Telemetry.Span span = Telemetry.get().compile(Telemetry.CHIMERA, expressions.size());
+
+        try {
+            return recorded(span, compileUnrecorded(expressions, platform));
+        } catch (final HyperscanException | RuntimeException e) {
+            span.setError(e);
+            throw e;
+        } finally {
+            span.finish();
+        }
+    }
 
+    private static ChimeraDatabase compileUnrecorded(Collection<ChimeraExpression> expressions, PlatformInfo platform) throws HyperscanException {
         final ExpressionGroup expressionGroup = cifyExpressions(expressions);
 
         final PointerByReference database = new PointerByReference();
         final PointerByReference error = new PointerByReference();
 
         final int hsError = ChimeraLibrary.INSTANCE.ch_compile_multi(expressionGroup.expressions,
-                expressionGroup.flags, expressionGroup.ids, expressionGroup.size, HS_MODE_BLOCK, Pointer.NULL, database, error);
+                expressionGroup.flags, expressionGroup.ids, expressionGroup.size, HS_MODE_BLOCK, platformPointer(platform), database, error);
 
         ArrayList<ChimeraExpression> compiledExpressions = new ArrayList<>(expressions);
         handleErrors(hsError, error.getValue(), compiledExpressions);
 
-        return new ChimeraDatabase(database.getValue(), compiledExpressions);
+        return new ChimeraDatabase(database.getValue(), compiledExpressions, platform);
+    }
+
+    /**
+     * compile expressions into a database whose PCRE confirmation is bounded by match limits, which caps the time
+     * a pathological expression can take per scan. Expressions exceeding a limit are skipped for the rest of the scan
+     * and reported by {@link io.carpe.hyperscan.wrapper.ScanResult#getLimitedExpressions()}.
+     *
+     * @param expressions         ChimeraExpressions to compile
+     * @param matchLimit          maximum count of PCRE backtracking steps per match attempt
+     * @param matchLimitRecursion maximum PCRE recursion depth per match attempt
+     * @param platform            target platform, or null for the current host
+     * @return Compiled database
+     * @throws HyperscanException CompileErrorException on errors concerning the pattern, otherwise different Throwable's
+     */
+    public static ChimeraDatabase compile(Collection<ChimeraExpression> expressions, long matchLimit,
+                                          long matchLimitRecursion, PlatformInfo platform) throws HyperscanException {
+        if (matchLimit < 1 || matchLimitRecursion < 1) {
+            throw new IllegalArgumentException("Match limits must be positive");
+        }
+
+        final Telemetry.Span span = Telemetry.get().compile(Telemetry.CHIMERA, expressions.size());
+
+        try {
+            return recorded(span, compileUnrecorded(expressions, matchLimit, matchLimitRecursion, platform));
+        } catch (final HyperscanException | RuntimeException e) {
+            span.setError(e);
+            throw e;
+        } finally {
+            span.finish();
+        }
+    }
+
+    private static ChimeraDatabase compileUnrecorded(Collection<ChimeraExpression> expressions, long matchLimit,
+                                                     long matchLimitRecursion, PlatformInfo platform) throws HyperscanException {
+        final ExpressionGroup expressionGroup = cifyExpressions(expressions);
+
+        final PointerByReference database = new PointerByReference();
+        final PointerByReference error = new PointerByReference();
+
+        final int hsError = ChimeraLibrary.INSTANCE.ch_compile_ext_multi(expressionGroup.expressions,
+                expressionGroup.flags, expressionGroup.ids, expressionGroup.size, HS_MODE_BLOCK,
+                new NativeLong(matchLimit), new NativeLong(matchLimitRecursion), platformPointer(platform), database, error);
+
+        ArrayList<ChimeraExpression> compiledExpressions = new ArrayList<>(expressions);
+        handleErrors(hsError, error.getValue(), compiledExpressions);
+
+        return new ChimeraDatabase(database.getValue(), compiledExpressions, platform);
+    }
+
+    private static ChimeraDatabase recorded(Telemetry.Span span, ChimeraDatabase database) {
+        if (span.isRecording()) {
+            span.setDatabaseSize(database.getSize());
+        }
+
+        return database;
+    }
+
+    static Pointer platformPointer(PlatformInfo platform) {
+        return platform == null ? Pointer.NULL : platform.toStruct().getPointer();
     }
 
     private static ExpressionGroup cifyExpressions(Collection<ChimeraExpression> expressions) {
@@ -121,6 +262,35 @@ public class ChimeraDatabase implements Closeable {
         return database;
     }
 
+    /**
+     * Get the minimum count of bytes an input needs to have to be matched by any of the expressions.
+     * Shorter inputs are skipped by the Scanner without calling into the engine.
+     *
+     * @return count of bytes, zero if any expression can match an empty input
+     */
+    public long getMinWidth() {
+        return minWidth;
+    }
+
+    /**
+     * Get the platform the database was compiled for
+     *
+     * @return target platform
+     * @throws HyperscanException if the database was compiled for the host and its platform is not supported
+     */
+    public PlatformInfo getPlatformInfo() throws HyperscanException {
+        return platform != null ? platform : PlatformInfo.host();
+    }
+
+    /**
+     * Get the maximum width of a match of any of the expressions
+     *
+     * @return count of bytes, or {@link ExpressionInfo#UNBOUNDED} if unknown or unbounded
+     */
+    public long getMaxWidth() {
+        return maxWidth;
+    }
+
     /**
      * Get the database size in bytes
      *
@@ -139,11 +309,52 @@ public class ChimeraDatabase implements Closeable {
     @Override
     protected void finalize() {
         if (database != null) {
-            HyperscanLibrary.INSTANCE.hs_free_database(database);
+            closed = true;
+            runCloseListeners();
+
+            if (release != null) {
+                release.run();
+            } else {
+                ChimeraLibrary.INSTANCE.ch_free_database(database);
+            }
             database = null;
         }
     }
 
+    /**
+     * Get the version of the database, unique among all databases of the JVM. Results cached for one database
+     * are never mistaken for those of a database replacing it.
+     *
+     * @return version number
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Register a callback run when the database is closed, for example to drop results cached for it.
+     * If the database has already been closed, the callback is run right away.
+     *
+     * @param listener callback to run once
+     */
+    public void addCloseListener(Runnable listener) {
+        closeListeners.add(listener);
+
+        if (closed) {
+            // closed meanwhile, the close may have missed the listener
+            runCloseListeners();
+        }
+    }
+
+    private void runCloseListeners() {
+        for (final Runnable listener : closeListeners) {
+            // whoever removes a listener runs it, so it runs exactly once
+            if (closeListeners.remove(listener)) {
+                listener.run();
+            }
+        }
+    }
+
     public ChimeraExpression getExpression(int id) {
         return expressions.get(id);
     }
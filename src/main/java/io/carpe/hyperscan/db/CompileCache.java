@@ -0,0 +1,277 @@
+package io.carpe.hyperscan.db;
+
+import io.carpe.hyperscan.HyperscanUtils;
+import io.carpe.hyperscan.wrapper.ChimeraExpression;
+import io.carpe.hyperscan.wrapper.HyperscanException;
+import io.carpe.hyperscan.wrapper.flags.ChimeraExpressionFlag;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process cache sharing compiled databases between callers compiling equal expression sets.
+ * <p>
+ * Expressions are normalized first: leading inline options like {@code (?i)} are folded into the flags and
+ * equivalent expressions are deduplicated, so every distinct expression is compiled and reported only once.
+ * Sets are keyed by a canonical hash of the normalized expressions, independent of their order, and all callers
+ * asking for an equal set share one native database. It is freed when the last caller closes its database.
+ * <p>
+ * Every caller gets its own {@link ChimeraDatabase} view, so matches resolve to the caller's own expression objects
+ * and contexts. Of deduplicated expressions, matches resolve to the first one in the caller's collection.
+ * Instances can be shared between threads.
+ */
+public class CompileCache {
+    private static final Pattern LEADING_OPTIONS = Pattern.compile("^\\(\\?([ism]+)\\)");
+
+    private final Map<String, Shared> databases = new HashMap<>();
+
+    /**
+     * compile a collection of expressions into a database, or share the database of an equal set
+     *
+     * @param expressions ChimeraExpressions to compile
+     * @return Database view, close it like any other database
+     * @throws HyperscanException CompileErrorException on errors concerning the pattern, otherwise different Throwable's
+     */
+    public ChimeraDatabase compile(Collection<ChimeraExpression> expressions) throws HyperscanException {
+        final TreeMap<CanonicalExpression, ChimeraExpression> canonical = canonicalize(expressions);
+        final String key = hash(canonical.keySet());
+
+        final Shared shared;
+        final boolean compiling;
+
+        synchronized (this) {
+            final Shared cached = databases.get(key);
+            compiling = cached == null;
+            shared = compiling ? new Shared() : cached;
+            shared.references++;
+
+            if (compiling) {
+                databases.put(key, shared);
+            }
+        }
+
+        if (compiling) {
+            canonical.keySet().forEach(expression -> shared.normalizedExpressions.add(expression.toExpression()));
+
+            try {
+                shared.database.complete(ChimeraDatabase.compile(shared.normalizedExpressions));
+            } catch (final HyperscanException | RuntimeException e) {
+                shared.database.completeExceptionally(e);
+            }
+        }
+
+        final ChimeraDatabase database;
+        try {
+            database = shared.database.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            release(key, shared);
+            throw new HyperscanException("Interrupted while waiting for compilation", e);
+        } catch (final ExecutionException e) {
+            release(key, shared);
+
+            if (e.getCause() instanceof CompileErrorException) {
+                // report the failed expression of this caller rather than the normalized one,
+                // equal sets are compiled in the same canonical order
+                final CompileErrorException error = (CompileErrorException) e.getCause();
+                final int failed = shared.normalizedExpressions.indexOf(error.getFailedExpression());
+                throw new CompileErrorException(error.getMessage(), failed < 0
+                        ? error.getFailedExpression()
+                        : new ArrayList<>(canonical.values()).get(failed));
+            }
+
+            if (e.getCause() instanceof HyperscanException) {
+                throw (HyperscanException) e.getCause();
+            }
+
+            throw (RuntimeException) e.getCause();
+        }
+
+        return new ChimeraDatabase(database, new ArrayList<>(canonical.values()), () -> release(key, shared));
+    }
+
+    private void release(String key, Shared shared) {
+        final ChimeraDatabase closing;
+
+        synchronized (this) {
+            shared.references--;
+
+            if (shared.references > 0) {
+                return;
+            }
+
+            databases.remove(key, shared);
+            closing = shared.database.isDone() && !shared.database.isCompletedExceptionally()
+                    ? shared.database.join()
+                    : null;
+        }
+
+        if (closing != null) {
+            try {
+                closing.close();
+            } catch (final HyperscanException ignored) {
+                // the native memory is gone either way
+            }
+        }
+    }
+
+    /**
+     * Get the count of distinct expression sets currently compiled
+     *
+     * @return count of shared databases
+     */
+    public synchronized int size() {
+        return databases.size();
+    }
+
+    /**
+     * Get the canonical hash of an expression set, equal for sets compiling to the same database regardless of the
+     * order of the expressions and of duplicates. Useful as a key for a {@link DatabaseRegistry}.
+     *
+     * @param expressions ChimeraExpressions to hash
+     * @return hex encoded SHA-256 hash
+     */
+    public static String canonicalHash(Collection<ChimeraExpression> expressions) {
+        return hash(canonicalize(expressions).keySet());
+    }
+
+    private static TreeMap<CanonicalExpression, ChimeraExpression> canonicalize(Collection<ChimeraExpression> expressions) {
+        final TreeMap<CanonicalExpression, ChimeraExpression> canonical = new TreeMap<>();
+
+        for (final ChimeraExpression expression : expressions) {
+            canonical.putIfAbsent(CanonicalExpression.of(expression), expression);
+        }
+
+        return canonical;
+    }
+
+    private static String hash(Collection<CanonicalExpression> expressions) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required to be supported by every JVM", e);
+        }
+
+        digest.update(Integer.toString(ChimeraDatabase.HS_MODE_BLOCK).getBytes(StandardCharsets.UTF_8));
+        for (final CanonicalExpression expression : expressions) {
+            digest.update((byte) 0);
+            digest.update(Integer.toString(expression.flags).getBytes(StandardCharsets.UTF_8));
+            if (expression.javaFlags != 0) {
+                digest.update(("/" + expression.javaFlags).getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) 0);
+            digest.update(expression.expression.getBytes(StandardCharsets.UTF_8));
+        }
+
+        final StringBuilder hex = new StringBuilder();
+        for (final byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+
+        return hex.toString();
+    }
+
+    private static class Shared {
+        private final CompletableFuture<ChimeraDatabase> database = new CompletableFuture<>();
+        private final List<ChimeraExpression> normalizedExpressions = new ArrayList<>();
+        private int references;
+    }
+
+    /**
+     * Expression string and compile flags of an expression, with leading inline options folded into the flags.
+     * Flags only used on the Java side, like {@link ChimeraExpressionFlag#EXTRACT_MATCHED}, are kept apart as they
+     * have no native bits, but expressions differing in them are still distinct.
+     */
+    private static class CanonicalExpression implements Comparable<CanonicalExpression> {
+        private static final Map<Character, ChimeraExpressionFlag> INLINE_OPTIONS = new LinkedHashMap<>();
+
+        static {
+            INLINE_OPTIONS.put('i', ChimeraExpressionFlag.CASELESS);
+            INLINE_OPTIONS.put('s', ChimeraExpressionFlag.DOTALL);
+            INLINE_OPTIONS.put('m', ChimeraExpressionFlag.MULTILINE);
+        }
+
+        private final String expression;
+        private final int flags;
+        private final int javaFlags;
+
+        private CanonicalExpression(String expression, int flags, int javaFlags) {
+            this.expression = expression;
+            this.flags = flags;
+            this.javaFlags = javaFlags;
+        }
+
+        static CanonicalExpression of(ChimeraExpression expression) {
+            String pattern = expression.getExpression();
+            final EnumSet<ChimeraExpressionFlag> flags = EnumSet.noneOf(ChimeraExpressionFlag.class);
+            flags.addAll(expression.getFlags());
+
+            // options set at the very start of the top level apply to the whole pattern, just like flags
+            final Matcher options = LEADING_OPTIONS.matcher(pattern);
+            if (options.find()) {
+                for (final char option : options.group(1).toCharArray()) {
+                    flags.add(INLINE_OPTIONS.get(option));
+                }
+                pattern = pattern.substring(options.end());
+            }
+
+            int javaFlags = 0;
+            for (final ChimeraExpressionFlag flag : flags) {
+                if (flag.getBits() == null) {
+                    javaFlags |= 1 << flag.ordinal();
+                }
+            }
+
+            return new CanonicalExpression(pattern, HyperscanUtils.bitEnumSetToInt(flags), javaFlags);
+        }
+
+        ChimeraExpression toExpression() {
+            final EnumSet<ChimeraExpressionFlag> flagSet = EnumSet.noneOf(ChimeraExpressionFlag.class);
+            for (final ChimeraExpressionFlag flag : ChimeraExpressionFlag.values()) {
+                if (flag.getBits() != null ? (flags & flag.getBits()) != 0 : (javaFlags & 1 << flag.ordinal()) != 0) {
+                    flagSet.add(flag);
+                }
+            }
+
+            return new ChimeraExpression(expression, flagSet);
+        }
+
+        @Override
+        public int compareTo(CanonicalExpression other) {
+            final int byExpression = expression.compareTo(other.expression);
+            if (byExpression != 0)
+                return byExpression;
+
+            final int byFlags = Integer.compare(flags, other.flags);
+            return byFlags != 0 ? byFlags : Integer.compare(javaFlags, other.javaFlags);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CanonicalExpression)) return false;
+            final CanonicalExpression that = (CanonicalExpression) o;
+            return flags == that.flags && javaFlags == that.javaFlags && expression.equals(that.expression);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(expression, flags, javaFlags);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package io.carpe.hyperscan.db;
+
+import io.carpe.hyperscan.wrapper.HyperscanException;
+import com.sun.jna.Pointer;
+
+import java.io.Closeable;
+
+/**
+ * Compiled database holding native memory until it is closed
+ */
+public interface Database extends Closeable {
+
+    Pointer getPointer();
+
+    /**
+     * Get the database size in bytes
+     *
+     * @return count of bytes
+     */
+    long getSize();
+
+    @Override
+    void close() throws HyperscanException;
+}
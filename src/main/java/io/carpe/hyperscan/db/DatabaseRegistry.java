@@ -0,0 +1,308 @@
+package io.carpe.hyperscan.db;
+
+import io.carpe.hyperscan.wrapper.HyperscanException;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Registry of compiled databases, for example one per tenant or pattern set, kept within a native memory budget.
+ * <p>
+ * Databases are loaded on demand by a {@link Loader}, which may compile them or restore them from a serialized
+ * cache. Their native size is tracked with {@link Database#getSize()}, and once the budget is exceeded the least
+ * recently used databases are closed. Databases are handed out as {@link Lease}s, and a leased database is never
+ * closed before its last lease has been released, even if that means going over budget for a while.
+ * <p>
+ * Instances can be shared between threads. Loading happens outside of the registry lock, so a slow compilation
+ * only blocks the callers waiting for that same key.
+ *
+ * @param <K> key type, like a tenant id or a hash of the pattern set
+ * @param <D> database type
+ */
+public class DatabaseRegistry<K, D extends Database> implements Closeable {
+    private final Loader<K, D> loader;
+    private final long budget;
+    private final LinkedHashMap<K, Entry<D>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long residentBytes;
+
+    /**
+     * Create a registry
+     *
+     * @param loader loads the database for a key that is not resident
+     * @param budget native memory budget for all idle databases in bytes
+     */
+    public DatabaseRegistry(Loader<K, D> loader, long budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Budget must not be negative");
+        }
+
+        this.loader = loader;
+        this.budget = budget;
+    }
+
+    /**
+     * Lease the database for a key, loading it if it is not resident.
+     * Release the lease as soon as the scan is done, preferably with try-with-resources.
+     *
+     * @param key key of the database
+     * @return Lease on the database
+     * @throws HyperscanException if the database could not be loaded
+     */
+    public Lease<D> acquire(K key) throws HyperscanException {
+        final Entry<D> entry;
+        final boolean loading;
+
+        synchronized (this) {
+            final Entry<D> resident = entries.get(key);
+            loading = resident == null;
+            entry = loading ? new Entry<>() : resident;
+            entry.leases++;
+
+            if (loading) {
+                entries.put(key, entry);
+            }
+        }
+
+        if (loading) {
+            load(key, entry);
+        }
+
+        try {
+            entry.database.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            release(entry);
+            throw new HyperscanException("Interrupted while waiting for database " + key, e);
+        } catch (final ExecutionException e) {
+            release(entry);
+
+            if (e.getCause() instanceof HyperscanException) {
+                throw (HyperscanException) e.getCause();
+            }
+
+            throw new HyperscanException("Failed to load database " + key, e.getCause());
+        }
+
+        return new Lease<>(this, entry);
+    }
+
+    private void load(K key, Entry<D> entry) {
+        D database = null;
+        final long size;
+
+        try {
+            database = loader.load(key);
+            size = database.getSize();
+        } catch (final Exception e) {
+            if (database != null) {
+                // the database is never handed out, so nobody else would close it
+                closeAll(Collections.singletonList(database));
+            }
+
+            synchronized (this) {
+                entries.remove(key, entry);
+                entry.retired = true;
+            }
+
+            entry.database.completeExceptionally(e);
+            return;
+        }
+
+        final List<D> closing;
+
+        synchronized (this) {
+            entry.size = size;
+            residentBytes += size;
+            entry.database.complete(database);
+            closing = evict();
+        }
+
+        closeAll(closing);
+    }
+
+    private void release(Entry<D> entry) {
+        final List<D> closing = new ArrayList<>();
+
+        synchronized (this) {
+            entry.leases--;
+
+            if (entry.retired) {
+                if (entry.leases == 0 && entry.database.isDone() && !entry.database.isCompletedExceptionally()) {
+                    residentBytes -= entry.size;
+                    closing.add(entry.database.join());
+                }
+            } else {
+                closing.addAll(evict());
+            }
+        }
+
+        closeAll(closing);
+    }
+
+    /**
+     * Remove idle databases, least recently used first, until the registry is within budget.
+     * Must be called holding the lock, the returned databases must be closed after releasing it.
+     */
+    private List<D> evict() {
+        final List<D> evicted = new ArrayList<>();
+        final Iterator<Map.Entry<K, Entry<D>>> iterator = entries.entrySet().iterator();
+
+        while (residentBytes > budget && iterator.hasNext()) {
+            final Entry<D> entry = iterator.next().getValue();
+
+            if (entry.leases == 0 && entry.database.isDone()) {
+                iterator.remove();
+                entry.retired = true;
+                residentBytes -= entry.size;
+                evicted.add(entry.database.join());
+            }
+        }
+
+        return evicted;
+    }
+
+    /**
+     * Remove the database for a key, for example after its patterns changed. It is closed as soon as it is idle.
+     *
+     * @param key key of the database
+     */
+    public void invalidate(K key) {
+        final List<D> closing = new ArrayList<>();
+
+        synchronized (this) {
+            final Entry<D> entry = entries.remove(key);
+
+            if (entry != null) {
+                retire(entry, closing);
+            }
+        }
+
+        closeAll(closing);
+    }
+
+    private void retire(Entry<D> entry, List<D> closing) {
+        entry.retired = true;
+
+        if (entry.leases == 0 && entry.database.isDone() && !entry.database.isCompletedExceptionally()) {
+            residentBytes -= entry.size;
+            closing.add(entry.database.join());
+        }
+    }
+
+    private static <D extends Database> void closeAll(List<D> databases) {
+        for (final D database : databases) {
+            try {
+                database.close();
+            } catch (final HyperscanException ignored) {
+                // the native memory is gone either way
+            }
+        }
+    }
+
+    /**
+     * Get the native memory held by all resident databases, leased ones included
+     *
+     * @return count of bytes
+     */
+    public synchronized long getResidentBytes() {
+        return residentBytes;
+    }
+
+    /**
+     * Get the native memory budget
+     *
+     * @return count of bytes
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Get the count of resident databases
+     *
+     * @return count of databases
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Close all idle databases. Leased ones are closed when their last lease is released.
+     */
+    @Override
+    public void close() {
+        final List<D> closing = new ArrayList<>();
+
+        synchronized (this) {
+            entries.values().forEach(entry -> retire(entry, closing));
+            entries.clear();
+        }
+
+        closeAll(closing);
+    }
+
+    /**
+     * Loads the database for a key, by compiling it or restoring it from a serialized cache
+     *
+     * @param <K> key type
+     * @param <D> database type
+     */
+    @FunctionalInterface
+    public interface Loader<K, D extends Database> {
+        D load(K key) throws HyperscanException;
+    }
+
+    private static class Entry<D> {
+        private final CompletableFuture<D> database = new CompletableFuture<>();
+        private long size;
+        private int leases;
+        private boolean retired;
+    }
+
+    /**
+     * Lease on a database of the registry, which keeps it from being closed until released
+     *
+     * @param <D> database type
+     */
+    public static class Lease<D extends Database> implements AutoCloseable {
+        private final DatabaseRegistry<?, D> registry;
+        private final Entry<D> entry;
+        private boolean released;
+
+        private Lease(DatabaseRegistry<?, D> registry, Entry<D> entry) {
+            this.registry = registry;
+            this.entry = entry;
+        }
+
+        /**
+         * Get the leased database
+         *
+         * @return database, valid until the lease is released
+         */
+        public D get() {
+            if (released) {
+                throw new IllegalStateException("Lease has already been released");
+            }
+
+            return entry.database.join();
+        }
+
+        /**
+         * Release the lease. Releasing more than once has no effect.
+         */
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                registry.release(entry);
+            }
+        }
+    }
+}
@@ -0,0 +1,525 @@
+package io.carpe.hyperscan.db;
+
+import io.carpe.hyperscan.HyperscanUtils;
+import io.carpe.hyperscan.Telemetry;
+import io.carpe.hyperscan.jna.HyperscanLibrary;
+import io.carpe.hyperscan.jna.SizeT;
+import io.carpe.hyperscan.jna.SizeTByReference;
+import io.carpe.hyperscan.wrapper.Allocators;
+import io.carpe.hyperscan.wrapper.HyperscanException;
+import io.carpe.hyperscan.wrapper.HyperscanExpression;
+import io.carpe.hyperscan.wrapper.flags.CpuFeatureFlag;
+import io.carpe.hyperscan.wrapper.flags.HyperscanModeFlag;
+import io.carpe.hyperscan.wrapper.flags.SomHorizon;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.PointerByReference;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Database containing compiled pure Hyperscan expressions.
+ * <p>
+ * Unlike the {@link ChimeraDatabase}, which only supports block mode, these can be compiled for streaming, so input
+ * can be fed to the engine in chunks. Make sure to remember to close after you're done using.
+ */
+public class HyperscanDatabase implements Database {
+    private static final int HS_DB_PLATFORM_ERROR = -6;
+    private static final int SHARED_MAGIC = 0x43344a53;
+    private static final int SHARED_TRAILER_LENGTH = 4 + 8;
+    private Pointer database;
+    private final List<HyperscanExpression> expressions;
+    private final HyperscanModeFlag mode;
+    private final SomHorizon somHorizon;
+    private final PlatformInfo platform;
+    // memory mapped image backing a shared database, freed by unmapping instead of hs_free_database
+    private MappedByteBuffer sharedImage;
+
+    private HyperscanDatabase(Pointer database, List<HyperscanExpression> expressions, HyperscanModeFlag mode,
+                              SomHorizon somHorizon, PlatformInfo platform) {
+        this.database = database;
+        this.expressions = expressions;
+        this.mode = mode;
+        this.somHorizon = somHorizon;
+        this.platform = platform;
+    }
+
+    private HyperscanDatabase(MappedByteBuffer sharedImage, List<HyperscanExpression> expressions, HyperscanModeFlag mode,
+                              SomHorizon somHorizon, PlatformInfo platform) {
+        this(Native.getDirectBufferPointer(sharedImage), expressions, mode, somHorizon, platform);
+        this.sharedImage = sharedImage;
+    }
+
+    /**
+     * compile an expression into a database to use for scanning
+     *
+     * @param expression HyperscanExpression to compile
+     * @param mode       mode of operation the database will be used in
+     * @return Compiled database
+     * @throws HyperscanException CompileErrorException on errors concerning the pattern, otherwise different Throwable's
+     */
+    public static HyperscanDatabase compile(HyperscanExpression expression, HyperscanModeFlag mode) throws HyperscanException {
+        final ArrayList<HyperscanExpression> expressions = new ArrayList<>(1);
+        expressions.add(expression);
+
+        return compile(expressions, mode, null);
+    }
+
+    /**
+     * compile a collection of expressions into a database to use for scanning
+     *
+     * @param expressions HyperscanExpressions to compile
+     * @param mode        mode of operation the database will be used in
+     * @return Compiled database
+     * @throws HyperscanException CompileErrorException on errors concerning the pattern, otherwise different Throwable's
+     */
+    public static HyperscanDatabase compile(Collection<HyperscanExpression> expressions, HyperscanModeFlag mode) throws HyperscanException {
+        return compile(expressions, mode, null);
+    }
+
+    /**
+     * compile a collection of expressions into a database to use for scanning on a different platform
+     *
+     * @param expressions HyperscanExpressions to compile
+     * @param mode        mode of operation the database will be used in
+     * @param platform    target platform, or null for the current host
+     * @return Compiled database
+     * @throws HyperscanException CompileErrorException on errors concerning the pattern, otherwise different Throwable's
+     */
+    public static HyperscanDatabase compile(Collection<HyperscanExpression> expressions, HyperscanModeFlag mode,
+                                            PlatformInfo platform) throws HyperscanException {
+        return compile(expressions, mode, null, platform);
+    }
+
+    /**
+     * compile a collection of expressions into a streaming database tracking start of match offsets
+     * with the given precision
+     *
+     * @param expressions HyperscanExpressions to compile
+     * @param mode        mode of operation the database will be used in, must be {@link HyperscanModeFlag#STREAM}
+     *                    if a horizon is given
+     * @param somHorizon  precision of start of match offsets, or null if no expression tracks them
+     * @param platform    target platform, or null for the current host
+     * @return Compiled database
+     * @throws HyperscanException CompileErrorException on errors concerning the pattern, otherwise different Throwable's
+     */
+    public static HyperscanDatabase compile(Collection<HyperscanExpression> expressions, HyperscanModeFlag mode,
+                                            SomHorizon somHorizon, PlatformInfo platform) throws HyperscanException {
+        if (somHorizon != null && mode != HyperscanModeFlag.STREAM) {
+            throw new IllegalArgumentException("Start of match horizon is only supported in stream mode");
+        }
+
+        final Telemetry.Span span = Telemetry.get().compile(Telemetry.HYPERSCAN, expressions.size());
+
+        try {
+            final HyperscanDatabase database = compileUnrecorded(expressions, mode, somHorizon, platform);
+
+            if (span.isRecording()) {
+                span.setDatabaseSize(database.getSize());
+            }
+
+            return database;
+        } catch (final HyperscanException | RuntimeException e) {
+            span.setError(e);
+            throw e;
+        } finally {
+            span.finish();
+        }
+    }
+
+    private static HyperscanDatabase compileUnrecorded(Collection<HyperscanExpression> expressions, HyperscanModeFlag mode,
+                                                       SomHorizon somHorizon, PlatformInfo platform) throws HyperscanException {
+        final ArrayList<HyperscanExpression> compiledExpressions = new ArrayList<>(expressions);
+        final int expressionsSize = compiledExpressions.size();
+
+        final String[] expressionsStr = new String[expressionsSize];
+        final int[] flags = new int[expressionsSize];
+        final int[] ids = new int[expressionsSize];
+
+        for (int i = 0; i < expressionsSize; i++) {
+            final HyperscanExpression expression = compiledExpressions.get(i);
+            expressionsStr[i] = expression.getExpression();
+            flags[i] = HyperscanUtils.bitEnumSetToInt(expression.getFlags());
+            ids[i] = i;
+        }
+
+        final PointerByReference database = new PointerByReference();
+        final PointerByReference error = new PointerByReference();
+
+        final int hsError = HyperscanLibrary.INSTANCE.hs_compile_multi(expressionsStr, flags, ids, expressionsSize,
+                modeBits(mode, somHorizon), ChimeraDatabase.platformPointer(platform), database, error);
+
+        ChimeraDatabase.handleErrors(hsError, error.getValue(), compiledExpressions);
+
+        return new HyperscanDatabase(database.getValue(), compiledExpressions, mode, somHorizon, platform);
+    }
+
+    private static int modeBits(HyperscanModeFlag mode, SomHorizon somHorizon) {
+        return somHorizon == null ? mode.getBits() : mode.getBits() | somHorizon.getBits();
+    }
+
+    /**
+     * Restore a database from the bytes produced by {@link #serialize()}. This is much cheaper than compiling.
+     * <p>
+     * Deserialization fails if the database was compiled for CPU features the current host lacks. Check
+     * {@link #readPlatformInfo(byte[])} beforehand to fall back to compiling instead.
+     * <p>
+     * Images serialized before the platform header was introduced can't be read anymore, compile them again.
+     *
+     * @param bytes       serialized database
+     * @param expressions the expressions the database was compiled from, in the same order
+     * @return Deserialized database
+     * @throws HyperscanException if the bytes were produced by a different Hyperscan version or for a different platform
+     */
+    public static HyperscanDatabase deserialize(byte[] bytes, Collection<HyperscanExpression> expressions) throws HyperscanException {
+        final SerializedImage image = SerializedImage.parse(bytes);
+
+        if (!image.platform.isSupportedByHost()) {
+            throw new HyperscanException("Failed to deserialize database built for " + image.platform + ".",
+                    HyperscanUtils.hsErrorIntToException(HS_DB_PLATFORM_ERROR));
+        }
+
+        final PointerByReference database = new PointerByReference();
+
+        final int hsError = HyperscanLibrary.INSTANCE.hs_deserialize_database(image.bytes, new SizeT(image.bytes.length), database);
+
+        if (hsError != 0)
+            throw new HyperscanException("Failed to deserialize database.", HyperscanUtils.hsErrorIntToException(hsError));
+
+        return new HyperscanDatabase(database.getValue(), new ArrayList<>(expressions), image.mode, image.somHorizon, image.platform);
+    }
+
+    /**
+     * Restore a database into a memory mapped file shared by all processes of the host, like several JVMs using the
+     * same large rule set. The first process deserializes the database into the file, all others map the existing
+     * image read-only, so only scratch space is private to each process.
+     * <p>
+     * Images are named after a hash of the serialized bytes, so updated databases get a new file and images still
+     * mapped by other processes are never overwritten. Pick a directory on a memory backed file system like
+     * {@code /dev/shm}, and remove images no longer used by any process yourself.
+     *
+     * @param bytes       serialized database
+     * @param directory   directory of the shared images
+     * @param expressions the expressions the database was compiled from, in the same order
+     * @return Database backed by the shared image
+     * @throws HyperscanException if the bytes were produced by a different Hyperscan version or for a different platform,
+     *                            or if the image can't be created
+     */
+    public static HyperscanDatabase deserializeShared(byte[] bytes, Path directory, Collection<HyperscanExpression> expressions) throws HyperscanException {
+        final SerializedImage image = SerializedImage.parse(bytes);
+
+        if (!image.platform.isSupportedByHost()) {
+            throw new HyperscanException("Failed to deserialize database built for " + image.platform + ".",
+                    HyperscanUtils.hsErrorIntToException(HS_DB_PLATFORM_ERROR));
+        }
+
+        final SizeTByReference size = new SizeTByReference();
+        final int hsError = HyperscanLibrary.INSTANCE.hs_serialized_database_size(image.bytes, new SizeT(image.bytes.length), size);
+
+        if (hsError != 0)
+            throw new HyperscanException("Failed to deserialize database.", HyperscanUtils.hsErrorIntToException(hsError));
+
+        final long databaseSize = size.getValue().longValue();
+        if (databaseSize + SHARED_TRAILER_LENGTH > Integer.MAX_VALUE) {
+            throw new HyperscanException("Database of " + databaseSize + " bytes is too large to be shared");
+        }
+
+        final Path file = directory.resolve(imageName(bytes));
+
+        // file locks are held by the whole JVM, so threads of this process have to take turns on their own
+        synchronized (HyperscanDatabase.class) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                final FileLock lock = channel.lock();
+
+                try {
+                    if (!isInitialized(channel, databaseSize)) {
+                        initialize(channel, image, databaseSize);
+                    }
+
+                    final MappedByteBuffer shared = channel.map(FileChannel.MapMode.READ_ONLY, 0, databaseSize);
+                    return new HyperscanDatabase(shared, new ArrayList<>(expressions), image.mode, image.somHorizon, image.platform);
+                } finally {
+                    lock.release();
+                }
+            } catch (final IOException e) {
+                throw new HyperscanException("Failed to map shared database image " + file, e);
+            }
+        }
+    }
+
+    private static String imageName(byte[] bytes) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required to be supported by every JVM", e);
+        }
+
+        final StringBuilder name = new StringBuilder();
+        for (final byte b : digest.digest(bytes)) {
+            name.append(String.format("%02x", b));
+        }
+
+        return name.append(".hsdb").toString();
+    }
+
+    /**
+     * Check the trailer, which is written only once the database has been completely deserialized
+     */
+    private static boolean isInitialized(FileChannel channel, long databaseSize) throws IOException {
+        if (channel.size() != databaseSize + SHARED_TRAILER_LENGTH) {
+            return false;
+        }
+
+        final ByteBuffer trailer = ByteBuffer.allocate(SHARED_TRAILER_LENGTH);
+        while (trailer.hasRemaining() && channel.read(trailer, databaseSize + trailer.position()) >= 0) {
+            // read until the trailer is complete
+        }
+        trailer.flip();
+
+        return trailer.remaining() == SHARED_TRAILER_LENGTH && trailer.getInt() == SHARED_MAGIC
+                && trailer.getLong() == databaseSize;
+    }
+
+    private static void initialize(FileChannel channel, SerializedImage image, long databaseSize) throws IOException {
+        // a previous process may have died half way, start over
+        channel.truncate(0);
+
+        final MappedByteBuffer writable = channel.map(FileChannel.MapMode.READ_WRITE, 0, databaseSize + SHARED_TRAILER_LENGTH);
+        final int hsError = HyperscanLibrary.INSTANCE.hs_deserialize_database_at(image.bytes,
+                new SizeT(image.bytes.length), Native.getDirectBufferPointer(writable));
+
+        if (hsError != 0)
+            throw new HyperscanException("Failed to deserialize database.", HyperscanUtils.hsErrorIntToException(hsError));
+
+        writable.force();
+        writable.putInt((int) databaseSize, SHARED_MAGIC).putLong((int) databaseSize + 4, databaseSize);
+        writable.force();
+    }
+
+    /**
+     * Read the platform a serialized database was compiled for, without deserializing it
+     *
+     * @param bytes serialized database
+     * @return target platform of the database
+     * @throws HyperscanException if the bytes are not a serialized database
+     */
+    public static PlatformInfo readPlatformInfo(byte[] bytes) throws HyperscanException {
+        return SerializedImage.parse(bytes).platform;
+    }
+
+    /**
+     * Serialize the database, so it can be stored and later restored with {@link #deserialize(byte[], Collection)}.
+     * The mode and target platform are recorded along with the database.
+     *
+     * @return serialized database
+     * @throws HyperscanException if serialization fails
+     */
+    public byte[] serialize() throws HyperscanException {
+        if (database == null) {
+            throw new IllegalStateException("Database has alredy been deallocated");
+        }
+
+        final PointerByReference bytes = new PointerByReference();
+        final SizeTByReference length = new SizeTByReference();
+
+        final int hsError = HyperscanLibrary.INSTANCE.hs_serialize_database(database, bytes, length);
+
+        if (hsError != 0)
+            throw new HyperscanException("Failed to serialize database.", HyperscanUtils.hsErrorIntToException(hsError));
+
+        final int imageLength = (int) length.getValue().longValue();
+        final PlatformInfo platform = getPlatformInfo();
+        final ByteBuffer serialized = ByteBuffer.allocate(SerializedImage.HEADER_LENGTH + imageLength)
+                .put(SerializedImage.MAGIC)
+                .putInt(modeBits(mode, somHorizon))
+                .putInt(platform.getTune().ordinal())
+                .putLong(HyperscanUtils.bitEnumSetToInt(platform.getCpuFeatures()));
+
+        serialized.put(bytes.getValue().getByteArray(0, imageLength));
+        Allocators.free(Allocators.Category.MISC, bytes.getValue());
+
+        return serialized.array();
+    }
+
+    public Pointer getPointer() {
+        return database;
+    }
+
+    /**
+     * Get the mode of operation the database was compiled for
+     *
+     * @return mode flag
+     */
+    public HyperscanModeFlag getMode() {
+        return mode;
+    }
+
+    /**
+     * Get the precision of start of match offsets of a streaming database
+     *
+     * @return horizon if the database was compiled with one, otherwise empty optional
+     */
+    public Optional<SomHorizon> getSomHorizon() {
+        return Optional.ofNullable(somHorizon);
+    }
+
+    /**
+     * Get the size of the state of each stream opened for the database, which depends on the expressions and
+     * the start of match horizon
+     *
+     * @return count of bytes
+     * @throws HyperscanException if the database has not been compiled in stream mode
+     */
+    public long getStreamSize() throws HyperscanException {
+        if (database == null) {
+            throw new IllegalStateException("Database has alredy been deallocated");
+        }
+
+        final SizeTByReference size = new SizeTByReference();
+        final int hsError = HyperscanLibrary.INSTANCE.hs_stream_size(database, size);
+
+        if (hsError != 0)
+            throw new HyperscanException("Failed to get stream size.", HyperscanUtils.hsErrorIntToException(hsError));
+
+        return size.getValue().longValue();
+    }
+
+    /**
+     * Get a boolean indicating if the database is backed by an image shared with other processes
+     *
+     * @return true if restored with {@link #deserializeShared(byte[], Path, Collection)}, otherwise false
+     */
+    public boolean isShared() {
+        return sharedImage != null;
+    }
+
+    /**
+     * Get the platform the database was compiled for
+     *
+     * @return target platform
+     * @throws HyperscanException if the database was compiled for the host and its platform is not supported
+     */
+    public PlatformInfo getPlatformInfo() throws HyperscanException {
+        return platform != null ? platform : PlatformInfo.host();
+    }
+
+    /**
+     * Get the database size in bytes
+     *
+     * @return count of bytes
+     */
+    public long getSize() {
+        if (database == null) {
+            throw new IllegalStateException("Database has alredy been deallocated");
+        }
+
+        final SizeTByReference size = new SizeTByReference();
+        HyperscanLibrary.INSTANCE.hs_database_size(database, size);
+        return size.getValue().longValue();
+    }
+
+    public HyperscanExpression getExpression(int id) {
+        return expressions.get(id);
+    }
+
+    @Override
+    protected void finalize() {
+        if (sharedImage != null) {
+            // the mapping is released once the buffer is collected, other processes keep using the image
+            sharedImage = null;
+            database = null;
+        }
+
+        if (database != null) {
+            HyperscanLibrary.INSTANCE.hs_free_database(database);
+            database = null;
+        }
+    }
+
+    @Override
+    public void close() throws HyperscanException {
+        this.finalize();
+    }
+
+    /**
+     * Serialized database image with its metadata header
+     */
+    private static class SerializedImage {
+        private static final byte[] MAGIC = {'C', '4', 'J', 'D'};
+        private static final int HEADER_LENGTH = MAGIC.length + 4 + 4 + 8;
+
+        private final HyperscanModeFlag mode;
+        private final SomHorizon somHorizon;
+        private final PlatformInfo platform;
+        private final byte[] bytes;
+
+        private SerializedImage(HyperscanModeFlag mode, SomHorizon somHorizon, PlatformInfo platform, byte[] bytes) {
+            this.mode = mode;
+            this.somHorizon = somHorizon;
+            this.platform = platform;
+            this.bytes = bytes;
+        }
+
+        static SerializedImage parse(byte[] serialized) throws HyperscanException {
+            if (serialized.length < HEADER_LENGTH
+                    || !Arrays.equals(Arrays.copyOf(serialized, MAGIC.length), MAGIC)) {
+                throw new HyperscanException("Bytes are not a serialized database");
+            }
+
+            final ByteBuffer header = ByteBuffer.wrap(serialized, MAGIC.length, HEADER_LENGTH - MAGIC.length);
+            final int modeBits = header.getInt();
+            final int tuneOrdinal = header.getInt();
+            final long cpuFeatureBits = header.getLong();
+
+            if (tuneOrdinal < 0 || tuneOrdinal >= PlatformInfo.Tune.values().length) {
+                throw new HyperscanException("Bytes are not a serialized database");
+            }
+
+            final PlatformInfo.Tune tune = PlatformInfo.Tune.values()[tuneOrdinal];
+
+            HyperscanModeFlag mode = null;
+            for (final HyperscanModeFlag candidate : HyperscanModeFlag.values()) {
+                if ((modeBits & candidate.getBits()) != 0) {
+                    mode = candidate;
+                }
+            }
+
+            if (mode == null) {
+                throw new HyperscanException("Bytes are not a serialized database");
+            }
+
+            SomHorizon somHorizon = null;
+            for (final SomHorizon candidate : SomHorizon.values()) {
+                if ((modeBits & candidate.getBits()) != 0) {
+                    somHorizon = candidate;
+                }
+            }
+
+            final EnumSet<CpuFeatureFlag> cpuFeatures = EnumSet.noneOf(CpuFeatureFlag.class);
+            for (final CpuFeatureFlag feature : CpuFeatureFlag.values()) {
+                if ((cpuFeatureBits & feature.getBits()) != 0) {
+                    cpuFeatures.add(feature);
+                }
+            }
+
+            return new SerializedImage(mode, somHorizon, PlatformInfo.of(tune, cpuFeatures),
+                    Arrays.copyOfRange(serialized, HEADER_LENGTH, serialized.length));
+        }
+    }
+}
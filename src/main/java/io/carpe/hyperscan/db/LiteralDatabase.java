@@ -0,0 +1,141 @@
+package io.carpe.hyperscan.db;
+
+import io.carpe.hyperscan.HyperscanUtils;
+import io.carpe.hyperscan.jna.HyperscanLibrary;
+import io.carpe.hyperscan.jna.SizeTByReference;
+import io.carpe.hyperscan.wrapper.HyperscanException;
+import io.carpe.hyperscan.wrapper.LiteralExpression;
+import io.carpe.hyperscan.wrapper.flags.HyperscanModeFlag;
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.PointerByReference;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Database containing compiled literals, for plain string rules which don't need a regex engine.
+ * <p>
+ * Literals are compiled in block mode, so they can be scanned alongside a {@link ChimeraDatabase} in the same scan.
+ * Make sure to remember to close after you're done using.
+ */
+public class LiteralDatabase implements Database {
+    private Pointer database;
+    private final List<LiteralExpression> expressions;
+    private final long minWidth;
+
+    private LiteralDatabase(Pointer database, List<LiteralExpression> expressions) {
+        this.database = database;
+        this.expressions = expressions;
+
+        long minWidth = expressions.isEmpty() ? 0 : Long.MAX_VALUE;
+        for (final LiteralExpression expression : expressions) {
+            minWidth = Math.min(minWidth, expression.getLength());
+        }
+        this.minWidth = minWidth;
+    }
+
+    /**
+     * compile a collection of literals into a database to use for scanning
+     *
+     * @param expressions LiteralExpressions to compile
+     * @return Compiled database
+     * @throws HyperscanException CompileErrorException on errors concerning the literal, otherwise different Throwable's
+     */
+    public static LiteralDatabase compile(Collection<LiteralExpression> expressions) throws HyperscanException {
+        return compile(expressions, null);
+    }
+
+    /**
+     * compile a collection of literals into a database to use for scanning on a different platform
+     *
+     * @param expressions LiteralExpressions to compile
+     * @param platform    target platform, or null for the current host
+     * @return Compiled database
+     * @throws HyperscanException CompileErrorException on errors concerning the literal, otherwise different Throwable's
+     */
+    public static LiteralDatabase compile(Collection<LiteralExpression> expressions, PlatformInfo platform) throws HyperscanException {
+        final ArrayList<LiteralExpression> compiledExpressions = new ArrayList<>(expressions);
+        final int expressionsSize = compiledExpressions.size();
+
+        // literals may contain NUL bytes, so they are passed as buffers with explicit lengths instead of strings
+        final Memory[] literals = new Memory[expressionsSize];
+        final Memory lengths = new Memory((long) Math.max(1, expressionsSize) * Native.SIZE_T_SIZE);
+        final int[] flags = new int[expressionsSize];
+        final int[] ids = new int[expressionsSize];
+
+        for (int i = 0; i < expressionsSize; i++) {
+            final LiteralExpression expression = compiledExpressions.get(i);
+            final byte[] literal = expression.getBytes();
+
+            literals[i] = new Memory(literal.length);
+            literals[i].write(0, literal, 0, literal.length);
+
+            if (Native.SIZE_T_SIZE == 8) {
+                lengths.setLong((long) i * 8, literal.length);
+            } else {
+                lengths.setInt((long) i * 4, literal.length);
+            }
+
+            flags[i] = HyperscanUtils.bitEnumSetToInt(expression.getFlags());
+            ids[i] = i;
+        }
+
+        final PointerByReference database = new PointerByReference();
+        final PointerByReference error = new PointerByReference();
+
+        final int hsError = HyperscanLibrary.INSTANCE.hs_compile_lit_multi(literals, flags, ids, lengths, expressionsSize,
+                HyperscanModeFlag.BLOCK.getBits(), ChimeraDatabase.platformPointer(platform), database, error);
+
+        ChimeraDatabase.handleErrors(hsError, error.getValue(), compiledExpressions);
+
+        return new LiteralDatabase(database.getValue(), compiledExpressions);
+    }
+
+    public Pointer getPointer() {
+        return database;
+    }
+
+    /**
+     * Get the database size in bytes
+     *
+     * @return count of bytes
+     */
+    public long getSize() {
+        if (database == null) {
+            throw new IllegalStateException("Database has alredy been deallocated");
+        }
+
+        final SizeTByReference size = new SizeTByReference();
+        HyperscanLibrary.INSTANCE.hs_database_size(database, size);
+        return size.getValue().longValue();
+    }
+
+    /**
+     * Get the length of the shortest literal, inputs shorter than this can't match
+     *
+     * @return count of bytes
+     */
+    public long getMinWidth() {
+        return minWidth;
+    }
+
+    public LiteralExpression getExpression(int id) {
+        return expressions.get(id);
+    }
+
+    @Override
+    protected void finalize() {
+        if (database != null) {
+            HyperscanLibrary.INSTANCE.hs_free_database(database);
+            database = null;
+        }
+    }
+
+    @Override
+    public void close() throws HyperscanException {
+        this.finalize();
+    }
+}
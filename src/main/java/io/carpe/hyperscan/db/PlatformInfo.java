@@ -0,0 +1,167 @@
+package io.carpe.hyperscan.db;
+
+import io.carpe.hyperscan.HyperscanUtils;
+import io.carpe.hyperscan.jna.HyperscanLibrary;
+import io.carpe.hyperscan.jna.PlatformInfoStruct;
+import io.carpe.hyperscan.wrapper.HyperscanException;
+import io.carpe.hyperscan.wrapper.flags.CpuFeatureFlag;
+
+import java.util.EnumSet;
+import java.util.Objects;
+
+/**
+ * Target platform a database is compiled for.
+ * <p>
+ * By default databases are compiled for the host they are compiled on. Use {@link #host()} with overrides, or
+ * {@link #of(Tune, EnumSet)}, to build databases on one machine for a different CPU tier, like AVX-512 tuned
+ * databases built on CI for a Skylake server fleet. Databases using CPU features a host lacks can't be used on it.
+ */
+public class PlatformInfo {
+    private final Tune tune;
+    private final EnumSet<CpuFeatureFlag> cpuFeatures;
+
+    private PlatformInfo(Tune tune, EnumSet<CpuFeatureFlag> cpuFeatures) {
+        this.tune = tune;
+        this.cpuFeatures = EnumSet.copyOf(cpuFeatures);
+    }
+
+    /**
+     * Get the platform of the current host
+     *
+     * @return PlatformInfo as populated by hyperscan
+     * @throws HyperscanException if the host platform is not supported
+     */
+    public static PlatformInfo host() throws HyperscanException {
+        final PlatformInfoStruct platform = new PlatformInfoStruct();
+
+        final int hsError = HyperscanLibrary.INSTANCE.hs_populate_platform(platform);
+
+        if (hsError != 0)
+            throw new HyperscanException("Failed to populate platform.", HyperscanUtils.hsErrorIntToException(hsError));
+
+        platform.read();
+        return fromStruct(platform);
+    }
+
+    /**
+     * Get an explicit target platform
+     *
+     * @param tune        CPU family to tune for
+     * @param cpuFeatures CPU features the database may use
+     * @return PlatformInfo
+     */
+    public static PlatformInfo of(Tune tune, EnumSet<CpuFeatureFlag> cpuFeatures) {
+        return new PlatformInfo(tune, cpuFeatures);
+    }
+
+    static PlatformInfo fromStruct(PlatformInfoStruct platform) {
+        final EnumSet<CpuFeatureFlag> cpuFeatures = EnumSet.noneOf(CpuFeatureFlag.class);
+        for (final CpuFeatureFlag feature : CpuFeatureFlag.values()) {
+            if ((platform.cpu_features & feature.getBits()) != 0) {
+                cpuFeatures.add(feature);
+            }
+        }
+
+        return new PlatformInfo(Tune.fromValue(platform.tune), cpuFeatures);
+    }
+
+    PlatformInfoStruct toStruct() {
+        final PlatformInfoStruct platform = new PlatformInfoStruct();
+        platform.tune = tune.value;
+        platform.cpu_features = HyperscanUtils.bitEnumSetToInt(cpuFeatures);
+        platform.write();
+        return platform;
+    }
+
+    /**
+     * Get a copy of this platform tuned for a different CPU family
+     *
+     * @param tune CPU family to tune for
+     * @return PlatformInfo
+     */
+    public PlatformInfo withTune(Tune tune) {
+        return new PlatformInfo(tune, cpuFeatures);
+    }
+
+    /**
+     * Get a copy of this platform with different CPU features
+     *
+     * @param cpuFeatures CPU features the database may use
+     * @return PlatformInfo
+     */
+    public PlatformInfo withCpuFeatures(EnumSet<CpuFeatureFlag> cpuFeatures) {
+        return new PlatformInfo(tune, cpuFeatures);
+    }
+
+    /**
+     * Check if databases compiled for this platform can be used on the current host
+     *
+     * @return true if the host has all CPU features of this platform, otherwise false
+     * @throws HyperscanException if the host platform is not supported
+     */
+    public boolean isSupportedByHost() throws HyperscanException {
+        return host().getCpuFeatures().containsAll(cpuFeatures);
+    }
+
+    public Tune getTune() {
+        return tune;
+    }
+
+    public EnumSet<CpuFeatureFlag> getCpuFeatures() {
+        return EnumSet.copyOf(cpuFeatures);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PlatformInfo)) return false;
+        final PlatformInfo that = (PlatformInfo) o;
+        return tune == that.tune && cpuFeatures.equals(that.cpuFeatures);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(tune, cpuFeatures);
+    }
+
+    @Override
+    public String toString() {
+        return "PlatformInfo{" +
+                "tune=" + tune +
+                ", cpuFeatures=" + cpuFeatures +
+                '}';
+    }
+
+    /**
+     * CPU families a database can be tuned for
+     */
+    public enum Tune {
+        GENERIC(0),
+        SANDY_BRIDGE(1),
+        IVY_BRIDGE(2),
+        HASWELL(3),
+        SILVERMONT(4),
+        BROADWELL(5),
+        SKYLAKE(6),
+        SKYLAKE_SERVER(7),
+        GOLDMONT(8),
+        ICELAKE(9),
+        ICELAKE_SERVER(10);
+
+        private final int value;
+
+        Tune(int value) {
+            this.value = value;
+        }
+
+        static Tune fromValue(int value) {
+            for (final Tune tune : values()) {
+                if (tune.value == value) {
+                    return tune;
+                }
+            }
+
+            return GENERIC;
+        }
+    }
+}
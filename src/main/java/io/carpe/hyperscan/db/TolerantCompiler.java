@@ -0,0 +1,311 @@
+package io.carpe.hyperscan.db;
+
+import io.carpe.hyperscan.wrapper.ChimeraExpression;
+import io.carpe.hyperscan.wrapper.ExpressionValidator;
+import io.carpe.hyperscan.wrapper.HyperscanException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Compiles expression sets containing invalid expressions, like user provided rules, instead of failing the whole set.
+ * <p>
+ * Expressions are validated in parallel first, failures are excluded and the survivors are compiled once. If that
+ * compile still fails, the set is bisected and the halves are compiled in parallel until every failing expression
+ * is isolated, which takes a logarithmic count of rounds instead of one compile per failure. Halves which compile on
+ * their own but not together are merged back part by part, excluding the expressions which conflict.
+ * Instances can be shared between threads.
+ */
+public class TolerantCompiler {
+    private final ExpressionValidator validator;
+    private final int parallelism;
+
+    /**
+     * Create a compiler using all available processors
+     */
+    public TolerantCompiler() {
+        this(new ExpressionValidator());
+    }
+
+    /**
+     * Create a compiler sharing the cached results of a validator
+     *
+     * @param validator ExpressionValidator to validate expressions with
+     */
+    public TolerantCompiler(ExpressionValidator validator) {
+        this(validator, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a compiler
+     *
+     * @param validator   ExpressionValidator to validate expressions with
+     * @param parallelism maximum count of sets compiled at the same time while bisecting
+     */
+    public TolerantCompiler(ExpressionValidator validator, int parallelism) {
+        if (validator == null) {
+            throw new NullPointerException("Null value for validator is not allowed");
+        }
+
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+
+        this.validator = validator;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * compile all valid expressions of a collection into a database
+     *
+     * @param expressions ChimeraExpressions to compile
+     * @return Result containing the database and the excluded expressions
+     * @throws HyperscanException if compiling fails for reasons other than invalid expressions
+     */
+    public Result compile(Collection<ChimeraExpression> expressions) throws HyperscanException {
+        final Map<ChimeraExpression, String> failures = new LinkedHashMap<>();
+        final List<ChimeraExpression> survivors = new ArrayList<>();
+
+        validator.validateAll(expressions).forEach((expression, result) -> {
+            if (result.isValidChimera()) {
+                survivors.add(expression);
+            } else {
+                failures.put(expression, result.getChimeraErrorMessage().orElse("Invalid expression"));
+            }
+        });
+
+        if (survivors.isEmpty()) {
+            return new Result(null, failures);
+        }
+
+        try {
+            return new Result(ChimeraDatabase.compile(survivors), failures);
+        } catch (final CompileErrorException e) {
+            // valid on their own, but not together, so look for the culprits
+        }
+
+        final Survivors compilable = bisect(survivors, failures);
+        return new Result(compilable.getDatabase(), failures);
+    }
+
+    /**
+     * Bisect a set until every expression failing to compile is isolated
+     *
+     * @return the expressions which compiled together, in their original order, and their database
+     */
+    Survivors bisect(List<ChimeraExpression> expressions, Map<ChimeraExpression, String> failures) throws HyperscanException {
+        return bisect(expressions, failures, ChimeraDatabase::compile);
+    }
+
+    Survivors bisect(List<ChimeraExpression> expressions, Map<ChimeraExpression, String> failures,
+                     SetCompiler compiler) throws HyperscanException {
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try {
+            return pool.invoke(new Bisection(expressions, failures, compiler));
+        } catch (final BisectionException e) {
+            throw (HyperscanException) e.getCause();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Compiles a set, throwing a CompileErrorException if it fails
+     */
+    @FunctionalInterface
+    interface SetCompiler {
+        ChimeraDatabase compile(List<ChimeraExpression> expressions) throws HyperscanException;
+    }
+
+    /**
+     * Expressions which compiled together, with the database of the last compile so it isn't compiled again
+     */
+    static class Survivors {
+        private static final Survivors NONE = new Survivors(Collections.emptyList(), null);
+
+        private final List<ChimeraExpression> expressions;
+        private final ChimeraDatabase database;
+
+        private Survivors(List<ChimeraExpression> expressions, ChimeraDatabase database) {
+            this.expressions = expressions;
+            this.database = database;
+        }
+
+        List<ChimeraExpression> getExpressions() {
+            return expressions;
+        }
+
+        ChimeraDatabase getDatabase() {
+            return database;
+        }
+
+        private boolean isEmpty() {
+            return expressions.isEmpty();
+        }
+
+        private void close() {
+            if (database != null) {
+                try {
+                    database.close();
+                } catch (final HyperscanException e) {
+                    throw new BisectionException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compiles a set, and if that fails compiles both halves in parallel and merges what compiled of them
+     */
+    private static class Bisection extends RecursiveTask<Survivors> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<ChimeraExpression> expressions;
+        private final Map<ChimeraExpression, String> failures;
+        private final SetCompiler compiler;
+
+        private Bisection(List<ChimeraExpression> expressions, Map<ChimeraExpression, String> failures, SetCompiler compiler) {
+            this.expressions = expressions;
+            this.failures = failures;
+            this.compiler = compiler;
+        }
+
+        @Override
+        protected Survivors compute() {
+            try {
+                return new Survivors(expressions, compiler.compile(expressions));
+            } catch (final CompileErrorException e) {
+                if (expressions.size() == 1) {
+                    fail(expressions.get(0), e.getMessage());
+                    return Survivors.NONE;
+                }
+            } catch (final HyperscanException e) {
+                throw new BisectionException(e);
+            }
+
+            final int half = expressions.size() / 2;
+            final Bisection right = new Bisection(expressions.subList(half, expressions.size()), failures, compiler);
+            right.fork();
+
+            final Survivors left;
+            try {
+                left = new Bisection(expressions.subList(0, half), failures, compiler).compute();
+            } catch (final RuntimeException e) {
+                // the right half isn't needed anymore
+                right.join().close();
+                throw e;
+            }
+
+            final Survivors joined;
+            try {
+                joined = right.join();
+            } catch (final RuntimeException e) {
+                left.close();
+                throw e;
+            }
+
+            return merge(left, joined);
+        }
+
+        /**
+         * Add candidates which compiled on their own to a set which compiled, excluding those which only fail
+         * together with others. The databases replaced by a compile of the merged set are closed.
+         */
+        private Survivors merge(Survivors base, Survivors candidates) {
+            if (base.isEmpty())
+                return candidates;
+
+            if (candidates.isEmpty())
+                return base;
+
+            final List<ChimeraExpression> merged = new ArrayList<>(base.expressions);
+            merged.addAll(candidates.expressions);
+
+            try {
+                final ChimeraDatabase database = compiler.compile(merged);
+                base.close();
+                candidates.close();
+                return new Survivors(merged, database);
+            } catch (final CompileErrorException e) {
+                // only the subsets of the candidates are compiled from here on
+                candidates.close();
+
+                if (candidates.expressions.size() == 1) {
+                    fail(candidates.expressions.get(0), "Fails to compile together with other expressions: " + e.getMessage());
+                    return base;
+                }
+            } catch (final HyperscanException e) {
+                base.close();
+                candidates.close();
+                throw new BisectionException(e);
+            }
+
+            final List<ChimeraExpression> all = candidates.expressions;
+            final int half = all.size() / 2;
+            final Survivors first = merge(base, new Survivors(all.subList(0, half), null));
+            return merge(first, new Survivors(all.subList(half, all.size()), null));
+        }
+
+        private void fail(ChimeraExpression expression, String message) {
+            synchronized (failures) {
+                failures.put(expression, message);
+            }
+        }
+    }
+
+    private static class BisectionException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private BisectionException(HyperscanException cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Database of the valid expressions, and the error of every excluded one
+     */
+    public static class Result {
+        private final ChimeraDatabase database;
+        private final Map<ChimeraExpression, String> failures;
+
+        Result(ChimeraDatabase database, Map<ChimeraExpression, String> failures) {
+            this.database = database;
+            this.failures = Collections.unmodifiableMap(failures);
+        }
+
+        /**
+         * Get the compiled database, close it like any other database
+         *
+         * @return database if any expression compiled, otherwise empty optional
+         */
+        public Optional<ChimeraDatabase> getDatabase() {
+            return Optional.ofNullable(database);
+        }
+
+        /**
+         * Get the excluded expressions
+         *
+         * @return error message of each excluded expression
+         */
+        public Map<ChimeraExpression, String> getFailures() {
+            return failures;
+        }
+
+        /**
+         * Check if every expression was compiled
+         *
+         * @return true if nothing was excluded, otherwise false
+         */
+        public boolean isComplete() {
+            return failures.isEmpty();
+        }
+    }
+}
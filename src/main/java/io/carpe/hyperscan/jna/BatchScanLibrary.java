@@ -0,0 +1,28 @@
+package io.carpe.hyperscan.jna;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.IntByReference;
+
+/**
+ * Optional batch scanning shim, built from src/main/native/ch4j_batch.c
+ */
+public interface BatchScanLibrary extends Library {
+
+    /**
+     * The loaded shim, or null if libch4jbatch is not on the library path
+     */
+    BatchScanLibrary INSTANCE = load();
+
+    int ch4j_batch_scan(Pointer database, Pointer scratch, Pointer data, Pointer offsets, int first, int count,
+                        Pointer results, int capacity, IntByReference resultCount);
+
+    static BatchScanLibrary load() {
+        try {
+            return Native.loadLibrary("ch4jbatch", BatchScanLibrary.class);
+        } catch (final UnsatisfiedLinkError e) {
+            return null;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package io.carpe.hyperscan.jna;
 import com.sun.jna.Callback;
 import com.sun.jna.Library;
 import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
 import com.sun.jna.Pointer;
 import com.sun.jna.ptr.PointerByReference;
 
@@ -30,8 +31,9 @@ public interface ChimeraLibrary extends Library {
     int ch_compile_multi(String[] expressions, int[] flags, int[] ids, int elements, int mode, Pointer platform,
                          PointerByReference database, PointerByReference error);
 
-    int ch_compile_ext_multi(String[] expressions, int[] flags, int[] ids, PatternBehaviourStruct[] ext, int elements,
-                             int mode, Pointer platform, PointerByReference database, PointerByReference error);
+    int ch_compile_ext_multi(String[] expressions, int[] flags, int[] ids, int elements, int mode,
+                             NativeLong match_limit, NativeLong match_limit_recursion, Pointer platform,
+                             PointerByReference database, PointerByReference error);
 
     int hs_compile(String expression, int flags, int mode, Pointer platform, PointerByReference database,
                    PointerByReference error);
@@ -39,13 +41,28 @@ public interface ChimeraLibrary extends Library {
     int hs_compile_multi(String[] expressions, int[] flags, int[] ids, int elements, int mode, Pointer platform,
                          PointerByReference database, PointerByReference error);
 
+    int ch_free_database(Pointer database);
+
     int ch_alloc_scratch(Pointer database, PointerByReference scratch);
 
+    int ch_free_scratch(Pointer scratch);
+
+    int ch_set_database_allocator(HyperscanLibrary.alloc_t alloc_func, HyperscanLibrary.free_t free_func);
+
+    int ch_set_misc_allocator(HyperscanLibrary.alloc_t alloc_func, HyperscanLibrary.free_t free_func);
+
+    int ch_set_scratch_allocator(HyperscanLibrary.alloc_t alloc_func, HyperscanLibrary.free_t free_func);
+
     int ch_scratch_size(Pointer scratch, SizeTByReference scratch_size);
 
-    int ch_scan(Pointer database, String data, int length, int flags, Pointer scratch, HyperscanLibrary.match_event_handler callback, Pointer context);
+    int ch_scan(Pointer database, String data, int length, int flags, Pointer scratch, match_event_handler callback,
+                error_event_handler onError, Pointer context);
 
     interface match_event_handler extends Callback {
         int invoke(int id, long from, long to, int flags, Pointer context);
     }
+
+    interface error_event_handler extends Callback {
+        int invoke(int error_type, int id, Pointer info, Pointer context);
+    }
 }
\ No newline at end of file
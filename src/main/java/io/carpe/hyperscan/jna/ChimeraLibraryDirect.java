@@ -16,7 +16,9 @@ public class ChimeraLibraryDirect {
         Native.register(NativeLibrary.getInstance("chimera", opts));
     }
 
-    public static native int ch_scan(Pointer ch_database, String data, int length, int flags, Pointer scratch, ChimeraLibrary.match_event_handler callback, Pointer context);
+    public static native int ch_scan(Pointer ch_database, String data, int length, int flags, Pointer scratch, ChimeraLibrary.match_event_handler callback, ChimeraLibrary.error_event_handler onError, Pointer context);
+
+    public static native int ch_scan(Pointer ch_database, Pointer data, int length, int flags, Pointer scratch, ChimeraLibrary.match_event_handler callback, ChimeraLibrary.error_event_handler onError, Pointer context);
 
     public static native int hs_scan(Pointer database, String data, int length, int flags, Pointer scratch, ChimeraLibrary.match_event_handler callback, Pointer context);
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package io.carpe.hyperscan.jna;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.Structure;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class ExpressionInfoStruct extends Structure {
+
+    public int min_width;
+    public int max_width;
+    public byte unordered_matches;
+    public byte matches_at_eod;
+    public byte matches_only_at_eod;
+
+    public ExpressionInfoStruct() {
+        super();
+    }
+
+    public ExpressionInfoStruct(Pointer p) {
+        super(p);
+        this.read();
+    }
+
+    protected List<String> getFieldOrder() {
+        return Arrays.asList("min_width", "max_width", "unordered_matches", "matches_at_eod", "matches_only_at_eod");
+    }
+}
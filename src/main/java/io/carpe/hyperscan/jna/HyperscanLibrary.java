@@ -23,16 +23,24 @@ public interface HyperscanLibrary extends Library {
 
     int hs_valid_platform();
 
+    int hs_populate_platform(PlatformInfoStruct platform);
+
     int hs_free_database(Pointer database);
 
     int hs_expression_info(String expression, int flags, PointerByReference info, PointerByReference error);
 
     int hs_serialize_database(Pointer database, PointerByReference bytes, SizeTByReference length);
 
-    int hs_desezialize_database(Byte[] bytes, SizeT length, PointerByReference db);
+    int hs_deserialize_database(byte[] bytes, SizeT length, PointerByReference db);
+
+    int hs_deserialize_database_at(byte[] bytes, SizeT length, Pointer db);
+
+    int hs_serialized_database_size(byte[] bytes, SizeT length, SizeTByReference deserialized_size);
 
     int hs_database_size(Pointer database, SizeTByReference database_size);
 
+    int hs_stream_size(Pointer database, SizeTByReference stream_size);
+
     int hs_database_info(Pointer database, PointerByReference info);
 
     int hs_compile(String expression, int flags, int mode, Pointer platform, PointerByReference database,
@@ -44,6 +52,9 @@ public interface HyperscanLibrary extends Library {
     int hs_compile_ext_multi(String[] expressions, int[] flags, int[] ids, PatternBehaviourStruct[] ext, int elements,
                              int mode, Pointer platform, PointerByReference database, PointerByReference error);
 
+    int hs_compile_lit_multi(Pointer[] expressions, int[] flags, int[] ids, Pointer lens, int elements, int mode,
+                             Pointer platform, PointerByReference database, PointerByReference error);
+
     int hs_free_compile_error(CompileErrorStruct error);
 
     int hs_alloc_scratch(Pointer database, PointerByReference scratch);
@@ -54,7 +65,38 @@ public interface HyperscanLibrary extends Library {
 
     int hs_scan(Pointer database, String data, int length, int flags, Pointer scratch, match_event_handler callback, Pointer context);
 
+    int hs_open_stream(Pointer database, int flags, PointerByReference stream);
+
+    int hs_scan_stream(Pointer stream, Pointer data, int length, int flags, Pointer scratch, match_event_handler callback, Pointer context);
+
+    int hs_close_stream(Pointer stream, Pointer scratch, match_event_handler callback, Pointer context);
+
+    int hs_reset_stream(Pointer stream, int flags, Pointer scratch, match_event_handler callback, Pointer context);
+
+    int hs_compress_stream(Pointer stream, Pointer buf, SizeT buf_space, SizeTByReference used_space);
+
+    int hs_expand_stream(Pointer database, PointerByReference stream, Pointer buf, SizeT buf_size);
+
+    int hs_reset_and_expand_stream(Pointer to_stream, Pointer buf, SizeT buf_size, Pointer scratch,
+                                   match_event_handler callback, Pointer context);
+
+    int hs_set_database_allocator(alloc_t alloc_func, free_t free_func);
+
+    int hs_set_misc_allocator(alloc_t alloc_func, free_t free_func);
+
+    int hs_set_scratch_allocator(alloc_t alloc_func, free_t free_func);
+
+    int hs_set_stream_allocator(alloc_t alloc_func, free_t free_func);
+
     interface match_event_handler extends Callback {
         int invoke(int id, long from, long to, int flags, Pointer context);
     }
+
+    interface alloc_t extends Callback {
+        Pointer invoke(SizeT size);
+    }
+
+    interface free_t extends Callback {
+        void invoke(Pointer ptr);
+    }
 }
\ No newline at end of file
@@ -17,4 +17,8 @@ public class HyperscanLibraryDirect {
     }
 
     public static native int hs_scan(Pointer database, String data, int length, int flags, Pointer scratch, HyperscanLibrary.match_event_handler callback, Pointer context);
+
+    public static native int hs_scan(Pointer database, Pointer data, int length, int flags, Pointer scratch, HyperscanLibrary.match_event_handler callback, Pointer context);
+
+    public static native int hs_scan_stream(Pointer stream, Pointer data, int length, int flags, Pointer scratch, HyperscanLibrary.match_event_handler callback, Pointer context);
 }
\ No newline at end of file
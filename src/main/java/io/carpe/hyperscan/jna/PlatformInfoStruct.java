@@ -0,0 +1,18 @@
+package io.carpe.hyperscan.jna;
+
+import com.sun.jna.Structure;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class PlatformInfoStruct extends Structure {
+
+    public int tune;
+    public long cpu_features;
+    public long reserved1;
+    public long reserved2;
+
+    protected List<String> getFieldOrder() {
+        return Arrays.asList("tune", "cpu_features", "reserved1", "reserved2");
+    }
+}
@@ -0,0 +1,25 @@
+package io.carpe.hyperscan.wrapper;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Provides the native memory of databases, scratch spaces and streams, see {@link Allocators}.
+ * <p>
+ * Implementations are called from any thread scanning or compiling, so they must be thread safe.
+ */
+public interface Allocator {
+    /**
+     * Allocate native memory
+     *
+     * @param size count of bytes
+     * @return memory aligned to at least 8 bytes, or null if out of memory
+     */
+    Pointer allocate(long size);
+
+    /**
+     * Free memory returned by {@link #allocate(long)}
+     *
+     * @param pointer memory to free, never null
+     */
+    void free(Pointer pointer);
+}
@@ -0,0 +1,164 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.HyperscanUtils;
+import io.carpe.hyperscan.jna.ChimeraLibrary;
+import io.carpe.hyperscan.jna.HyperscanLibrary;
+import io.carpe.hyperscan.jna.SizeT;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Routes the native allocations of Hyperscan and Chimera to Java configured allocators, per category.
+ * <p>
+ * Allocators are global to the process. Memory has to be freed by the allocator which allocated it, so set them
+ * before the first database of a category is compiled or deserialized, and don't change them while databases,
+ * scratch spaces or streams of the category are alive.
+ */
+public final class Allocators {
+    private static final Map<Category, Hook> HOOKS = new EnumMap<>(Category.class);
+
+    private Allocators() {
+    }
+
+    /**
+     * Categories of native allocations
+     */
+    public enum Category {
+        /**
+         * Compiled and deserialized databases
+         */
+        DATABASE,
+
+        /**
+         * Scratch spaces
+         */
+        SCRATCH,
+
+        /**
+         * Stream state of streaming databases, Hyperscan only
+         */
+        STREAM,
+
+        /**
+         * Everything else, like compile errors, expression info and serialized databases
+         */
+        MISC
+    }
+
+    /**
+     * Set the allocator of a category
+     *
+     * @param category  category of allocations
+     * @param allocator Allocator to use, or null to go back to malloc
+     * @throws HyperscanException if the engine rejects the allocator
+     */
+    public static synchronized void set(Category category, Allocator allocator) throws HyperscanException {
+        // the callbacks are referenced until replaced, so they are not collected while the engine holds them
+        final Hook hook = allocator == null ? null : new Hook(allocator);
+        final HyperscanLibrary.alloc_t alloc = hook == null ? null : hook.alloc;
+        final HyperscanLibrary.free_t free = hook == null ? null : hook.free;
+
+        switch (category) {
+            case DATABASE:
+                check(HyperscanLibrary.INSTANCE.hs_set_database_allocator(alloc, free));
+                check(ChimeraLibrary.INSTANCE.ch_set_database_allocator(alloc, free));
+                break;
+            case SCRATCH:
+                check(HyperscanLibrary.INSTANCE.hs_set_scratch_allocator(alloc, free));
+                check(ChimeraLibrary.INSTANCE.ch_set_scratch_allocator(alloc, free));
+                break;
+            case STREAM:
+                check(HyperscanLibrary.INSTANCE.hs_set_stream_allocator(alloc, free));
+                break;
+            case MISC:
+                check(HyperscanLibrary.INSTANCE.hs_set_misc_allocator(alloc, free));
+                check(ChimeraLibrary.INSTANCE.ch_set_misc_allocator(alloc, free));
+                break;
+        }
+
+        if (hook == null) {
+            HOOKS.remove(category);
+        } else {
+            HOOKS.put(category, hook);
+        }
+    }
+
+    /**
+     * Get the allocator of a category
+     *
+     * @param category category of allocations
+     * @return Allocator, or null if malloc is used
+     */
+    public static synchronized Allocator get(Category category) {
+        final Hook hook = HOOKS.get(category);
+        return hook == null ? null : hook.allocator;
+    }
+
+    /**
+     * Free memory the engine allocated in a category and handed over to the caller, like serialized databases
+     * and expression info
+     *
+     * @param category category of the allocation
+     * @param pointer  memory to free, may be null
+     */
+    public static void free(Category category, Pointer pointer) {
+        if (pointer == null)
+            return;
+
+        final Allocator allocator = get(category);
+
+        if (allocator == null) {
+            Native.free(Pointer.nativeValue(pointer));
+        } else {
+            allocator.free(pointer);
+        }
+    }
+
+    /**
+     * Set a new tracking allocator for every category, to account for all native memory of the engine
+     *
+     * @return TrackingAllocator of each category
+     * @throws HyperscanException if the engine rejects the allocators
+     */
+    public static synchronized Map<Category, TrackingAllocator> track() throws HyperscanException {
+        final Map<Category, TrackingAllocator> allocators = new EnumMap<>(Category.class);
+
+        for (final Category category : Category.values()) {
+            final TrackingAllocator allocator = new TrackingAllocator();
+            set(category, allocator);
+            allocators.put(category, allocator);
+        }
+
+        return allocators;
+    }
+
+    private static void check(int hsError) throws HyperscanException {
+        if (hsError != 0)
+            throw new HyperscanException("Failed to set allocator.", HyperscanUtils.hsErrorIntToException(hsError));
+    }
+
+    private static final class Hook {
+        private final Allocator allocator;
+        private final HyperscanLibrary.alloc_t alloc;
+        private final HyperscanLibrary.free_t free;
+
+        private Hook(Allocator allocator) {
+            this.allocator = allocator;
+            this.alloc = new HyperscanLibrary.alloc_t() {
+                public Pointer invoke(SizeT size) {
+                    return allocator.allocate(size.longValue());
+                }
+            };
+            this.free = new HyperscanLibrary.free_t() {
+                public void invoke(Pointer ptr) {
+                    if (ptr != null) {
+                        allocator.free(ptr);
+                    }
+                }
+            };
+        }
+    }
+}
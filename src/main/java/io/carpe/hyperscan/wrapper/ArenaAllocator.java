@@ -0,0 +1,166 @@
+package io.carpe.hyperscan.wrapper;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Allocator carving memory out of large chunks, meant for short lived stream state.
+ * <p>
+ * Allocations bump a pointer in the current chunk instead of calling malloc. A chunk is reused as soon as all of its
+ * allocations have been freed, so opening and closing many streams doesn't churn malloc, and the native memory held
+ * grows in steps of whole chunks. Allocations larger than a chunk are taken from malloc directly.
+ */
+public class ArenaAllocator implements Allocator {
+    private static final int HEADER_LENGTH = 16;
+    private static final int ALIGNMENT = 16;
+    private static final long LARGE = -1;
+
+    private final long chunkSize;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final ArrayDeque<Chunk> freeChunks = new ArrayDeque<>();
+    private Chunk current;
+    private long liveBytes;
+    private long peakBytes;
+    private long reservedBytes;
+
+    /**
+     * Create an arena
+     *
+     * @param chunkSize size of the chunks in bytes, should hold many stream states
+     */
+    public ArenaAllocator(long chunkSize) {
+        if (chunkSize < 4096) {
+            throw new IllegalArgumentException("Chunk size must be at least 4096 bytes");
+        }
+
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public synchronized Pointer allocate(long size) {
+        final long blockSize = (size + HEADER_LENGTH + ALIGNMENT - 1) & -ALIGNMENT;
+        final Pointer memory;
+
+        if (blockSize > chunkSize) {
+            final long original = Native.malloc(size + HEADER_LENGTH);
+            if (original == 0) {
+                return null;
+            }
+
+            memory = new Pointer(original + HEADER_LENGTH);
+            memory.setLong(-16, LARGE);
+            reservedBytes += size + HEADER_LENGTH;
+        } else {
+            if (current == null || current.used + blockSize > chunkSize) {
+                if (!nextChunk()) {
+                    return null;
+                }
+            }
+
+            memory = new Pointer(current.address + current.used + HEADER_LENGTH);
+            memory.setLong(-16, current.index);
+            current.used += blockSize;
+            current.live++;
+        }
+
+        memory.setLong(-8, size);
+        liveBytes += size;
+        peakBytes = Math.max(peakBytes, liveBytes);
+
+        return memory;
+    }
+
+    private boolean nextChunk() {
+        final Chunk retired = current;
+        current = freeChunks.poll();
+
+        if (current == null) {
+            final long address = Native.malloc(chunkSize);
+            if (address == 0) {
+                current = retired;
+                return false;
+            }
+
+            current = new Chunk(chunks.size(), address);
+            chunks.add(current);
+            reservedBytes += chunkSize;
+        }
+
+        if (retired != null && retired.live == 0) {
+            retired.used = 0;
+            freeChunks.push(retired);
+        }
+
+        return true;
+    }
+
+    @Override
+    public synchronized void free(Pointer pointer) {
+        final long chunkIndex = pointer.getLong(-16);
+        final long size = pointer.getLong(-8);
+        liveBytes -= size;
+
+        if (chunkIndex == LARGE) {
+            reservedBytes -= size + HEADER_LENGTH;
+            Native.free(Pointer.nativeValue(pointer) - HEADER_LENGTH);
+            return;
+        }
+
+        final Chunk chunk = chunks.get((int) chunkIndex);
+        chunk.live--;
+
+        if (chunk.live == 0) {
+            chunk.used = 0;
+
+            if (chunk != current) {
+                freeChunks.push(chunk);
+            }
+        }
+    }
+
+    /**
+     * Get the count of bytes allocated and not freed yet
+     *
+     * @return count of bytes
+     */
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * Get the highest count of live bytes so far
+     *
+     * @return count of bytes
+     */
+    public synchronized long getPeakBytes() {
+        return peakBytes;
+    }
+
+    /**
+     * Get the count of bytes taken from malloc, including the unused parts of chunks
+     *
+     * @return count of bytes
+     */
+    public synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * Holds the bump offset and the count of live allocations of a chunk
+     */
+    private static final class Chunk {
+        private final int index;
+        private final long address;
+        private long used;
+        private int live;
+
+        private Chunk(int index, long address) {
+            this.index = index;
+            this.address = address;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.HyperscanUtils;
+import io.carpe.hyperscan.db.ChimeraDatabase;
+import io.carpe.hyperscan.jna.BatchScanLibrary;
+import io.carpe.hyperscan.jna.ChimeraLibrary;
+import io.carpe.hyperscan.jna.ChimeraLibraryDirect;
+import io.carpe.hyperscan.wrapper.flags.ChimeraExpressionFlag;
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.IntByReference;
+import com.sun.jna.ptr.PointerByReference;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Scanner for many small inputs, like millions of log lines or messages of a few hundred bytes each.
+ * <p>
+ * For short inputs the cost of calling into the engine rivals the scan itself. The inputs of a batch are packed into
+ * one native buffer, and if the optional native shim (libch4jbatch, see src/main/native) is on the library path,
+ * the whole batch is scanned with a single downcall, which writes matches into a native result array instead of
+ * calling back into Java for each one. Without the shim the inputs are scanned one by one from the packed buffer.
+ * Either way, inputs shorter than the shortest match of the database are not packed at all.
+ * <p>
+ * In case of multithreaded scanning, you need one scanner instance per thread.
+ */
+public class BatchScanner implements Closeable {
+    /**
+     * Default count of match records in the native result array
+     */
+    public static final int DEFAULT_RESULT_CAPACITY = 4096;
+
+    // struct ch4j_match_t { uint32_t doc; uint32_t id; uint64_t from; uint64_t to; }
+    private static final int RECORD_SIZE = 24;
+
+    private final BatchScanLibrary shim;
+    private final IntByReference resultCount = new IntByReference();
+    private final ArrayList<long[]> fallbackMatches = new ArrayList<>();
+    private final ChimeraLibrary.match_event_handler fallbackHandler = new ChimeraLibrary.match_event_handler() {
+        public int invoke(int id, long from, long to, int flags, Pointer context) {
+            long[] tuple = {fallbackDocument, id, from, to};
+            fallbackMatches.add(tuple);
+            return 0;
+        }
+    };
+    private int fallbackDocument;
+    private Memory data;
+    private Memory offsets;
+    private Memory results;
+    private int resultCapacity;
+    private PointerByReference scratchReference = new PointerByReference();
+    private Pointer scratch;
+
+    /**
+     * Create a scanner using the native shim if it is available
+     */
+    public BatchScanner() {
+        this(DEFAULT_RESULT_CAPACITY, true);
+    }
+
+    /**
+     * Create a scanner
+     *
+     * @param resultCapacity initial count of match records in the native result array, it grows if a single
+     *                       input has more matches
+     * @param useShim        false to always scan input by input, even if the native shim is available
+     */
+    public BatchScanner(int resultCapacity, boolean useShim) {
+        if (resultCapacity < 1) {
+            throw new IllegalArgumentException("Result capacity must be at least 1");
+        }
+
+        this.resultCapacity = resultCapacity;
+        this.shim = useShim ? BatchScanLibrary.INSTANCE : null;
+    }
+
+    /**
+     * Check if batches are scanned with a single downcall
+     *
+     * @return true if the native shim is used, otherwise false
+     */
+    public boolean isUsingShim() {
+        return shim != null;
+    }
+
+    /**
+     * Allocate a scratch space.  Must be called at least once with each
+     * database that will be used before scan is called.
+     *
+     * @param db Database containing expressions to use for matching
+     * @throws HyperscanException Throws if out of memory or platform not supported
+     *                            or if the allocation fails
+     */
+    public void allocScratch(final ChimeraDatabase db) throws HyperscanException {
+        if (scratchReference == null) {
+            scratchReference = new PointerByReference();
+        }
+
+        final int hsError = ChimeraLibrary.INSTANCE.ch_alloc_scratch(db.getPointer(), scratchReference);
+
+        if (hsError != 0)
+            throw new HyperscanException("Failed to allocScratch.", HyperscanUtils.hsErrorIntToException(hsError));
+
+        scratch = scratchReference.getValue();
+    }
+
+    /**
+     * scan each of the inputs for matches using a compiled expression database
+     * Can only be executed one at a time on a per instance basis
+     *
+     * @param db     Database containing expressions to use for matching
+     * @param inputs Strings to match against
+     * @return List of Matches for each input, in the order of the inputs
+     * @throws HyperscanException Throws if out of memory, platform not supported or database is null
+     */
+    public List<List<Match>> scan(final ChimeraDatabase db, final List<String> inputs) throws HyperscanException {
+        final int count = inputs.size();
+        final List<List<Match>> matches = new ArrayList<>(count);
+        final List<byte[]> encoded = new ArrayList<>(count);
+        // inputs shorter than the shortest possible match are left out of the batch
+        final int[] documents = new int[count];
+        int packed = 0;
+
+        for (int document = 0; document < count; document++) {
+            final byte[] input = inputs.get(document).getBytes(StandardCharsets.UTF_8);
+            encoded.add(input);
+            matches.add(new ArrayList<>());
+
+            if (input.length >= db.getMinWidth()) {
+                documents[packed++] = document;
+            }
+        }
+
+        pack(encoded, documents, packed);
+
+        if (shim != null) {
+            scanWithShim(db, documents, packed, inputs, encoded, matches);
+        } else {
+            scanOneByOne(db, documents, packed, inputs, encoded, matches);
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (matches.get(i).isEmpty()) {
+                matches.set(i, Collections.emptyList());
+            }
+        }
+
+        return matches;
+    }
+
+    private void pack(final List<byte[]> encoded, final int[] documents, final int packed) {
+        long length = 0;
+        for (int i = 0; i < packed; i++) {
+            length += encoded.get(documents[i]).length;
+        }
+
+        if (data == null || data.size() < Math.max(1, length)) {
+            data = new Memory(Math.max(1, length));
+        }
+
+        if (offsets == null || offsets.size() < (packed + 1) * 8L) {
+            offsets = new Memory((packed + 1) * 8L);
+        }
+
+        long offset = 0;
+        for (int i = 0; i < packed; i++) {
+            final byte[] input = encoded.get(documents[i]);
+            offsets.setLong(i * 8L, offset);
+            data.write(offset, input, 0, input.length);
+            offset += input.length;
+        }
+        offsets.setLong(packed * 8L, offset);
+    }
+
+    private void scanWithShim(final ChimeraDatabase db, final int[] documents, final int packed, final List<String> inputs,
+                              final List<byte[]> encoded, final List<List<Match>> matches) throws HyperscanException {
+        int next = 0;
+
+        while (next < packed) {
+            if (results == null || results.size() < (long) resultCapacity * RECORD_SIZE) {
+                results = new Memory((long) resultCapacity * RECORD_SIZE);
+            }
+
+            final int scanned = shim.ch4j_batch_scan(db.getPointer(), scratch, data, offsets, next, packed,
+                    results, resultCapacity, resultCount);
+
+            if (scanned < 0)
+                throw new HyperscanException("Failed to scan.", HyperscanUtils.hsErrorIntToException(scanned));
+
+            final int records = resultCount.getValue();
+
+            // read the whole batch of records in one pass
+            for (int i = 0; i < records; i++) {
+                final long record = (long) i * RECORD_SIZE;
+                final int document = documents[results.getInt(record)];
+
+                matches.get(document).add(toMatch(db, inputs.get(document), encoded.get(document),
+                        results.getInt(record + 4), results.getLong(record + 8), results.getLong(record + 16)));
+            }
+
+            if (scanned == next && records == 0) {
+                // a single input has more matches than the array can hold
+                resultCapacity *= 2;
+            }
+
+            next = scanned;
+        }
+    }
+
+    private void scanOneByOne(final ChimeraDatabase db, final int[] documents, final int packed, final List<String> inputs,
+                              final List<byte[]> encoded, final List<List<Match>> matches) throws HyperscanException {
+        for (int i = 0; i < packed; i++) {
+            final int document = documents[i];
+
+            fallbackDocument = document;
+            fallbackMatches.clear();
+
+            final int hsError = ChimeraLibraryDirect.ch_scan(db.getPointer(), data.share(offsets.getLong(i * 8L)),
+                    encoded.get(document).length, 0, scratch, fallbackHandler, null, Pointer.NULL);
+
+            if (hsError != 0)
+                throw new HyperscanException("Failed to scan.", HyperscanUtils.hsErrorIntToException(hsError));
+
+            for (final long[] tuple : fallbackMatches) {
+                matches.get(document).add(toMatch(db, inputs.get(document), encoded.get(document),
+                        (int) tuple[1], tuple[2], tuple[3]));
+            }
+        }
+
+        fallbackMatches.clear();
+    }
+
+    private static Match toMatch(final ChimeraDatabase db, final String input, final byte[] utf8bytes,
+                                 final int id, final long from, final long to) {
+        final ChimeraExpression matchingExpression = db.getExpression(id);
+        // byte offsets are char indexes already if the input is all ASCII
+        final boolean ascii = utf8bytes.length == input.length();
+        final int startIndex = ascii ? (int) from : charIndex(utf8bytes, (int) from);
+        final int endIndex = ascii ? (int) to : charIndex(utf8bytes, (int) to);
+
+        if (matchingExpression.getFlags().contains(ChimeraExpressionFlag.EXTRACT_MATCHED)) {
+            return new Match(startIndex, endIndex, input.substring(startIndex, endIndex), matchingExpression);
+        }
+
+        return new Match(startIndex, endIndex, matchingExpression);
+    }
+
+    /**
+     * Convert a byte offset in UTF-8 bytes into a char index of the string, counting two chars for
+     * four byte sequences just like the surrogate pairs of the string
+     */
+    private static int charIndex(final byte[] utf8bytes, final int byteOffset) {
+        int chars = 0;
+
+        for (int i = 0; i < byteOffset; i++) {
+            final int b = utf8bytes[i] & 0xFF;
+
+            if ((b & 0xC0) != 0x80) {
+                chars += b >= 0xF0 ? 2 : 1;
+            }
+        }
+
+        return chars;
+    }
+
+    @Override
+    protected void finalize() {
+        //check and setting scratch pointer to null to avoid double free
+        if (scratch != null) {
+            ChimeraLibrary.INSTANCE.ch_free_scratch(scratch);
+            scratch = null;
+            scratchReference = null;
+        }
+    }
+
+    @Override
+    public void close() throws HyperscanException {
+        this.finalize();
+    }
+}
@@ -0,0 +1,27 @@
+package io.carpe.hyperscan.wrapper;
+
+/**
+ * Cancels scans cooperatively from another thread, for example when the client of a request went away.
+ * <p>
+ * Like a {@link Deadline}, cancellation is checked when the engine reports a match. A token can be shared by
+ * several scans, and once cancelled it stays cancelled.
+ */
+public final class CancellationToken {
+    private volatile boolean cancelled;
+
+    /**
+     * Cancel all scans using this token
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Check if the token has been cancelled
+     *
+     * @return true if cancelled, otherwise false
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
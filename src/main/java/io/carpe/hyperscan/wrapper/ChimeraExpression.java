@@ -2,12 +2,8 @@ package io.carpe.hyperscan.wrapper;
 
 import io.carpe.hyperscan.HyperscanUtils;
 import io.carpe.hyperscan.db.ChimeraDatabase;
-import io.carpe.hyperscan.jna.CompileErrorStruct;
-import io.carpe.hyperscan.jna.HyperscanLibrary;
 import io.carpe.hyperscan.wrapper.flags.ChimeraExpressionFlag;
-import com.sun.jna.Native;
-import com.sun.jna.Pointer;
-import com.sun.jna.ptr.PointerByReference;
+import io.carpe.hyperscan.wrapper.flags.HyperscanExpressionFlag;
 
 import java.util.EnumSet;
 import java.util.Optional;
@@ -127,30 +123,54 @@ public class ChimeraExpression implements Expression {
      * @return ValidationResult results of validation
      */
     public ValidationResult validate() {
+        final ExpressionInfo.Analysis analysis = analyze();
+
         return new ValidationResult(
-                hyperscanValidate().orElse(null),
-                chimeraValidate().orElse(null)
+                analysis.error,
+                chimeraValidate().orElse(null),
+                analysis.info
         );
     }
 
-    private Optional<String> hyperscanValidate() {
-        final PointerByReference info = new PointerByReference();
-        final PointerByReference error = new PointerByReference();
-
-        final int hsResult = HyperscanLibrary.INSTANCE.hs_expression_info(this.expression, HyperscanUtils.bitEnumSetToInt(this.flags), info, error);
+    /**
+     * Get the properties of the expression as analyzed by hyperscan, like the minimum and maximum width of its matches
+     *
+     * @return info if the expression is valid for hyperscan, otherwise empty optional
+     */
+    public Optional<ExpressionInfo> getExpressionInfo() {
+        return Optional.ofNullable(analyze().info);
+    }
 
-        String errorMessage = null;
+    /**
+     * Get the minimum count of bytes an input needs to have to be matched by the expression.
+     * For expressions which are only valid for chimera, this is a lower bound taken from the
+     * prefiltering approximation of the expression.
+     *
+     * @return count of bytes, zero if unknown or if the expression can match an empty input
+     */
+    public long getMinInputLength() {
+        final ExpressionInfo.Analysis analysis = analyze();
 
-        if (hsResult != 0) {
-            final CompileErrorStruct errorStruct = new CompileErrorStruct(error.getValue());
-            errorMessage = errorStruct.message;
-            errorStruct.setAutoRead(false);
-            HyperscanLibrary.INSTANCE.hs_free_compile_error(errorStruct);
-        } else {
-            Native.free(Pointer.nativeValue(info.getValue()));
+        if (analysis.info != null) {
+            return analysis.info.getMinWidth();
         }
 
-        return Optional.ofNullable(errorMessage);
+        return getPrefilterInfo().map(ExpressionInfo::getMinWidth).orElse(0L);
+    }
+
+    /**
+     * Get the properties of the prefiltering approximation of the expression, which accepts a superset of the inputs
+     * matched by the full PCRE expression
+     *
+     * @return info if hyperscan can approximate the expression, otherwise empty optional
+     */
+    public Optional<ExpressionInfo> getPrefilterInfo() {
+        return Optional.ofNullable(ExpressionInfo.analyze(this.expression,
+                HyperscanUtils.bitEnumSetToInt(this.flags) | HyperscanExpressionFlag.PREFILTER.getBits()).info);
+    }
+
+    private ExpressionInfo.Analysis analyze() {
+        return ExpressionInfo.analyze(this.expression, HyperscanUtils.bitEnumSetToInt(this.flags));
     }
 
     private Optional<String> chimeraValidate() {
@@ -196,10 +216,12 @@ public class ChimeraExpression implements Expression {
     public class ValidationResult {
         private String hyperscanError;
         private String chimeraError;
+        private ExpressionInfo expressionInfo;
 
-        ValidationResult(String hyperscanError, String chimeraError) {
+        ValidationResult(String hyperscanError, String chimeraError, ExpressionInfo expressionInfo) {
             this.hyperscanError = hyperscanError;
             this.chimeraError = chimeraError;
+            this.expressionInfo = expressionInfo;
         }
 
 
@@ -247,5 +269,14 @@ public class ChimeraExpression implements Expression {
         public Optional<String> getChimeraErrorMessage() {
             return Optional.ofNullable(this.chimeraError);
         }
+
+        /**
+         * Get the properties of the expression as analyzed by hyperscan
+         *
+         * @return info if the expression is valid for hyperscan, otherwise empty optional
+         */
+        public Optional<ExpressionInfo> getExpressionInfo() {
+            return Optional.ofNullable(this.expressionInfo);
+        }
     }
 }
\ No newline at end of file
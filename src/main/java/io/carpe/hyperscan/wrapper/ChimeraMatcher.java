@@ -0,0 +1,214 @@
+package io.carpe.hyperscan.wrapper;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Drop-in replacement for {@link java.util.regex.Matcher} on hot paths, created by {@link ChimeraPattern#matcher}.
+ * <p>
+ * The input is scanned once on the first call to {@link #find()}, and the following calls step through the
+ * matches found. Like with {@link java.util.regex.Matcher}, matches don't overlap and positions are char indexes.
+ * Only the whole match is available, capturing groups are not.
+ * <p>
+ * Instances must not be shared between threads.
+ */
+public final class ChimeraMatcher {
+    private static final Comparator<Match> LEFTMOST_LONGEST = Comparator
+            .comparingLong(Match::getStartPosition)
+            .thenComparing(Comparator.comparingLong(Match::getEndPosition).reversed());
+
+    private final ChimeraPattern pattern;
+    private String input;
+    private List<Match> matches;
+    private int from;
+    private int next;
+    private Match current;
+
+    ChimeraMatcher(ChimeraPattern pattern, CharSequence input) {
+        if (input == null) {
+            throw new NullPointerException("Null value for input is not allowed");
+        }
+
+        this.pattern = pattern;
+        this.input = input.toString();
+    }
+
+    /**
+     * Find the next match
+     *
+     * @return true if there is another match, otherwise false
+     */
+    public boolean find() {
+        if (matches == null) {
+            matches = resolve(pattern.scan(input));
+        }
+
+        current = next < matches.size() ? matches.get(next++) : null;
+        return current != null;
+    }
+
+    /**
+     * Reset the matcher and find the first match starting at or after an index, the following calls to
+     * {@link #find()} continue from there.
+     * <p>
+     * The input is scanned again from the index, so matches may begin inside those found from the start. Unlike
+     * {@link java.util.regex.Matcher}, the index is where the input starts for the engine: lookbehinds and {@code \b}
+     * don't see the chars before it, and {@code ^} and {@code \A} match at it, so {@code ^a} finds a match in
+     * {@code "ba"} from index 1.
+     *
+     * @param start char index to search from
+     * @return true if there is a match, otherwise false
+     * @throws IndexOutOfBoundsException if start is negative or beyond the input
+     */
+    public boolean find(int start) {
+        if (start < 0 || start > input.length()) {
+            throw new IndexOutOfBoundsException("Illegal start index");
+        }
+
+        reset();
+
+        if (start > 0) {
+            final List<Match> found = resolve(pattern.scan(input.substring(start)));
+            final List<Match> shifted = new ArrayList<>(found.size());
+
+            for (final Match match : found) {
+                shifted.add(new Match(match.getStartPosition() + start, match.getEndPosition() + start,
+                        match.getMatchedExpression()));
+            }
+
+            matches = shifted;
+            from = start;
+        }
+
+        return find();
+    }
+
+    /**
+     * Check if the whole input matches
+     *
+     * @return true if the whole input matches, otherwise false
+     */
+    public boolean matches() {
+        reset();
+        final List<Match> whole = pattern.anchored().scan(input);
+        if (whole.isEmpty())
+            return false;
+
+        // nothing is left to find after the whole input
+        current = new Match(0, input.length(), whole.get(0).getMatchedExpression());
+        next = Integer.MAX_VALUE;
+        return true;
+    }
+
+    /**
+     * Get the start of the current match
+     *
+     * @return char index of the first char of the match
+     * @throws IllegalStateException if there is no current match
+     */
+    public int start() {
+        return (int) match().getStartPosition();
+    }
+
+    /**
+     * Get the end of the current match
+     *
+     * @return char index after the last char of the match
+     * @throws IllegalStateException if there is no current match
+     */
+    public int end() {
+        return (int) match().getEndPosition();
+    }
+
+    /**
+     * Get the text of the current match
+     *
+     * @return matched text
+     * @throws IllegalStateException if there is no current match
+     */
+    public String group() {
+        final Match match = match();
+        return input.substring((int) match.getStartPosition(), (int) match.getEndPosition());
+    }
+
+    /**
+     * Get the pattern of this matcher
+     *
+     * @return ChimeraPattern
+     */
+    public ChimeraPattern pattern() {
+        return pattern;
+    }
+
+    /**
+     * Reset the matcher, so the next find starts over at the beginning of the input
+     *
+     * @return this matcher
+     */
+    public ChimeraMatcher reset() {
+        if (from != 0) {
+            // the matches were found from an index, the next find starts over from the beginning
+            matches = null;
+            from = 0;
+        }
+
+        next = 0;
+        current = null;
+        return this;
+    }
+
+    /**
+     * Reset the matcher with a new input
+     *
+     * @param input CharSequence to match against
+     * @return this matcher
+     */
+    public ChimeraMatcher reset(CharSequence input) {
+        if (input == null) {
+            throw new NullPointerException("Null value for input is not allowed");
+        }
+
+        this.input = input.toString();
+        this.matches = null;
+        this.from = 0;
+        return reset();
+    }
+
+    private Match match() {
+        if (current == null) {
+            throw new IllegalStateException("No match available");
+        }
+
+        return current;
+    }
+
+    /**
+     * Drop matches overlapping an earlier one, like consecutive searches of {@link java.util.regex.Matcher} would
+     *
+     * @return the remaining matches ordered by start position
+     */
+    static List<Match> resolve(final List<Match> matches) {
+        if (matches.size() < 2)
+            return matches;
+
+        final List<Match> sorted = new ArrayList<>(matches);
+        sorted.sort(LEFTMOST_LONGEST);
+
+        final List<Match> resolved = new ArrayList<>(sorted.size());
+        long end = -1;
+        long emptyAt = -1;
+
+        for (final Match match : sorted) {
+            final boolean empty = match.getEndPosition() == match.getStartPosition();
+
+            if (match.getStartPosition() >= end && !(empty && match.getStartPosition() == emptyAt)) {
+                resolved.add(match);
+                end = match.getEndPosition();
+                emptyAt = empty ? match.getStartPosition() : -1;
+            }
+        }
+
+        return resolved;
+    }
+}
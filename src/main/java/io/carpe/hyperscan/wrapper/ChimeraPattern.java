@@ -0,0 +1,238 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.db.ChimeraDatabase;
+import io.carpe.hyperscan.db.CompileCache;
+import io.carpe.hyperscan.db.CompileErrorException;
+import io.carpe.hyperscan.wrapper.flags.ChimeraExpressionFlag;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Drop-in replacement for {@link Pattern} on hot paths, so call sites like
+ * {@code Pattern.compile(regex).matcher(input).find()} can move to Chimera by changing the class names only.
+ * <p>
+ * Compiled patterns are cached by expression and flags, so compiling the same expression again in a loop returns
+ * the cached instance, and their databases are shared through a {@link CompileCache}. Every thread scans with its
+ * own {@link Scanner}, whose scratch space is reused for all patterns.
+ * <p>
+ * Case insensitive patterns always fold case the Unicode way, as if {@code UNICODE_CASE} was set, while
+ * {@link Pattern#CASE_INSENSITIVE} on its own only folds US-ASCII letters.
+ * <p>
+ * Instances can be shared between threads, unlike their matchers.
+ */
+public final class ChimeraPattern {
+    private static final int SUPPORTED_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.DOTALL | Pattern.MULTILINE
+            | Pattern.UNICODE_CASE | Pattern.UNICODE_CHARACTER_CLASS | Pattern.COMMENTS | Pattern.LITERAL;
+    private static final int CACHE_SIZE = 1024;
+
+    private static final CompileCache DATABASES = new CompileCache();
+
+    private static final Map<String, ChimeraPattern> PATTERNS = Collections.synchronizedMap(
+            new LinkedHashMap<String, ChimeraPattern>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ChimeraPattern> eldest) {
+                    // evicted databases are released once their last matcher is collected
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    private static final ThreadLocal<ThreadScanner> SCANNERS = ThreadLocal.withInitial(ThreadScanner::new);
+
+    private final String regex;
+    private final int flags;
+    private final ChimeraDatabase database;
+    private volatile ChimeraPattern anchored;
+
+    private ChimeraPattern(String regex, int flags, ChimeraDatabase database) {
+        this.regex = regex;
+        this.flags = flags;
+        this.database = database;
+    }
+
+    /**
+     * Compile an expression, or get the cached pattern of an earlier compile
+     *
+     * @param regex expression in PCRE syntax
+     * @return ChimeraPattern
+     * @throws PatternSyntaxException if the expression is invalid
+     */
+    public static ChimeraPattern compile(String regex) {
+        return compile(regex, 0);
+    }
+
+    /**
+     * Compile an expression, or get the cached pattern of an earlier compile
+     *
+     * @param regex expression in PCRE syntax
+     * @param flags flags of {@link Pattern}, {@code CASE_INSENSITIVE}, {@code DOTALL}, {@code MULTILINE},
+     *              {@code UNICODE_CASE}, {@code UNICODE_CHARACTER_CLASS}, {@code COMMENTS} and {@code LITERAL}
+     *              are supported, {@code UNICODE_CASE} is accepted but has no effect since case insensitive
+     *              patterns fold case the Unicode way anyway
+     * @return ChimeraPattern
+     * @throws PatternSyntaxException   if the expression is invalid
+     * @throws IllegalArgumentException if an unsupported flag is set
+     */
+    public static ChimeraPattern compile(String regex, int flags) {
+        if (regex == null) {
+            throw new NullPointerException("Null value for regex is not allowed");
+        }
+
+        if ((flags & ~SUPPORTED_FLAGS) != 0) {
+            throw new IllegalArgumentException("Unsupported flags " + Integer.toHexString(flags & ~SUPPORTED_FLAGS));
+        }
+
+        final String key = flags + ":" + regex;
+        final ChimeraPattern cached = PATTERNS.get(key);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        // concurrent first compiles of the same expression share the database through the compile cache
+        final ChimeraPattern pattern = new ChimeraPattern(regex, flags, compileDatabase(toExpression(regex, flags)));
+        final ChimeraPattern raced = PATTERNS.putIfAbsent(key, pattern);
+        return raced == null ? pattern : raced;
+    }
+
+    /**
+     * Compile an expression and check if it matches a whole input
+     *
+     * @param regex expression in PCRE syntax
+     * @param input CharSequence to match against
+     * @return true if the whole input matches, otherwise false
+     * @throws PatternSyntaxException if the expression is invalid
+     */
+    public static boolean matches(String regex, CharSequence input) {
+        return compile(regex).matcher(input).matches();
+    }
+
+    /**
+     * Create a matcher finding the matches of this pattern in an input
+     *
+     * @param input CharSequence to match against
+     * @return ChimeraMatcher
+     */
+    public ChimeraMatcher matcher(CharSequence input) {
+        return new ChimeraMatcher(this, input);
+    }
+
+    /**
+     * Get the compiled expression
+     *
+     * @return expression as passed to compile
+     */
+    public String pattern() {
+        return regex;
+    }
+
+    /**
+     * Get the flags of the compiled expression
+     *
+     * @return flags of {@link Pattern} as passed to compile
+     */
+    public int flags() {
+        return flags;
+    }
+
+    @Override
+    public String toString() {
+        return regex;
+    }
+
+    /**
+     * scan a whole input with the scanner of the current thread
+     *
+     * @return matches with UTF-16 indexes, in the order reported
+     */
+    List<Match> scan(String input) {
+        try {
+            return SCANNERS.get().prepare(database).scan(database, input, OffsetUnit.UTF16);
+        } catch (final HyperscanException e) {
+            throw new IllegalStateException("Failed to scan", e);
+        }
+    }
+
+    /**
+     * Get the pattern matching this expression only against whole inputs
+     */
+    ChimeraPattern anchored() {
+        if (anchored == null) {
+            final String wrapped;
+
+            if ((flags & Pattern.LITERAL) != 0) {
+                wrapped = Pattern.quote(regex);
+            } else if ((flags & Pattern.COMMENTS) != 0) {
+                // a trailing comment would swallow the closing group, a newline ends it
+                wrapped = regex + "\n";
+            } else {
+                wrapped = regex;
+            }
+
+            anchored = compile("\\A(?:" + wrapped + ")\\z", flags & ~Pattern.LITERAL);
+        }
+
+        return anchored;
+    }
+
+    private static ChimeraExpression toExpression(String regex, int flags) {
+        final EnumSet<ChimeraExpressionFlag> chimeraFlags = EnumSet.of(ChimeraExpressionFlag.UTF8);
+        String expression = regex;
+
+        if ((flags & Pattern.LITERAL) != 0) {
+            expression = Pattern.quote(expression);
+        } else if ((flags & Pattern.COMMENTS) != 0) {
+            expression = "(?x)" + expression;
+        }
+
+        if ((flags & Pattern.CASE_INSENSITIVE) != 0)
+            chimeraFlags.add(ChimeraExpressionFlag.CASELESS);
+        if ((flags & Pattern.DOTALL) != 0)
+            chimeraFlags.add(ChimeraExpressionFlag.DOTALL);
+        if ((flags & Pattern.MULTILINE) != 0)
+            chimeraFlags.add(ChimeraExpressionFlag.MULTILINE);
+        if ((flags & Pattern.UNICODE_CHARACTER_CLASS) != 0)
+            chimeraFlags.add(ChimeraExpressionFlag.UCP);
+
+        return new ChimeraExpression(expression, chimeraFlags);
+    }
+
+    private static ChimeraDatabase compileDatabase(ChimeraExpression expression) {
+        try {
+            return DATABASES.compile(Collections.singletonList(expression));
+        } catch (final CompileErrorException e) {
+            throw new PatternSyntaxException(e.getMessage(), expression.getExpression(), -1);
+        } catch (final HyperscanException e) {
+            throw new IllegalStateException("Failed to compile " + expression.getExpression(), e);
+        }
+    }
+
+    /**
+     * Scanner of a thread, with its scratch space grown for every database scanned so far
+     */
+    private static final class ThreadScanner {
+        private final Scanner scanner = new Scanner();
+        private final Map<ChimeraDatabase, Boolean> allocatedFor = new WeakHashMap<>();
+
+        Scanner prepare(ChimeraDatabase database) throws HyperscanException {
+            if (allocatedFor.put(database, Boolean.TRUE) == null) {
+                try {
+                    scanner.allocScratch(database);
+                } catch (final HyperscanException e) {
+                    allocatedFor.remove(database);
+                    throw e;
+                }
+            }
+
+            return scanner;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.carpe.hyperscan.wrapper;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time after which a scan is stopped, measured with {@link System#nanoTime()}.
+ * <p>
+ * The engine can only be stopped when it reports a match, so a deadline is checked on matches. A scan finding no
+ * matches at all runs to its end. Use match limits on the database to bound the time spent without matches.
+ */
+public final class Deadline {
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Create a deadline some time from now
+     *
+     * @param timeout time until the deadline
+     * @param unit    unit of the timeout
+     * @return Deadline
+     */
+    public static Deadline after(long timeout, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * Create a deadline some time from now
+     *
+     * @param timeout time until the deadline
+     * @return Deadline
+     */
+    public static Deadline after(Duration timeout) {
+        return after(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Check if the deadline has passed
+     *
+     * @return true if expired, otherwise false
+     */
+    public boolean isExpired() {
+        return System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * Get the time left until the deadline
+     *
+     * @param unit unit of the result
+     * @return time left, negative if expired
+     */
+    public long timeRemaining(TimeUnit unit) {
+        return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,121 @@
+package io.carpe.hyperscan.wrapper;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Sorted positions of the record delimiters and newlines within a block of bytes.
+ * <p>
+ * The index is built in a single pass that tests eight bytes at a time, so blocks without delimiters in long
+ * stretches are skipped quickly. Positions are absolute indexes into the indexed buffer.
+ */
+final class DelimiterIndex {
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final byte NEWLINE = '\n';
+
+    private final byte delimiter;
+    private final long delimiterPattern;
+    private int[] delimiters = new int[1024];
+    private int delimiterCount;
+    private int[] newlines;
+    private int newlineCount;
+
+    DelimiterIndex(byte delimiter) {
+        this.delimiter = delimiter;
+        this.delimiterPattern = LOW_BITS * (delimiter & 0xFF);
+        this.newlines = delimiter == NEWLINE ? null : new int[1024];
+    }
+
+    /**
+     * Index the bytes in [from, to) of the buffer, replacing any previous content of the index
+     */
+    void build(final ByteBuffer block, final int from, final int to) {
+        delimiterCount = 0;
+        newlineCount = 0;
+
+        final long newlinePattern = LOW_BITS * NEWLINE;
+        int i = from;
+
+        for (; i + 8 <= to; i += 8) {
+            final long word = block.getLong(i);
+            final boolean delimiterInWord = hasZeroByte(word ^ delimiterPattern);
+            final boolean newlineInWord = newlines != null && hasZeroByte(word ^ newlinePattern);
+
+            if (delimiterInWord || newlineInWord) {
+                for (int j = i; j < i + 8; j++) {
+                    add(block.get(j), j);
+                }
+            }
+        }
+
+        for (; i < to; i++) {
+            add(block.get(i), i);
+        }
+    }
+
+    private static boolean hasZeroByte(final long word) {
+        return ((word - LOW_BITS) & ~word & HIGH_BITS) != 0;
+    }
+
+    private void add(final byte b, final int position) {
+        if (b == delimiter) {
+            if (delimiterCount == delimiters.length) {
+                delimiters = Arrays.copyOf(delimiters, delimiterCount * 2);
+            }
+            delimiters[delimiterCount++] = position;
+        } else if (b == NEWLINE && newlines != null) {
+            if (newlineCount == newlines.length) {
+                newlines = Arrays.copyOf(newlines, newlineCount * 2);
+            }
+            newlines[newlineCount++] = position;
+        }
+    }
+
+    /**
+     * @return count of delimiters in the index
+     */
+    int getDelimiterCount() {
+        return delimiterCount;
+    }
+
+    /**
+     * @return count of newlines in the index, delimiters included if they are newlines
+     */
+    int getNewlineCount() {
+        return newlines == null ? delimiterCount : newlineCount;
+    }
+
+    /**
+     * @return position of the last delimiter, or -1 if there is none
+     */
+    int lastDelimiter() {
+        return delimiterCount == 0 ? -1 : delimiters[delimiterCount - 1];
+    }
+
+    /**
+     * @return count of delimiters positioned before the given position
+     */
+    int delimitersBefore(final int position) {
+        return countBefore(delimiters, delimiterCount, position);
+    }
+
+    /**
+     * @return count of newlines positioned before the given position
+     */
+    int newlinesBefore(final int position) {
+        return newlines == null ? delimitersBefore(position) : countBefore(newlines, newlineCount, position);
+    }
+
+    /**
+     * @return position of the n-th delimiter
+     */
+    int delimiterAt(final int n) {
+        return delimiters[n];
+    }
+
+    private static int countBefore(final int[] positions, final int count, final int position) {
+        final int index = Arrays.binarySearch(positions, 0, count, position);
+        return index >= 0 ? index : -index - 1;
+    }
+}
@@ -0,0 +1,133 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.jna.CompileErrorStruct;
+import io.carpe.hyperscan.jna.ExpressionInfoStruct;
+import io.carpe.hyperscan.jna.HyperscanLibrary;
+import com.sun.jna.ptr.PointerByReference;
+
+/**
+ * Properties of an expression as analyzed by Hyperscan, useful for routing and for skipping inputs which are too
+ * short to ever match
+ */
+public class ExpressionInfo {
+    /**
+     * Value of the maximum width if matches can be arbitrarily wide
+     */
+    public static final long UNBOUNDED = 0xFFFFFFFFL;
+
+    final private long minWidth;
+    final private long maxWidth;
+    final private boolean unorderedMatches;
+    final private boolean matchesAtEod;
+    final private boolean matchesOnlyAtEod;
+
+    ExpressionInfo(ExpressionInfoStruct info) {
+        this.minWidth = Integer.toUnsignedLong(info.min_width);
+        this.maxWidth = Integer.toUnsignedLong(info.max_width);
+        this.unorderedMatches = info.unordered_matches != 0;
+        this.matchesAtEod = info.matches_at_eod != 0;
+        this.matchesOnlyAtEod = info.matches_only_at_eod != 0;
+    }
+
+    /**
+     * Analyze an expression with hs_expression_info
+     *
+     * @return either the info of the expression or the error message if it isn't valid for hyperscan
+     */
+    static Analysis analyze(String expression, int flags) {
+        final PointerByReference info = new PointerByReference();
+        final PointerByReference error = new PointerByReference();
+
+        final int hsResult = HyperscanLibrary.INSTANCE.hs_expression_info(expression, flags, info, error);
+
+        if (hsResult != 0) {
+            final CompileErrorStruct errorStruct = new CompileErrorStruct(error.getValue());
+            final String errorMessage = errorStruct.message;
+            errorStruct.setAutoRead(false);
+            HyperscanLibrary.INSTANCE.hs_free_compile_error(errorStruct);
+
+            return new Analysis(null, errorMessage);
+        }
+
+        try {
+            return new Analysis(new ExpressionInfo(new ExpressionInfoStruct(info.getValue())), null);
+        } finally {
+            Allocators.free(Allocators.Category.MISC, info.getValue());
+        }
+    }
+
+    /**
+     * Get the minimum width of a match
+     *
+     * @return count of bytes, zero if the expression can match an empty string
+     */
+    public long getMinWidth() {
+        return minWidth;
+    }
+
+    /**
+     * Get the maximum width of a match
+     *
+     * @return count of bytes, or {@link #UNBOUNDED}
+     */
+    public long getMaxWidth() {
+        return maxWidth;
+    }
+
+    /**
+     * Get a boolean indicating if matches can be arbitrarily wide
+     *
+     * @return true if the maximum width is unbounded, otherwise false
+     */
+    public boolean isMaxWidthUnbounded() {
+        return maxWidth == UNBOUNDED;
+    }
+
+    /**
+     * Get a boolean indicating if matches may be reported out of order of their end offsets
+     *
+     * @return true if matches can be out of order, otherwise false
+     */
+    public boolean hasUnorderedMatches() {
+        return unorderedMatches;
+    }
+
+    /**
+     * Get a boolean indicating if the expression can produce matches at the end of the input
+     *
+     * @return true if matches at the end of the input are possible, otherwise false
+     */
+    public boolean matchesAtEod() {
+        return matchesAtEod;
+    }
+
+    /**
+     * Get a boolean indicating if the expression can only produce matches at the end of the input
+     *
+     * @return true if matches are only possible at the end of the input, otherwise false
+     */
+    public boolean matchesOnlyAtEod() {
+        return matchesOnlyAtEod;
+    }
+
+    @Override
+    public String toString() {
+        return "ExpressionInfo{" +
+                "minWidth=" + minWidth +
+                ", maxWidth=" + (isMaxWidthUnbounded() ? "unbounded" : Long.toString(maxWidth)) +
+                ", unorderedMatches=" + unorderedMatches +
+                ", matchesAtEod=" + matchesAtEod +
+                ", matchesOnlyAtEod=" + matchesOnlyAtEod +
+                '}';
+    }
+
+    static class Analysis {
+        final ExpressionInfo info;
+        final String error;
+
+        private Analysis(ExpressionInfo info, String error) {
+            this.info = info;
+            this.error = error;
+        }
+    }
+}
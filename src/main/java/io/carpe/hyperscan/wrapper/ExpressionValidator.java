@@ -0,0 +1,123 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.HyperscanUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Validates many expressions at once, like a whole rule repository.
+ * <p>
+ * Validating a single expression compiles a throwaway Chimera database, so expressions are validated in parallel
+ * and the results are cached by expression string and flags. Expressions which didn't change since the last run
+ * are not validated again. Instances can be shared between threads.
+ */
+public class ExpressionValidator {
+    private final ConcurrentHashMap<String, ChimeraExpression.ValidationResult> results = new ConcurrentHashMap<>();
+    private final int parallelism;
+
+    /**
+     * Create a validator using all available processors
+     */
+    public ExpressionValidator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a validator
+     *
+     * @param parallelism maximum count of expressions validated at the same time
+     */
+    public ExpressionValidator(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Validate a single expression, or get the cached result of an equal one
+     *
+     * @param expression ChimeraExpression to validate
+     * @return ValidationResult results of validation
+     */
+    public ChimeraExpression.ValidationResult validate(ChimeraExpression expression) {
+        final String key = key(expression);
+        final ChimeraExpression.ValidationResult cached = results.get(key);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        // validate outside of the map, so long validations don't block unrelated keys
+        final ChimeraExpression.ValidationResult result = expression.validate();
+        final ChimeraExpression.ValidationResult raced = results.putIfAbsent(key, result);
+        return raced != null ? raced : result;
+    }
+
+    /**
+     * Validate expressions in parallel
+     *
+     * @param expressions ChimeraExpressions to validate
+     * @return results of validation in the order of the expressions
+     */
+    public Map<ChimeraExpression, ChimeraExpression.ValidationResult> validateAll(Collection<ChimeraExpression> expressions) {
+        final List<ChimeraExpression> pending = new ArrayList<>(expressions);
+        final Map<ChimeraExpression, ChimeraExpression.ValidationResult> validated = new LinkedHashMap<>();
+
+        if (pending.isEmpty()) {
+            return validated;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, pending.size()));
+
+        try {
+            final List<Future<ChimeraExpression.ValidationResult>> futures = new ArrayList<>(pending.size());
+            for (final ChimeraExpression expression : pending) {
+                futures.add(executor.submit(() -> validate(expression)));
+            }
+
+            for (int i = 0; i < pending.size(); i++) {
+                validated.put(pending.get(i), futures.get(i).get());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while validating expressions", e);
+        } catch (final ExecutionException e) {
+            throw new IllegalStateException("Failed to validate expressions", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return validated;
+    }
+
+    /**
+     * Get the count of cached results
+     *
+     * @return count of distinct expressions validated
+     */
+    public int getCacheSize() {
+        return results.size();
+    }
+
+    /**
+     * Drop all cached results
+     */
+    public void clear() {
+        results.clear();
+    }
+
+    private static String key(ChimeraExpression expression) {
+        return HyperscanUtils.bitEnumSetToInt(expression.getFlags()) + ":" + expression.getExpression();
+    }
+}
@@ -0,0 +1,187 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.db.ChimeraDatabase;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scans files by memory-mapping them, so their content is handed to the engine without ever being copied onto the
+ * heap.
+ * <p>
+ * Files larger than the region size are split into regions that are scanned in parallel, each by its own
+ * {@link Scanner}. Every region is scanned together with the bytes of its neighbours it overlaps, and only keeps
+ * the matches ending inside of it, so matches crossing a region boundary are found exactly once. Regions overlap by
+ * the maximum match width of the database, or by the configured overlap if that width is unbounded, unknown or larger.
+ * Matches wider than the overlap may be missed at region boundaries.
+ * <p>
+ * Positions of the matches are absolute byte offsets in the file. Instances can be shared between threads.
+ */
+public class FileScanner {
+    /**
+     * Default size of the regions a file is split into in bytes
+     */
+    public static final int DEFAULT_REGION_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Default count of bytes the regions overlap by at most
+     */
+    public static final int DEFAULT_OVERLAP = 64 * 1024;
+
+    private final int parallelism;
+    private final int regionSize;
+    private final int overlap;
+
+    /**
+     * Create a file scanner using all available processors and the default region size and overlap
+     */
+    public FileScanner() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_REGION_SIZE, DEFAULT_OVERLAP);
+    }
+
+    /**
+     * Create a file scanner
+     *
+     * @param parallelism maximum count of regions scanned at the same time
+     * @param regionSize  size of the regions a file is split into in bytes
+     * @param overlap     maximum count of bytes the regions overlap by
+     */
+    public FileScanner(int parallelism, int regionSize, int overlap) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+
+        if (regionSize < 1 || overlap < 0 || (long) regionSize + 2L * overlap > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Region size and overlap must fit in a single mapping");
+        }
+
+        this.parallelism = parallelism;
+        this.regionSize = regionSize;
+        this.overlap = overlap;
+    }
+
+    /**
+     * scan a file for matches using a compiled expression database
+     *
+     * @param db   Database containing expressions to use for matching
+     * @param path File to match against
+     * @return List of Matches with absolute byte offsets, ordered by region
+     * @throws IOException Throws if the file cannot be mapped, or a HyperscanException if the engine fails
+     */
+    public List<Match> scanFile(final ChimeraDatabase db, final Path path) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+
+            if (fileSize == 0) {
+                return Collections.emptyList();
+            }
+
+            final int regionCount = (int) Math.max(1, (fileSize + regionSize - 1) / regionSize);
+            final int workers = Math.min(parallelism, regionCount);
+            final int overlap = (int) Math.min(this.overlap, db.getMaxWidth());
+
+            if (workers == 1) {
+                final List<Match> matches = new ArrayList<>();
+
+                try (final Scanner scanner = new Scanner()) {
+                    scanner.allocScratch(db);
+
+                    for (int region = 0; region < regionCount; region++) {
+                        matches.addAll(scanRegion(scanner, db, channel, fileSize, overlap, region));
+                    }
+                }
+
+                return matches;
+            }
+
+            return scanParallel(db, channel, fileSize, overlap, regionCount, workers);
+        }
+    }
+
+    private List<Match> scanParallel(final ChimeraDatabase db, final FileChannel channel, final long fileSize,
+                                     final int overlap, final int regionCount, final int workers) throws IOException {
+        final List<List<Match>> regionMatches = new ArrayList<>(Collections.nCopies(regionCount, null));
+        final AtomicInteger nextRegion = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(workers);
+
+        try {
+            final List<Future<Void>> futures = new ArrayList<>(workers);
+
+            for (int worker = 0; worker < workers; worker++) {
+                futures.add(executor.submit(() -> {
+                    // scratch space can't be shared, so every worker brings its own scanner
+                    try (final Scanner scanner = new Scanner()) {
+                        scanner.allocScratch(db);
+
+                        int region;
+                        while ((region = nextRegion.getAndIncrement()) < regionCount) {
+                            final List<Match> matches = scanRegion(scanner, db, channel, fileSize, overlap, region);
+
+                            synchronized (regionMatches) {
+                                regionMatches.set(region, matches);
+                            }
+                        }
+                    }
+
+                    return null;
+                }));
+            }
+
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while scanning " + channel, e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+
+            throw new IOException("Failed to scan region", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final List<Match> matches = new ArrayList<>();
+        regionMatches.forEach(matches::addAll);
+        return matches;
+    }
+
+    private List<Match> scanRegion(final Scanner scanner, final ChimeraDatabase db, final FileChannel channel,
+                                   final long fileSize, final int overlap, final int region) throws IOException {
+        final long regionStart = (long) region * regionSize;
+        final long regionEnd = Math.min(fileSize, regionStart + regionSize);
+        final long windowStart = Math.max(0, regionStart - overlap);
+        final long windowEnd = Math.min(fileSize, regionEnd + overlap);
+
+        final MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+        final List<Match> windowMatches = scanner.scan(db, window);
+        final List<Match> matches = new ArrayList<>(windowMatches.size());
+
+        for (final Match match : windowMatches) {
+            final long start = windowStart + match.getStartPosition();
+            final long end = windowStart + match.getEndPosition();
+
+            // matches ending in the overlap belong to the neighbouring region, which also sees all of them
+            final boolean owned = (end > regionStart || region == 0) && end <= regionEnd;
+
+            if (owned) {
+                matches.add(new Match(start, end, match.getMatchedString(), match.getMatchedExpression()));
+            }
+        }
+
+        return matches;
+    }
+}
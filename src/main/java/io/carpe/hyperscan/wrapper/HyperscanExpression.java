@@ -1,12 +1,7 @@
 package io.carpe.hyperscan.wrapper;
 
 import io.carpe.hyperscan.HyperscanUtils;
-import io.carpe.hyperscan.jna.CompileErrorStruct;
-import io.carpe.hyperscan.jna.HyperscanLibrary;
 import io.carpe.hyperscan.wrapper.flags.HyperscanExpressionFlag;
-import com.sun.jna.Native;
-import com.sun.jna.Pointer;
-import com.sun.jna.ptr.PointerByReference;
 
 import java.util.EnumSet;
 import java.util.Optional;
@@ -126,30 +121,26 @@ public class HyperscanExpression implements Expression {
      * @return ValidationResult results of validation
      */
     public ValidationResult validate() {
+        final ExpressionInfo.Analysis analysis = analyze();
+
         return new ValidationResult(
-                hyperscanValidate().orElse(null),
-                null
+                analysis.error,
+                null,
+                analysis.info
         );
     }
 
-    private Optional<String> hyperscanValidate() {
-        PointerByReference info = new PointerByReference();
-        PointerByReference error = new PointerByReference();
-
-        int hsResult = HyperscanLibrary.INSTANCE.hs_expression_info(this.expression, HyperscanUtils.bitEnumSetToInt(this.flags), info, error);
-
-        String errorMessage = null;
-
-        if (hsResult != 0) {
-            CompileErrorStruct errorStruct = new CompileErrorStruct(error.getValue());
-            errorMessage = errorStruct.message;
-            errorStruct.setAutoRead(false);
-            HyperscanLibrary.INSTANCE.hs_free_compile_error(errorStruct);
-        } else {
-            Native.free(Pointer.nativeValue(info.getValue()));
-        }
+    /**
+     * Get the properties of the expression as analyzed by hyperscan, like the minimum and maximum width of its matches
+     *
+     * @return info if the expression is valid for hyperscan, otherwise empty optional
+     */
+    public Optional<ExpressionInfo> getExpressionInfo() {
+        return Optional.ofNullable(analyze().info);
+    }
 
-        return Optional.ofNullable(errorMessage);
+    private ExpressionInfo.Analysis analyze() {
+        return ExpressionInfo.analyze(this.expression, HyperscanUtils.bitEnumSetToInt(this.flags));
     }
 
 
@@ -178,10 +169,12 @@ public class HyperscanExpression implements Expression {
     public class ValidationResult {
         private String hyperscanError;
         private String chimeraError;
+        private ExpressionInfo expressionInfo;
 
-        ValidationResult(String hyperscanError, String chimeraError) {
+        ValidationResult(String hyperscanError, String chimeraError, ExpressionInfo expressionInfo) {
             this.hyperscanError = hyperscanError;
             this.chimeraError = chimeraError;
+            this.expressionInfo = expressionInfo;
         }
 
 
@@ -229,5 +222,14 @@ public class HyperscanExpression implements Expression {
         public Optional<String> getChimeraErrorMessage() {
             return Optional.ofNullable(this.chimeraError);
         }
+
+        /**
+         * Get the properties of the expression as analyzed by hyperscan
+         *
+         * @return info if the expression is valid for hyperscan, otherwise empty optional
+         */
+        public Optional<ExpressionInfo> getExpressionInfo() {
+            return Optional.ofNullable(this.expressionInfo);
+        }
     }
 }
\ No newline at end of file
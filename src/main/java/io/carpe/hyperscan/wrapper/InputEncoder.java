@@ -0,0 +1,95 @@
+package io.carpe.hyperscan.wrapper;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes strings into a reusable direct buffer, which is handed to the engine without further copies.
+ * <p>
+ * Pure ASCII strings, the vast majority of inputs, are copied char by char without running an encoder, and their
+ * byte offsets equal their char indexes. Other strings are encoded to UTF-8 into the same buffer. Inputs larger
+ * than {@link #MAX_RETAINED_CAPACITY} get a temporary buffer, so a single huge input doesn't pin native memory.
+ * <p>
+ * Not thread-safe, use one instance per thread.
+ */
+final class InputEncoder {
+    static final int INITIAL_CAPACITY = 4 * 1024;
+    static final int MAX_RETAINED_CAPACITY = 4 * 1024 * 1024;
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+    private Pointer bufferPointer = Native.getDirectBufferPointer(buffer);
+    private ByteBuffer current;
+    private Pointer currentPointer;
+
+    /**
+     * Encode a string, invalidating the bytes of the previous one
+     *
+     * @return buffer holding the UTF-8 bytes of the input from position 0 to its limit
+     */
+    ByteBuffer encode(String input) {
+        final int length = input.length();
+        final ByteBuffer ascii = target(length);
+
+        int i = 0;
+        for (char c; i < length && (c = input.charAt(i)) < 0x80; i++) {
+            ascii.put(i, (byte) c);
+        }
+
+        if (i == length) {
+            ascii.limit(length);
+            return ascii;
+        }
+
+        // every char takes at most three bytes, surrogate pairs take four for two chars
+        final long maxBytes = 3L * length;
+        if (maxBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Input of " + length + " chars is too long to be encoded into a buffer");
+        }
+
+        final ByteBuffer target = target((int) maxBytes);
+        encoder.reset();
+
+        final CoderResult result = encoder.encode(CharBuffer.wrap(input), target, true);
+        if (!result.isUnderflow() || encoder.flush(target).isOverflow()) {
+            throw new IllegalStateException("UTF-8 encoding exceeded the expected length");
+        }
+
+        target.flip();
+        return target;
+    }
+
+    /**
+     * Get the native address of the buffer returned by the last {@link #encode(String)}
+     */
+    Pointer pointer() {
+        return currentPointer;
+    }
+
+    private ByteBuffer target(int capacity) {
+        if (capacity > MAX_RETAINED_CAPACITY) {
+            current = ByteBuffer.allocateDirect(capacity);
+            currentPointer = Native.getDirectBufferPointer(current);
+            return current;
+        }
+
+        if (buffer.capacity() < capacity) {
+            buffer = ByteBuffer.allocateDirect(Math.min(MAX_RETAINED_CAPACITY, Math.max(capacity, 2 * buffer.capacity())));
+            bufferPointer = Native.getDirectBufferPointer(buffer);
+        }
+
+        buffer.clear();
+        current = buffer;
+        currentPointer = bufferPointer;
+        return buffer;
+    }
+}
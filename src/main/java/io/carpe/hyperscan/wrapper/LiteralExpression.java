@@ -0,0 +1,135 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.wrapper.flags.HyperscanExpressionFlag;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+
+
+/**
+ * LiteralExpression matching an exact sequence of bytes, to be compiled as a LiteralDatabase.
+ * <p>
+ * The bytes are matched as they are, no character has a special meaning and none has to be escaped. NUL bytes are
+ * allowed too. Literal databases compile faster, are smaller and scan faster than the equivalent escaped regexes.
+ */
+public class LiteralExpression implements Expression {
+    private static final EnumSet<HyperscanExpressionFlag> SUPPORTED_FLAGS = EnumSet.of(
+            HyperscanExpressionFlag.CASELESS,
+            HyperscanExpressionFlag.SINGLEMATCH,
+            HyperscanExpressionFlag.SOM_LEFTMOST
+    );
+
+    private final EnumSet<HyperscanExpressionFlag> flags;
+    private final byte[] literal;
+    private final Object context;
+
+    /**
+     * Constructor for a new literal without flags
+     *
+     * @param literal String to match, as UTF-8 bytes
+     */
+    public LiteralExpression(String literal) {
+        this(literal, EnumSet.noneOf(HyperscanExpressionFlag.class), null);
+    }
+
+    /**
+     * Constructor for a new literal
+     *
+     * @param literal String to match, as UTF-8 bytes
+     * @param flags   Flags influencing the behaviour of the scanner
+     * @param context Context object associated with the literal
+     */
+    public LiteralExpression(String literal, EnumSet<HyperscanExpressionFlag> flags, Object context) {
+        this(checkArguments(literal).getBytes(StandardCharsets.UTF_8), flags, context);
+    }
+
+    /**
+     * Constructor for a new literal without flags
+     *
+     * @param literal bytes to match
+     */
+    public LiteralExpression(byte[] literal) {
+        this(literal, EnumSet.noneOf(HyperscanExpressionFlag.class), null);
+    }
+
+    /**
+     * Constructor for a new literal
+     *
+     * @param literal bytes to match
+     * @param flags   Flags influencing the behaviour of the scanner, only CASELESS, SINGLEMATCH and SOM_LEFTMOST
+     *                are supported for literals
+     * @param context Context object associated with the literal
+     */
+    public LiteralExpression(byte[] literal, EnumSet<HyperscanExpressionFlag> flags, Object context) {
+        checkArguments(literal);
+
+        if (literal.length == 0) {
+            throw new IllegalArgumentException("Empty literals are not allowed");
+        }
+
+        if (!SUPPORTED_FLAGS.containsAll(flags)) {
+            final EnumSet<HyperscanExpressionFlag> unsupported = EnumSet.copyOf(flags);
+            unsupported.removeAll(SUPPORTED_FLAGS);
+            throw new IllegalArgumentException("Flags not supported for literals: " + unsupported);
+        }
+
+        this.literal = literal.clone();
+        this.flags = EnumSet.copyOf(flags);
+        this.context = context;
+    }
+
+    private static <T> T checkArguments(T literal) {
+        if (literal == null) {
+            throw new NullPointerException("Null value for literal is not allowed");
+        }
+
+        return literal;
+    }
+
+    /**
+     * Get the context object associated with the LiteralExpression
+     *
+     * @return context
+     */
+    @Override
+    public Object getContext() {
+        return context;
+    }
+
+    /**
+     * Get the flags influencing the behaviour of the scanner
+     *
+     * @return All defined flags for this literal
+     */
+    public EnumSet<HyperscanExpressionFlag> getFlags() {
+        return flags;
+    }
+
+    /**
+     * Get the bytes used for matching
+     *
+     * @return copy of the literal bytes
+     */
+    public byte[] getBytes() {
+        return literal.clone();
+    }
+
+    /**
+     * Get the length of the literal, which is the length of each of its matches
+     *
+     * @return count of bytes
+     */
+    public int getLength() {
+        return literal.length;
+    }
+
+    /**
+     * Get the literal decoded as UTF-8, for logging and error messages
+     *
+     * @return literal as String
+     */
+    @Override
+    public String getExpression() {
+        return new String(literal, StandardCharsets.UTF_8);
+    }
+}
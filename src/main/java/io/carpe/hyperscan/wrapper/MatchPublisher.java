@@ -0,0 +1,268 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.db.ChimeraDatabase;
+import io.carpe.hyperscan.db.HyperscanDatabase;
+import io.carpe.hyperscan.wrapper.flags.HyperscanModeFlag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Publisher of the matches of a single scan, with backpressure.
+ * <p>
+ * Instead of collecting all matches in a list, matches are handed to the subscriber as the engine finds them. The
+ * scan runs on its own thread and pauses inside the engine while the subscriber has no outstanding demand, so at
+ * most the requested count of matches is ever in flight, no matter how many matches the input produces.
+ * Cancelling the subscription terminates the scan.
+ * <p>
+ * The interfaces follow the signatures and rules of {@code java.util.concurrent.Flow} and Reactive Streams, so they
+ * are easily adapted on newer JVMs. A publisher scans its input once, so it can only be subscribed to once.
+ */
+public class MatchPublisher {
+    private static final Executor THREAD_PER_SCAN = command -> {
+        final Thread thread = new Thread(command, "hyperscan-match-publisher");
+        thread.setDaemon(true);
+        thread.start();
+    };
+
+    private final Source source;
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    private MatchPublisher(Source source, Executor executor) {
+        this.source = source;
+        this.executor = executor;
+    }
+
+    /**
+     * Create a publisher scanning the remaining bytes of a buffer on a new thread
+     *
+     * @param db    Database containing expressions to use for matching
+     * @param input Buffer to match against, the position of the buffer is not changed
+     * @return MatchPublisher with byte offsets relative to the position of the buffer
+     */
+    public static MatchPublisher of(ChimeraDatabase db, ByteBuffer input) {
+        return of(db, input, THREAD_PER_SCAN);
+    }
+
+    /**
+     * Create a publisher scanning the remaining bytes of a buffer
+     *
+     * @param db       Database containing expressions to use for matching
+     * @param input    Buffer to match against, the position of the buffer is not changed
+     * @param executor Executor to run the scan on, the scan blocks one of its threads while waiting for demand
+     * @return MatchPublisher with byte offsets relative to the position of the buffer
+     */
+    public static MatchPublisher of(ChimeraDatabase db, ByteBuffer input, Executor executor) {
+        final ByteBuffer view = input.duplicate();
+
+        return new MatchPublisher(sink -> {
+            try (Scanner scanner = new Scanner()) {
+                scanner.allocScratch(db);
+                scanner.scan(db, view, sink);
+            }
+        }, executor);
+    }
+
+    /**
+     * Create a publisher scanning an input stream until its end on a new thread.
+     * The stream is not closed.
+     *
+     * @param db    Database compiled in {@link HyperscanModeFlag#STREAM} mode
+     * @param input InputStream to match against
+     * @return MatchPublisher with absolute byte offsets
+     */
+    public static MatchPublisher of(HyperscanDatabase db, InputStream input) {
+        return of(db, input, THREAD_PER_SCAN);
+    }
+
+    /**
+     * Create a publisher scanning an input stream until its end.
+     * The stream is not closed.
+     *
+     * @param db       Database compiled in {@link HyperscanModeFlag#STREAM} mode
+     * @param input    InputStream to match against
+     * @param executor Executor to run the scan on, the scan blocks one of its threads while waiting for demand
+     * @return MatchPublisher with absolute byte offsets
+     */
+    public static MatchPublisher of(HyperscanDatabase db, InputStream input, Executor executor) {
+        return new MatchPublisher(sink -> {
+            try (StreamScanner scanner = new StreamScanner()) {
+                scanner.allocScratch(db);
+                scanner.scan(db, Channels.newChannel(input), sink);
+            }
+        }, executor);
+    }
+
+    /**
+     * Subscribe to the matches. The scan starts right after {@link Subscriber#onSubscribe(Subscription)} returned,
+     * and waits for the first request.
+     *
+     * @param subscriber Subscriber receiving the matches
+     */
+    public void subscribe(Subscriber<? super Match> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Null value for subscriber is not allowed");
+        }
+
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+                public void request(long n) {
+                }
+
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("MatchPublisher can only be subscribed to once"));
+            return;
+        }
+
+        final ScanSubscription subscription = new ScanSubscription(subscriber, source);
+        subscriber.onSubscribe(subscription);
+        executor.execute(subscription);
+    }
+
+    /**
+     * Receives the matches of a publisher, see {@code java.util.concurrent.Flow.Subscriber}
+     *
+     * @param <T> item type
+     */
+    public interface Subscriber<T> {
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    /**
+     * Link between a publisher and its subscriber, see {@code java.util.concurrent.Flow.Subscription}
+     */
+    public interface Subscription {
+        /**
+         * Request more matches, the scan continues until they are delivered
+         *
+         * @param n count of additional matches, must be positive
+         */
+        void request(long n);
+
+        /**
+         * Stop receiving matches and terminate the scan
+         */
+        void cancel();
+    }
+
+    @FunctionalInterface
+    private interface Source {
+        void scan(MatchSink sink) throws IOException;
+    }
+
+    private static class ScanSubscription implements Subscription, MatchSink, Runnable {
+        private final Subscriber<? super Match> subscriber;
+        private final Source source;
+        private long demand;
+        private boolean cancelled;
+        private Throwable failure;
+
+        private ScanSubscription(Subscriber<? super Match> subscriber, Source source) {
+            this.subscriber = subscriber;
+            this.source = source;
+        }
+
+        @Override
+        public synchronized void request(long n) {
+            if (cancelled) {
+                return;
+            }
+
+            if (n <= 0) {
+                failure = new IllegalArgumentException("Requested count of matches must be positive, was " + n);
+                cancelled = true;
+            } else {
+                // outstanding demand beyond Long.MAX_VALUE is unbounded anyway
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void cancel() {
+            cancelled = true;
+            notifyAll();
+        }
+
+        /**
+         * Called on the scanning thread for every match, blocks the engine until there is demand
+         */
+        @Override
+        public boolean accept(Match match) {
+            synchronized (this) {
+                try {
+                    while (demand == 0 && !cancelled) {
+                        wait();
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failure = e;
+                    cancelled = true;
+                }
+
+                if (cancelled) {
+                    return false;
+                }
+
+                if (demand != Long.MAX_VALUE) {
+                    demand--;
+                }
+            }
+
+            try {
+                subscriber.onNext(match);
+            } catch (final RuntimeException e) {
+                // a failing subscriber is treated as cancelled
+                cancel();
+                return false;
+            }
+
+            return true;
+        }
+
+        @Override
+        public void run() {
+            try {
+                source.scan(this);
+            } catch (final IOException | RuntimeException e) {
+                synchronized (this) {
+                    if (cancelled && failure == null) {
+                        return;
+                    }
+                }
+
+                subscriber.onError(e);
+                return;
+            }
+
+            final Throwable error;
+            synchronized (this) {
+                if (cancelled && failure == null) {
+                    return;
+                }
+
+                error = failure;
+            }
+
+            if (error != null) {
+                subscriber.onError(error);
+            } else {
+                subscriber.onComplete();
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package io.carpe.hyperscan.wrapper;
+
+/**
+ * Receives matches one by one while the engine is still scanning, instead of collecting them in a list
+ */
+@FunctionalInterface
+interface MatchSink {
+    /**
+     * Handle a match
+     *
+     * @param match Match found by the engine
+     * @return true to continue scanning, false to terminate the scan
+     */
+    boolean accept(Match match);
+}
@@ -0,0 +1,94 @@
+package io.carpe.hyperscan.wrapper;
+
+/**
+ * MurmurHash3 x64 128 bit, a fast non-cryptographic hash used to key cached scan results
+ */
+final class Murmur3 {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private Murmur3() {
+    }
+
+    /**
+     * Hash the chars of a string, which is the same as hashing its UTF-16LE bytes but without encoding it
+     *
+     * @return the two 64 bit halves of the hash
+     */
+    static long[] hash128(CharSequence input, long seed) {
+        final int length = input.length();
+        final int blocks = length / 8;
+        long h1 = seed;
+        long h2 = seed;
+
+        for (int i = 0; i < blocks; i++) {
+            final int offset = i * 8;
+            final long k1 = chars(input, offset, 4);
+            final long k2 = chars(input, offset + 4, 4);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        final int tail = blocks * 8;
+        final int remaining = length - tail;
+
+        if (remaining > 4) {
+            h2 ^= mixK2(chars(input, tail + 4, remaining - 4));
+        }
+
+        if (remaining > 0) {
+            h1 ^= mixK1(chars(input, tail, Math.min(4, remaining)));
+        }
+
+        h1 ^= 2L * length;
+        h2 ^= 2L * length;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+
+        h1 += h2;
+        h2 += h1;
+
+        return new long[]{h1, h2};
+    }
+
+    private static long chars(CharSequence input, int offset, int count) {
+        long k = 0;
+        for (int i = 0; i < count; i++) {
+            k |= (long) input.charAt(offset + i) << (16 * i);
+        }
+        return k;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
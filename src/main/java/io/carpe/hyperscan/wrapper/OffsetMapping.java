@@ -0,0 +1,87 @@
+package io.carpe.hyperscan.wrapper;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts byte offsets of a UTF-8 encoded string into an {@link OffsetUnit}.
+ * <p>
+ * Offsets pointing into the middle of a multi-byte character, which expressions without the UTF8 flag can produce,
+ * are widened: starts round down and ends round up to the enclosing character.
+ */
+final class OffsetMapping {
+    private final OffsetUnit unit;
+    private final String input;
+    private final ByteBuffer utf8bytes;
+    private final int[] unitsBefore;
+
+    private OffsetMapping(OffsetUnit unit, String input, ByteBuffer utf8bytes, int[] unitsBefore) {
+        this.unit = unit;
+        this.input = input;
+        this.utf8bytes = utf8bytes;
+        this.unitsBefore = unitsBefore;
+    }
+
+    /**
+     * Create a mapping for the UTF-8 bytes of the input, from position 0 to the limit of the buffer
+     */
+    static OffsetMapping of(OffsetUnit unit, String input, ByteBuffer utf8bytes) {
+        final int bytesLength = utf8bytes.limit();
+
+        // offsets of all units are the same for ASCII input, which is the common case
+        if (unit == OffsetUnit.BYTES || bytesLength == input.length()) {
+            return new OffsetMapping(unit, input, utf8bytes, null);
+        }
+
+        final int[] unitsBefore = new int[bytesLength + 1];
+        int units = 0;
+        int characterStart = 0;
+
+        for (int i = 0; i < bytesLength; i++) {
+            final int b = utf8bytes.get(i) & 0xFF;
+
+            if (!isContinuation(b)) {
+                characterStart = units;
+                // four byte sequences are surrogate pairs in UTF-16
+                units += unit == OffsetUnit.UTF16 && b >= 0xF0 ? 2 : 1;
+            }
+
+            unitsBefore[i] = characterStart;
+        }
+        unitsBefore[bytesLength] = units;
+
+        return new OffsetMapping(unit, input, utf8bytes, unitsBefore);
+    }
+
+    long start(long byteOffset) {
+        return unitsBefore == null ? byteOffset : unitsBefore[(int) byteOffset];
+    }
+
+    long end(long byteOffset) {
+        if (unitsBefore == null)
+            return byteOffset;
+
+        int boundary = (int) byteOffset;
+        while (boundary < utf8bytes.limit() && isContinuation(utf8bytes.get(boundary) & 0xFF)) {
+            boundary++;
+        }
+
+        return unitsBefore[boundary];
+    }
+
+    /**
+     * Get the matched text between two byte offsets
+     */
+    String text(long fromByte, long toByte) {
+        if (unit == OffsetUnit.UTF16)
+            return input.substring((int) start(fromByte), (int) end(toByte));
+
+        final ByteBuffer matched = utf8bytes.duplicate();
+        matched.limit((int) toByte).position((int) fromByte);
+        return StandardCharsets.UTF_8.decode(matched).toString();
+    }
+
+    private static boolean isContinuation(int b) {
+        return (b & 0xC0) == 0x80;
+    }
+}
@@ -0,0 +1,24 @@
+package io.carpe.hyperscan.wrapper;
+
+/**
+ * Unit of the start and end positions of matches found in strings.
+ * <p>
+ * The engine reports offsets in bytes of the UTF-8 encoded input, which callers in other languages usually want
+ * as they are. Java callers want indexes for {@link String#substring(int, int)}, UIs usually count code points.
+ */
+public enum OffsetUnit {
+    /**
+     * Offsets in bytes of the UTF-8 encoded input, as reported by the engine. No conversion is needed.
+     */
+    BYTES,
+
+    /**
+     * Indexes of UTF-16 chars, like those of {@link String#substring(int, int)}
+     */
+    UTF16,
+
+    /**
+     * Indexes of Unicode code points, counting surrogate pairs as one
+     */
+    CODE_POINTS
+}
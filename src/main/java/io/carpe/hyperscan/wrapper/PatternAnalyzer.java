@@ -0,0 +1,402 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.db.ChimeraDatabase;
+import io.carpe.hyperscan.db.TolerantCompiler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Reports what every expression of a set costs, to catch expressions which blow up the database size or the scan
+ * time before they ship.
+ * <p>
+ * The contribution of an expression is measured by leaving it out: the set is compiled once without each expression,
+ * in parallel, and the size and scan time over a sample corpus are compared with those of the full set. Scans are
+ * timed once all compiles have finished, one database at a time, so they don't compete for cores. The databases
+ * timed are compiled again, so at most one of them is alive besides the full one. Invalid expressions are reported
+ * with their error and left out of the measurements.
+ * <p>
+ * Also runs from the command line, with a file of expressions and optionally a file of sample inputs, one per line:
+ * {@code java io.carpe.hyperscan.wrapper.PatternAnalyzer patterns.txt [corpus.txt]}
+ */
+public class PatternAnalyzer {
+    private final int parallelism;
+    private final int repetitions;
+
+    /**
+     * Create an analyzer using all available processors and timing each scan of the corpus three times
+     */
+    public PatternAnalyzer() {
+        this(Runtime.getRuntime().availableProcessors(), 3);
+    }
+
+    /**
+     * Create an analyzer
+     *
+     * @param parallelism maximum count of sets compiled at the same time
+     * @param repetitions count of scans of the corpus per database, the fastest one counts
+     */
+    public PatternAnalyzer(int parallelism, int repetitions) {
+        if (parallelism < 1 || repetitions < 1) {
+            throw new IllegalArgumentException("Parallelism and repetitions must be at least 1");
+        }
+
+        this.parallelism = parallelism;
+        this.repetitions = repetitions;
+    }
+
+    /**
+     * Analyze a set of expressions
+     *
+     * @param expressions ChimeraExpressions to analyze
+     * @param corpus      sample inputs to measure the scan time with, may be empty
+     * @return Analysis of the set and of each expression
+     * @throws HyperscanException if compiling or scanning fails for reasons other than invalid expressions
+     */
+    public Analysis analyze(Collection<ChimeraExpression> expressions, List<String> corpus) throws HyperscanException {
+        final TolerantCompiler.Result compiled = new TolerantCompiler(new ExpressionValidator(parallelism), parallelism)
+                .compile(expressions);
+        final Map<ChimeraExpression, String> failures = compiled.getFailures();
+        final List<ChimeraExpression> valid = expressions.stream()
+                .filter(expression -> !failures.containsKey(expression))
+                .collect(Collectors.toList());
+
+        final List<Report> reports = new ArrayList<>();
+        failures.forEach((expression, error) -> reports.add(new Report(expression, error)));
+
+        if (!compiled.getDatabase().isPresent()) {
+            return new Analysis(0, 0, reports);
+        }
+
+        try (final ChimeraDatabase full = compiled.getDatabase().get()) {
+            final List<Measurement> measurements = measureAll(valid);
+            final long fullSize = full.getSize();
+            final long fullScanNanos = timeScans(full, corpus);
+
+            for (int i = 0; i < valid.size(); i++) {
+                final Measurement measurement = measurements.get(i);
+                final long scanNanos = valid.size() > 1 && !corpus.isEmpty() ? timeScansWithout(valid, i, corpus) : 0;
+
+                reports.add(new Report(valid.get(i), measurement.compileNanos,
+                        fullSize - measurement.sizeWithout, fullScanNanos - scanNanos));
+            }
+
+            return new Analysis(fullSize, fullScanNanos, reports);
+        }
+    }
+
+    /**
+     * Compile every expression on its own and the set without it, in parallel. All compiles have finished when
+     * this returns, so they don't compete with the timed scans, and no database is kept.
+     */
+    private List<Measurement> measureAll(final List<ChimeraExpression> expressions) throws HyperscanException {
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+
+        try {
+            final List<Future<Measurement>> futures = new ArrayList<>(expressions.size());
+            for (int i = 0; i < expressions.size(); i++) {
+                final int leftOut = i;
+                futures.add(executor.submit(() -> measure(expressions, leftOut)));
+            }
+
+            final List<Measurement> measurements = new ArrayList<>(futures.size());
+            for (final Future<Measurement> future : futures) {
+                measurements.add(get(future));
+            }
+
+            return measurements;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Compile an expression on its own, and the set without it
+     */
+    private static Measurement measure(List<ChimeraExpression> expressions, int leftOut) throws HyperscanException {
+        final long start = System.nanoTime();
+        final ChimeraDatabase alone = ChimeraDatabase.compile(expressions.get(leftOut));
+        final long compileNanos = System.nanoTime() - start;
+        alone.close();
+
+        if (expressions.size() == 1) {
+            return new Measurement(compileNanos, 0);
+        }
+
+        try (final ChimeraDatabase without = ChimeraDatabase.compile(without(expressions, leftOut))) {
+            return new Measurement(compileNanos, without.getSize());
+        }
+    }
+
+    /**
+     * Time the corpus with the set without an expression, compiled again so only one such database is alive
+     */
+    private long timeScansWithout(final List<ChimeraExpression> expressions, final int leftOut,
+                                  final List<String> corpus) throws HyperscanException {
+        try (final ChimeraDatabase without = ChimeraDatabase.compile(without(expressions, leftOut))) {
+            return timeScans(without, corpus);
+        }
+    }
+
+    private static List<ChimeraExpression> without(final List<ChimeraExpression> expressions, final int leftOut) {
+        final List<ChimeraExpression> rest = new ArrayList<>(expressions);
+        rest.remove(leftOut);
+        return rest;
+    }
+
+    private long timeScans(final ChimeraDatabase db, final List<String> corpus) throws HyperscanException {
+        if (corpus.isEmpty())
+            return 0;
+
+        try (final Scanner scanner = new Scanner(OffsetUnit.BYTES)) {
+            scanner.allocScratch(db);
+            long fastest = Long.MAX_VALUE;
+
+            for (int repetition = 0; repetition < repetitions; repetition++) {
+                final long start = System.nanoTime();
+                for (final String input : corpus) {
+                    scanner.scan(db, input);
+                }
+                fastest = Math.min(fastest, System.nanoTime() - start);
+            }
+
+            return fastest;
+        }
+    }
+
+    private static <T> T get(Future<T> future) throws HyperscanException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while analyzing expressions", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof HyperscanException) {
+                throw (HyperscanException) e.getCause();
+            }
+            throw new IllegalStateException("Failed to analyze expressions", e.getCause());
+        }
+    }
+
+    /**
+     * Analyze the expressions of a file, one per line, and print a report sorted by size contribution
+     *
+     * @param args file of expressions, optionally followed by a file of sample inputs
+     * @throws IOException if a file can't be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: PatternAnalyzer <patterns file> [corpus file]");
+            System.exit(2);
+            return;
+        }
+
+        final List<ChimeraExpression> expressions = Files.readAllLines(Paths.get(args[0]), StandardCharsets.UTF_8).stream()
+                .filter(line -> !line.isEmpty())
+                .map(ChimeraExpression::new)
+                .collect(Collectors.toList());
+        final List<String> corpus = args.length > 1
+                ? Files.readAllLines(Paths.get(args[1]), StandardCharsets.UTF_8)
+                : Collections.emptyList();
+
+        final Analysis analysis = new PatternAnalyzer().analyze(expressions, corpus);
+
+        System.out.printf("database size %d bytes, corpus scan %.3f ms%n",
+                analysis.getDatabaseSize(), analysis.getScanNanos() / 1e6);
+        System.out.println("size\tscan ms\tcompile ms\tengine\tmin\tmax\texpression");
+
+        for (final Report report : analysis.getReports()) {
+            if (report.getError().isPresent()) {
+                System.out.printf("-\t-\t-\tinvalid\t-\t-\t%s\t%s%n",
+                        report.getExpression().getExpression(), report.getError().get());
+                continue;
+            }
+
+            System.out.printf("%d\t%.3f\t%.3f\t%s\t%d\t%s\t%s%n",
+                    report.getSizeContribution(),
+                    report.getScanNanosContribution() / 1e6,
+                    report.getCompileNanos() / 1e6,
+                    report.isChimeraOnly() ? "chimera" : "hyperscan",
+                    report.getMinWidth(),
+                    report.getMaxWidth() == ExpressionInfo.UNBOUNDED ? "inf" : Long.toString(report.getMaxWidth()),
+                    report.getExpression().getExpression());
+        }
+    }
+
+    private static final class Measurement {
+        private final long compileNanos;
+        private final long sizeWithout;
+
+        private Measurement(long compileNanos, long sizeWithout) {
+            this.compileNanos = compileNanos;
+            this.sizeWithout = sizeWithout;
+        }
+    }
+
+    /**
+     * Size and scan time of the full set, and the reports of its expressions
+     */
+    public static class Analysis {
+        private final long databaseSize;
+        private final long scanNanos;
+        private final List<Report> reports;
+
+        Analysis(long databaseSize, long scanNanos, List<Report> reports) {
+            this.databaseSize = databaseSize;
+            this.scanNanos = scanNanos;
+            reports.sort(Comparator.comparingLong(Report::getSizeContribution).reversed());
+            this.reports = Collections.unmodifiableList(reports);
+        }
+
+        /**
+         * Get the size of the database of all valid expressions
+         *
+         * @return count of bytes
+         */
+        public long getDatabaseSize() {
+            return databaseSize;
+        }
+
+        /**
+         * Get the time to scan the corpus with the database of all valid expressions
+         *
+         * @return nanoseconds, zero without corpus
+         */
+        public long getScanNanos() {
+            return scanNanos;
+        }
+
+        /**
+         * Get the reports of the expressions, the largest size contribution first
+         *
+         * @return Reports, invalid expressions included
+         */
+        public List<Report> getReports() {
+            return reports;
+        }
+    }
+
+    /**
+     * Costs of a single expression
+     */
+    public static class Report {
+        private final ChimeraExpression expression;
+        private final String error;
+        private final long compileNanos;
+        private final long sizeContribution;
+        private final long scanNanosContribution;
+        private final boolean chimeraOnly;
+        private final long minWidth;
+        private final long maxWidth;
+
+        Report(ChimeraExpression expression, long compileNanos, long sizeContribution, long scanNanosContribution) {
+            final Optional<ExpressionInfo> info = expression.getExpressionInfo();
+
+            this.expression = expression;
+            this.error = null;
+            this.compileNanos = compileNanos;
+            this.sizeContribution = sizeContribution;
+            this.scanNanosContribution = scanNanosContribution;
+            this.chimeraOnly = !info.isPresent();
+            this.minWidth = info.isPresent() ? info.get().getMinWidth() : expression.getMinInputLength();
+            this.maxWidth = info.isPresent() ? info.get().getMaxWidth() : ExpressionInfo.UNBOUNDED;
+        }
+
+        Report(ChimeraExpression expression, String error) {
+            this.expression = expression;
+            this.error = error;
+            this.compileNanos = 0;
+            this.sizeContribution = 0;
+            this.scanNanosContribution = 0;
+            this.chimeraOnly = false;
+            this.minWidth = 0;
+            this.maxWidth = 0;
+        }
+
+        /**
+         * Get the analyzed expression
+         *
+         * @return ChimeraExpression
+         */
+        public ChimeraExpression getExpression() {
+            return expression;
+        }
+
+        /**
+         * Get the error of an invalid expression
+         *
+         * @return error message if the expression is invalid, otherwise empty optional
+         */
+        public Optional<String> getError() {
+            return Optional.ofNullable(error);
+        }
+
+        /**
+         * Get the time to compile the expression on its own
+         *
+         * @return nanoseconds
+         */
+        public long getCompileNanos() {
+            return compileNanos;
+        }
+
+        /**
+         * Get how much larger the database is with the expression than without it
+         *
+         * @return count of bytes, may be negative as the compiler optimizes sets as a whole
+         */
+        public long getSizeContribution() {
+            return sizeContribution;
+        }
+
+        /**
+         * Get how much longer the corpus takes to scan with the expression than without it
+         *
+         * @return nanoseconds, zero without corpus, may be negative within measurement noise
+         */
+        public long getScanNanosContribution() {
+            return scanNanosContribution;
+        }
+
+        /**
+         * Check if the expression needs PCRE confirmation by Chimera, which is usually much slower than Hyperscan
+         *
+         * @return true if the expression is not supported by Hyperscan alone, otherwise false
+         */
+        public boolean isChimeraOnly() {
+            return chimeraOnly;
+        }
+
+        /**
+         * Get the minimum width of a match
+         *
+         * @return count of bytes
+         */
+        public long getMinWidth() {
+            return minWidth;
+        }
+
+        /**
+         * Get the maximum width of a match
+         *
+         * @return count of bytes, or {@link ExpressionInfo#UNBOUNDED}
+         */
+        public long getMaxWidth() {
+            return maxWidth;
+        }
+    }
+}
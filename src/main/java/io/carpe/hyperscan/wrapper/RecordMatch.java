@@ -0,0 +1,44 @@
+package io.carpe.hyperscan.wrapper;
+
+/**
+ * Represents a match found during a record oriented scan, mapped back to the record it starts in
+ */
+public class RecordMatch extends Match {
+    final private long recordIndex;
+    final private long lineNumber;
+    final private long recordOffset;
+
+    RecordMatch(Match match, long start, long end, long recordIndex, long lineNumber, long recordOffset) {
+        super(start, end, match.getMatchedString(), match.getMatchedExpression());
+        this.recordIndex = recordIndex;
+        this.lineNumber = lineNumber;
+        this.recordOffset = recordOffset;
+    }
+
+    /**
+     * Get the index of the record the match starts in
+     *
+     * @return zero based record index
+     */
+    public long getRecordIndex() {
+        return recordIndex;
+    }
+
+    /**
+     * Get the line the match starts on
+     *
+     * @return one based line number
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Get the start of the match relative to the start of its record
+     *
+     * @return offset in bytes
+     */
+    public long getRecordOffset() {
+        return recordOffset;
+    }
+}
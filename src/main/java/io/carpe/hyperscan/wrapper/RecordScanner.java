@@ -0,0 +1,194 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.db.ChimeraDatabase;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scanner for newline or custom delimited records, like log files.
+ * <p>
+ * Instead of scanning every record on its own, records are scanned in large blocks cut at a record boundary, using
+ * one native call per block. Every match is mapped back to the record and line it starts in with an index of the
+ * delimiters of the block. Records longer than a block are cut, matches crossing such a cut are not found.
+ * <p>
+ * Since a block holds many records, matches spanning a delimiter are dropped to keep the results of scanning every
+ * record on its own. Anchors differ though: {@code ^} and {@code $} only match at the edges of a block, unless the
+ * expressions are compiled with {@link io.carpe.hyperscan.wrapper.flags.ChimeraExpressionFlag#MULTILINE} and the
+ * records are newline delimited, in which case they match at every record boundary.
+ * <p>
+ * In case of multithreaded scanning, you need one scanner instance per thread.
+ */
+public class RecordScanner implements Closeable {
+    /**
+     * Default size of the blocks handed to the engine in bytes
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 4 * 1024 * 1024;
+
+    private final Scanner scanner = new Scanner();
+    private final DelimiterIndex index;
+    private final int blockSize;
+    private ByteBuffer streamBuffer;
+
+    private long bytesBefore;
+    private long recordsBefore;
+    private long linesBefore;
+    private long recordStart;
+
+    /**
+     * Create a scanner for newline delimited records using blocks of {@link #DEFAULT_BLOCK_SIZE} bytes
+     */
+    public RecordScanner() {
+        this((byte) '\n', DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Create a scanner for records separated by the given delimiter
+     *
+     * @param delimiter byte separating the records
+     * @param blockSize maximum size of the blocks handed to the engine in bytes
+     */
+    public RecordScanner(byte delimiter, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be at least 1 byte");
+        }
+
+        this.index = new DelimiterIndex(delimiter);
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Allocate a scratch space.  Must be called at least once with each
+     * database that will be used before scan is called.
+     *
+     * @param db Database containing expressions to use for matching
+     * @throws HyperscanException Throws if out of memory or platform not supported
+     *                            or if the allocation fails
+     */
+    public void allocScratch(final ChimeraDatabase db) throws HyperscanException {
+        scanner.allocScratch(db);
+    }
+
+    /**
+     * scan the remaining records of a buffer. The position of the buffer is not changed.
+     *
+     * @param db    Database containing expressions to use for matching
+     * @param input Buffer containing the records, preferably direct or memory-mapped
+     * @return List of RecordMatches with byte offsets relative to the position of the buffer
+     * @throws HyperscanException Throws if out of memory, platform not supported or database is null
+     */
+    public List<RecordMatch> scan(final ChimeraDatabase db, final ByteBuffer input) throws HyperscanException {
+        final List<RecordMatch> matches = new ArrayList<>();
+        reset();
+
+        int blockStart = input.position();
+        while (blockStart < input.limit()) {
+            final int windowEnd = (int) Math.min(input.limit(), (long) blockStart + blockSize);
+            blockStart = scanBlock(db, input, blockStart, windowEnd, windowEnd == input.limit(), matches);
+        }
+
+        return matches;
+    }
+
+    /**
+     * scan the records of an input stream until its end. The stream is not closed by this method.
+     *
+     * @param db    Database containing expressions to use for matching
+     * @param input InputStream containing the records
+     * @return List of RecordMatches with absolute byte offsets
+     * @throws IOException Throws if reading fails, or a HyperscanException if the engine fails
+     */
+    public List<RecordMatch> scan(final ChimeraDatabase db, final InputStream input) throws IOException {
+        if (streamBuffer == null) {
+            streamBuffer = ByteBuffer.allocateDirect(blockSize);
+        }
+
+        final ReadableByteChannel channel = Channels.newChannel(input);
+        final List<RecordMatch> matches = new ArrayList<>();
+        reset();
+        streamBuffer.clear();
+
+        boolean endOfInput = false;
+        while (!endOfInput) {
+            while (streamBuffer.hasRemaining() && !endOfInput) {
+                endOfInput = channel.read(streamBuffer) < 0;
+            }
+
+            final int filled = streamBuffer.position();
+            final int cut = scanBlock(db, streamBuffer, 0, filled, endOfInput, matches);
+
+            // move the incomplete last record to the front of the buffer
+            streamBuffer.limit(filled).position(cut);
+            streamBuffer.compact();
+        }
+
+        return matches;
+    }
+
+    private void reset() {
+        bytesBefore = 0;
+        recordsBefore = 0;
+        linesBefore = 0;
+        recordStart = 0;
+    }
+
+    /**
+     * Scan a block of the window [blockStart, windowEnd) ending after its last delimiter
+     *
+     * @return end of the scanned block
+     */
+    private int scanBlock(final ChimeraDatabase db, final ByteBuffer buffer, final int blockStart, final int windowEnd,
+                          final boolean lastWindow, final List<RecordMatch> matches) throws HyperscanException {
+        if (blockStart == windowEnd) {
+            return blockStart;
+        }
+
+        index.build(buffer, blockStart, windowEnd);
+
+        final int lastDelimiter = index.lastDelimiter();
+        final int blockEnd = lastWindow || lastDelimiter < 0 ? windowEnd : lastDelimiter + 1;
+
+        final ByteBuffer block = buffer.duplicate();
+        block.limit(blockEnd).position(blockStart);
+
+        for (final Match match : scanner.scan(db, block)) {
+            final int position = blockStart + (int) match.getStartPosition();
+            final int delimiters = index.delimitersBefore(position);
+
+            if (index.delimitersBefore(blockStart + (int) match.getEndPosition()) != delimiters) {
+                // the match spans records, which a scan of each record on its own wouldn't find
+                continue;
+            }
+            final long start = bytesBefore + match.getStartPosition();
+            final long end = bytesBefore + match.getEndPosition();
+            final long matchRecordStart = delimiters == 0
+                    ? recordStart
+                    : bytesBefore + index.delimiterAt(delimiters - 1) - blockStart + 1;
+
+            matches.add(new RecordMatch(match, start, end, recordsBefore + delimiters,
+                    linesBefore + index.newlinesBefore(position) + 1, start - matchRecordStart));
+        }
+
+        final int blockDelimiters = index.delimitersBefore(blockEnd);
+        if (blockDelimiters > 0) {
+            recordStart = bytesBefore + index.delimiterAt(blockDelimiters - 1) - blockStart + 1;
+        }
+
+        recordsBefore += blockDelimiters;
+        linesBefore += index.newlinesBefore(blockEnd);
+        bytesBefore += blockEnd - blockStart;
+
+        return blockEnd;
+    }
+
+    @Override
+    public void close() throws HyperscanException {
+        scanner.close();
+    }
+}
@@ -0,0 +1,242 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.db.ChimeraDatabase;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Replaces all matches of a database in a single pass, for example to redact PII in documents.
+ * <p>
+ * Overlapping matches are resolved by the {@link OverlapPolicy} first, then the output is written once into a
+ * presized buffer, so the cost grows with the length of the input instead of the count of matches times its length.
+ * <p>
+ * In case of multithreaded redaction, you need one redactor instance per thread, like for the scanner it uses.
+ */
+public class Redactor {
+    private static final Comparator<Match> LEFTMOST_LONGEST = Comparator
+            .comparingLong(Match::getStartPosition)
+            .thenComparing(Comparator.comparingLong(Match::getEndPosition).reversed());
+
+    private final Scanner scanner;
+    private final OverlapPolicy policy;
+
+    /**
+     * Create a redactor
+     *
+     * @param scanner Scanner with scratch space allocated for the databases used
+     * @param policy  how to pick one of several overlapping matches
+     */
+    public Redactor(Scanner scanner, OverlapPolicy policy) {
+        if (scanner == null || policy == null) {
+            throw new NullPointerException("Null value for scanner or policy is not allowed");
+        }
+
+        this.scanner = scanner;
+        this.policy = policy;
+    }
+
+    /**
+     * Replace the matches in a string
+     *
+     * @param db       Database containing expressions to use for matching
+     * @param input    String to redact
+     * @param replacer provides the replacement of each match, with positions as char indexes
+     * @return redacted string, the input itself if nothing matched
+     * @throws HyperscanException Throws if out of memory, platform not supported or database is null
+     */
+    public String redact(final ChimeraDatabase db, final String input, final Replacer replacer) throws HyperscanException {
+        final List<Match> matches = resolve(scanner.scan(db, input, OffsetUnit.UTF16));
+
+        if (matches.isEmpty())
+            return input;
+
+        final CharSequence[] replacements = new CharSequence[matches.size()];
+        long length = input.length();
+
+        for (int i = 0; i < replacements.length; i++) {
+            final Match match = matches.get(i);
+            replacements[i] = replacer.replace(match);
+            length += replacements[i].length() - (match.getEndPosition() - match.getStartPosition());
+        }
+
+        final StringBuilder output = new StringBuilder((int) Math.min(length, Integer.MAX_VALUE - 8));
+        int copied = 0;
+
+        for (int i = 0; i < replacements.length; i++) {
+            final Match match = matches.get(i);
+            output.append(input, copied, (int) match.getStartPosition()).append(replacements[i]);
+            copied = (int) match.getEndPosition();
+        }
+
+        return output.append(input, copied, input.length()).toString();
+    }
+
+    /**
+     * Replace the matches in the remaining bytes of a buffer without decoding it into a string.
+     * The position of the buffer is not changed.
+     *
+     * @param db       Database containing expressions to use for matching
+     * @param input    UTF-8 encoded buffer to redact
+     * @param replacer provides the replacement of each match, with positions as byte offsets relative to the
+     *                 position of the buffer, replacements are encoded as UTF-8
+     * @return new buffer containing the redacted bytes, ready to be read
+     * @throws HyperscanException Throws if out of memory, platform not supported or database is null
+     */
+    public ByteBuffer redact(final ChimeraDatabase db, final ByteBuffer input, final Replacer replacer) throws HyperscanException {
+        final List<Match> matches = resolve(scanner.scan(db, input));
+
+        final byte[][] replacements = new byte[matches.size()][];
+        CharSequence previous = null;
+        long length = input.remaining();
+
+        for (int i = 0; i < replacements.length; i++) {
+            final Match match = matches.get(i);
+            final CharSequence replacement = replacer.replace(match);
+
+            // constant replacements are encoded once
+            replacements[i] = replacement == previous ? replacements[i - 1] : encode(replacement);
+            previous = replacement;
+            length += replacements[i].length - (match.getEndPosition() - match.getStartPosition());
+        }
+
+        final ByteBuffer source = input.duplicate();
+        final ByteBuffer output = ByteBuffer.allocate((int) Math.min(length, Integer.MAX_VALUE - 8));
+        final int base = source.position();
+        final int end = source.limit();
+
+        for (int i = 0; i < replacements.length; i++) {
+            final Match match = matches.get(i);
+            source.limit(base + (int) match.getStartPosition());
+            output.put(source).put(replacements[i]);
+            source.limit(end).position(base + (int) match.getEndPosition());
+        }
+
+        output.put(source);
+        output.flip();
+        return output;
+    }
+
+    /**
+     * Drop empty and overlapping matches according to the policy
+     *
+     * @return the remaining matches ordered by start position
+     */
+    List<Match> resolve(final List<Match> matches) {
+        if (matches.isEmpty())
+            return matches;
+
+        final Match[] candidates = matches.stream()
+                .filter(match -> match.getEndPosition() > match.getStartPosition())
+                .toArray(Match[]::new);
+
+        if (policy == OverlapPolicy.LEFTMOST_LONGEST) {
+            Arrays.sort(candidates, LEFTMOST_LONGEST);
+
+            final List<Match> resolved = new ArrayList<>();
+            long end = 0;
+            for (final Match match : candidates) {
+                if (match.getStartPosition() >= end) {
+                    resolved.add(match);
+                    end = match.getEndPosition();
+                }
+            }
+
+            return resolved;
+        }
+
+        Arrays.sort(candidates, Comparator.comparingInt(Redactor::priority).reversed().thenComparing(LEFTMOST_LONGEST));
+
+        // chosen matches by start position, to find overlapping neighbours in logarithmic time
+        final TreeMap<Long, Match> chosen = new TreeMap<>();
+        for (final Match match : candidates) {
+            final Map.Entry<Long, Match> before = chosen.floorEntry(match.getStartPosition());
+            final Map.Entry<Long, Match> after = chosen.ceilingEntry(match.getStartPosition());
+
+            if ((before == null || before.getValue().getEndPosition() <= match.getStartPosition())
+                    && (after == null || after.getKey() >= match.getEndPosition())) {
+                chosen.put(match.getStartPosition(), match);
+            }
+        }
+
+        return new ArrayList<>(chosen.values());
+    }
+
+    private static int priority(final Match match) {
+        final Object context = match.getMatchedExpression().getContext();
+        return context instanceof Number ? ((Number) context).intValue() : 0;
+    }
+
+    private static byte[] encode(final CharSequence replacement) {
+        if (replacement instanceof String) {
+            return ((String) replacement).getBytes(StandardCharsets.UTF_8);
+        }
+
+        final ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(replacement));
+        final byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * How to pick one of several overlapping matches
+     */
+    public enum OverlapPolicy {
+        /**
+         * Prefer the match starting first, and of those the longest one
+         */
+        LEFTMOST_LONGEST,
+
+        /**
+         * Prefer the match of the expression with the highest priority, which is its context if that is a
+         * {@link Number}, otherwise 0. Matches of the same priority are picked leftmost-longest.
+         */
+        PRIORITY
+    }
+
+    /**
+     * Provides the replacement of a match
+     */
+    @FunctionalInterface
+    public interface Replacer {
+        /**
+         * Get the replacement of a match
+         *
+         * @param match Match to replace
+         * @return replacement, may be empty to remove the match
+         */
+        CharSequence replace(Match match);
+
+        /**
+         * Replace every match with the same text
+         *
+         * @param replacement text to insert
+         * @return Replacer
+         */
+        static Replacer with(final String replacement) {
+            return match -> replacement;
+        }
+
+        /**
+         * Replace every unit of a match with the mask character, so the length of the input is kept.
+         * Units are chars for strings and bytes for buffers.
+         *
+         * @param mask character to insert, should be ASCII for buffers
+         * @return Replacer
+         */
+        static Replacer mask(final char mask) {
+            return match -> {
+                final char[] masked = new char[(int) (match.getEndPosition() - match.getStartPosition())];
+                Arrays.fill(masked, mask);
+                return CharBuffer.wrap(masked);
+            };
+        }
+    }
+}
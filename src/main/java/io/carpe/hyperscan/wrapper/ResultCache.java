@@ -0,0 +1,253 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.db.ChimeraDatabase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded cache of scan results for inputs seen before, like retries, templated notifications or spam.
+ * <p>
+ * Results are keyed by the version of the database and a 128 bit MurmurHash3 of the input, and stored compactly as
+ * arrays instead of Match objects. The least recently used results are evicted once the count of entries or their
+ * estimated heap weight exceeds its bound. Results of a database are dropped when it is closed, and a database
+ * replacing another one has a new version, so stale results are never returned.
+ * <p>
+ * Instances can be shared between threads, each thread scanning with its own Scanner.
+ */
+public class ResultCache {
+    private static final long ENTRY_OVERHEAD = 96;
+    private static final long STRING_OVERHEAD = 40;
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<Long> trackedVersions = new HashSet<>();
+    private long weight;
+    private long hits;
+    private long misses;
+
+    /**
+     * Create a cache
+     *
+     * @param maxEntries maximum count of cached results
+     * @param maxWeight  maximum estimated heap size of all cached results in bytes
+     */
+    public ResultCache(int maxEntries, long maxWeight) {
+        if (maxEntries < 1 || maxWeight < 1) {
+            throw new IllegalArgumentException("Cache bounds must be positive");
+        }
+
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Get the cached matches of an input, or scan it and cache the matches
+     *
+     * @param scanner Scanner of the current thread, with scratch space allocated for the database
+     * @param db      Database containing expressions to use for matching
+     * @param input   String to match against
+     * @return List of Matches with positions in the offset unit of the scanner
+     * @throws HyperscanException Throws if out of memory, platform not supported or database is null
+     */
+    public List<Match> scan(final Scanner scanner, final ChimeraDatabase db, final String input) throws HyperscanException {
+        final long[] hash = Murmur3.hash128(input, scanner.getOffsetUnit().ordinal());
+        final Key key = new Key(db.getVersion(), input.length(), hash[0], hash[1]);
+
+        synchronized (this) {
+            final Entry cached = entries.get(key);
+
+            if (cached != null) {
+                hits++;
+                return cached.toMatches();
+            }
+
+            misses++;
+        }
+
+        final List<Match> matches = scanner.scan(db, input);
+        final Entry entry = Entry.of(matches);
+
+        synchronized (this) {
+            if (entry.weight <= maxWeight && entries.put(key, entry) == null) {
+                weight += entry.weight;
+
+                if (trackedVersions.add(key.version)) {
+                    // runs right away if the database was closed during the scan
+                    db.addCloseListener(() -> invalidate(key.version));
+                }
+
+                evict();
+            }
+        }
+
+        return matches;
+    }
+
+    private void evict() {
+        final Iterator<Entry> iterator = entries.values().iterator();
+
+        while ((entries.size() > maxEntries || weight > maxWeight) && iterator.hasNext()) {
+            weight -= iterator.next().weight;
+            iterator.remove();
+        }
+    }
+
+    private synchronized void invalidate(long version) {
+        trackedVersions.remove(version);
+
+        final Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Key, Entry> entry = iterator.next();
+
+            if (entry.getKey().version == version) {
+                weight -= entry.getValue().weight;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Drop all cached results
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * Get the count of cached results
+     *
+     * @return count of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the estimated heap size of all cached results
+     *
+     * @return count of bytes
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Get the count of scans answered from the cache
+     *
+     * @return count of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the count of scans which had to run the engine
+     *
+     * @return count of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private static final class Key {
+        private final long version;
+        private final int length;
+        private final long hash1;
+        private final long hash2;
+
+        private Key(long version, int length, long hash1, long hash2) {
+            this.version = version;
+            this.length = length;
+            this.hash1 = hash1;
+            this.hash2 = hash2;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key that = (Key) o;
+            return version == that.version && length == that.length && hash1 == that.hash1 && hash2 == that.hash2;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash1 ^ (hash1 >>> 32));
+        }
+    }
+
+    /**
+     * Matches of an input as expressions and positions, plus the matched strings if any were extracted
+     */
+    private static final class Entry {
+        private final Expression[] expressions;
+        private final long[] positions;
+        private final String[] matched;
+        private final long weight;
+
+        private Entry(Expression[] expressions, long[] positions, String[] matched, long weight) {
+            this.expressions = expressions;
+            this.positions = positions;
+            this.matched = matched;
+            this.weight = weight;
+        }
+
+        static Entry of(List<Match> matches) {
+            final int count = matches.size();
+            final Expression[] expressions = new Expression[count];
+            final long[] positions = new long[2 * count];
+            String[] matched = null;
+            long weight = ENTRY_OVERHEAD + 8L * count + 16L * count;
+
+            int i = 0;
+            for (final Match match : matches) {
+                expressions[i] = match.getMatchedExpression();
+                positions[2 * i] = match.getStartPosition();
+                positions[2 * i + 1] = match.getEndPosition();
+
+                if (match.getMatchedString() != null) {
+                    if (matched == null) {
+                        matched = new String[count];
+                        weight += 8L * count;
+                    }
+
+                    matched[i] = match.getMatchedString();
+                    weight += STRING_OVERHEAD + 2L * matched[i].length();
+                }
+
+                i++;
+            }
+
+            return new Entry(expressions, positions, matched, weight);
+        }
+
+        List<Match> toMatches() {
+            if (expressions.length == 0) {
+                return Collections.emptyList();
+            }
+
+            final List<Match> matches = new ArrayList<>(expressions.length);
+            for (int i = 0; i < expressions.length; i++) {
+                final long start = positions[2 * i];
+                final long end = positions[2 * i + 1];
+
+                if (matched != null && matched[i] != null) {
+                    matches.add(new Match(start, end, matched[i], expressions[i]));
+                } else {
+                    matches.add(new Match(start, end, expressions[i]));
+                }
+            }
+
+            return matches;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package io.carpe.hyperscan.wrapper;
+
+import java.util.List;
+
+/**
+ * Matches of a scan which may have been stopped early, with the reason why it stopped
+ */
+public class ScanResult {
+    private final List<Match> matches;
+    private final Status status;
+    private final List<Expression> limitedExpressions;
+
+    ScanResult(List<Match> matches, Status status, List<Expression> limitedExpressions) {
+        this.matches = matches;
+        this.status = status;
+        this.limitedExpressions = limitedExpressions;
+    }
+
+    /**
+     * Get the matches found until the scan completed or stopped
+     *
+     * @return List of Matches
+     */
+    public List<Match> getMatches() {
+        return matches;
+    }
+
+    /**
+     * Get the reason the scan ended
+     *
+     * @return status
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Get a boolean indicating if the whole input has been scanned
+     *
+     * @return true if completed, otherwise false
+     */
+    public boolean isComplete() {
+        return status == Status.COMPLETED;
+    }
+
+    /**
+     * Get the expressions which exceeded the match or recursion limit of the database. Their matches may be
+     * incomplete even if the scan completed.
+     *
+     * @return List of expressions, empty if no limit was hit
+     */
+    public List<Expression> getLimitedExpressions() {
+        return limitedExpressions;
+    }
+
+    /**
+     * Reason a scan ended
+     */
+    public enum Status {
+        /**
+         * The whole input has been scanned
+         */
+        COMPLETED,
+
+        /**
+         * The deadline passed before the whole input was scanned
+         */
+        TIMED_OUT,
+
+        /**
+         * The cancellation token was cancelled before the whole input was scanned
+         */
+        CANCELLED
+    }
+}
@@ -1,18 +1,26 @@
 package io.carpe.hyperscan.wrapper;
 
 import io.carpe.hyperscan.HyperscanUtils;
+import io.carpe.hyperscan.Telemetry;
 import io.carpe.hyperscan.db.ChimeraDatabase;
+import io.carpe.hyperscan.db.LiteralDatabase;
 import io.carpe.hyperscan.jna.ChimeraLibrary;
 import io.carpe.hyperscan.jna.ChimeraLibraryDirect;
 import io.carpe.hyperscan.jna.HyperscanLibrary;
+import io.carpe.hyperscan.jna.HyperscanLibraryDirect;
 import io.carpe.hyperscan.jna.SizeTByReference;
 import io.carpe.hyperscan.wrapper.flags.ChimeraExpressionFlag;
+import com.sun.jna.Native;
 import com.sun.jna.Pointer;
 import com.sun.jna.ptr.PointerByReference;
 
 import java.io.Closeable;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -21,17 +29,63 @@ import java.util.List;
  * In case of multithreaded scanning, you need one scanner instance per thread.
  */
 public class Scanner implements Closeable {
+    private static final int CH_SCAN_TERMINATED = -3;
+    // reading the clock costs about as much as a short callback, so the deadline is checked every few matches
+    private static final int DEADLINE_CHECK_INTERVAL = 16;
+    // string inputs are encoded into a native buffer reused by all scanners of a thread
+    private static final ThreadLocal<InputEncoder> ENCODERS = ThreadLocal.withInitial(InputEncoder::new);
+    private static final Comparator<Match> MATCH_ORDER = Comparator.comparingLong(Match::getEndPosition)
+            .thenComparingLong(Match::getStartPosition);
     private final LinkedList<long[]> matchedIds = new LinkedList<>();
     private final List<Match> noMatches = Collections.emptyList();
     private final ChimeraLibrary.match_event_handler chimeraMatchHandler = new ChimeraLibrary.match_event_handler() {
         public int invoke(int id, long from, long to, int flags, Pointer context) {
             long[] tuple = {id, from, to};
             matchedIds.add(tuple);
+            // a non-zero return value terminates the scan
+            return shouldStop() ? 1 : 0;
+        }
+    };
+    private final LinkedHashSet<Integer> limitedIds = new LinkedHashSet<>();
+    private final ChimeraLibrary.error_event_handler chimeraErrorHandler = new ChimeraLibrary.error_event_handler() {
+        public int invoke(int errorType, int id, Pointer info, Pointer context) {
+            // the expression exceeded the match or recursion limit, the scan goes on without it
+            limitedIds.add(id);
+            return shouldStop() ? 1 : 0;
+        }
+    };
+    private Deadline currentDeadline;
+    private CancellationToken currentToken;
+    private ScanResult.Status stopReason;
+    private int callbacks;
+    private final LinkedList<long[]> matchedLiterals = new LinkedList<>();
+    private final HyperscanLibrary.match_event_handler literalMatchHandler = new HyperscanLibrary.match_event_handler() {
+        public int invoke(int id, long from, long to, int flags, Pointer context) {
+            long[] tuple = {id, to};
+            matchedLiterals.add(tuple);
             return 0;
         }
     };
+    private final OffsetUnit offsetUnit;
     private PointerByReference scratchReference = new PointerByReference();
     private Pointer scratch;
+    private Pointer literalScratch;
+
+    /**
+     * Create a scanner reporting positions in strings as UTF-16 char indexes
+     */
+    public Scanner() {
+        this(OffsetUnit.UTF16);
+    }
+
+    /**
+     * Create a scanner
+     *
+     * @param offsetUnit unit of the positions of matches found in strings, {@link OffsetUnit#BYTES} skips conversion
+     */
+    public Scanner(OffsetUnit offsetUnit) {
+        this.offsetUnit = offsetUnit;
+    }
 
     /**
      * Check if the hardware platform is supported
@@ -81,6 +135,15 @@ public class Scanner implements Closeable {
         return size.getValue().longValue();
     }
 
+    /**
+     * Get the unit of the positions of matches found in strings
+     *
+     * @return offset unit
+     */
+    public OffsetUnit getOffsetUnit() {
+        return offsetUnit;
+    }
+
     /**
      * Allocate a scratch space.  Must be called at least once with each
      * database that will be used before scan is called.
@@ -96,7 +159,9 @@ public class Scanner implements Closeable {
             scratchReference = new PointerByReference();
         }
 
+        final Telemetry.Span span = Telemetry.get().allocScratch(Telemetry.CHIMERA);
         final int hsError = ChimeraLibrary.INSTANCE.ch_alloc_scratch(dbPointer, scratchReference);
+        finish(span, hsError, span.isRecording() ? db.getSize() : 0);
 
         if (hsError != 0)
             throw new HyperscanException("Failed to allocScratch.", HyperscanUtils.hsErrorIntToException(hsError));
@@ -104,64 +169,541 @@ public class Scanner implements Closeable {
         scratch = scratchReference.getValue();
     }
 
+    /**
+     * Allocate a scratch space for literal databases.  Must be called at least once with each
+     * literal database that will be used before scan is called.
+     *
+     * @param db LiteralDatabase containing literals to use for matching
+     * @throws HyperscanException Throws if out of memory or platform not supported
+     *                            or if the allocation fails
+     */
+    public void allocScratch(final LiteralDatabase db) throws HyperscanException {
+        final PointerByReference literalScratchReference = new PointerByReference(literalScratch);
+
+        final Telemetry.Span span = Telemetry.get().allocScratch(Telemetry.HYPERSCAN);
+        final int hsError = HyperscanLibrary.INSTANCE.hs_alloc_scratch(db.getPointer(), literalScratchReference);
+        finish(span, hsError, span.isRecording() ? db.getSize() : 0);
+
+        if (hsError != 0)
+            throw new HyperscanException("Failed to allocScratch.", HyperscanUtils.hsErrorIntToException(hsError));
+
+        literalScratch = literalScratchReference.getValue();
+    }
+
     /**
      * scan for a match in a string using a compiled expression database
      * Can only be executed one at a time on a per instance basis
      *
      * @param db    Database containing expressions to use for matching
      * @param input String to match against
-     * @return List of Matches
+     * @return List of Matches with positions in the offset unit of the scanner
      * @throws HyperscanException Throws if out of memory, platform not supported or database is null
      */
     public List<Match> scan(final ChimeraDatabase db, final String input) throws HyperscanException {
+        return scan(db, input, offsetUnit);
+    }
+
+    /**
+     * scan for a match in a string using a compiled expression database
+     * Can only be executed one at a time on a per instance basis
+     *
+     * @param db    Database containing expressions to use for matching
+     * @param input String to match against
+     * @param unit  unit of the positions of the matches
+     * @return List of Matches
+     * @throws HyperscanException Throws if out of memory, platform not supported or database is null
+     */
+    public List<Match> scan(final ChimeraDatabase db, final String input, final OffsetUnit unit) throws HyperscanException {
+        final Telemetry.Span span = Telemetry.get().scan(Telemetry.CHIMERA, input);
+
+        try {
+            return recorded(span, scanUnrecorded(db, input, unit));
+        } catch (final HyperscanException | RuntimeException e) {
+            span.setError(e);
+            throw e;
+        } finally {
+            span.finish();
+        }
+    }
+
+    private List<Match> scanUnrecorded(final ChimeraDatabase db, final String input, final OffsetUnit unit) throws HyperscanException {
+        if (isTooShort(db, input))
+            return noMatches;
+
         final Pointer dbPointer = db.getPointer();
 
-        final byte[] utf8bytes = input.getBytes(StandardCharsets.UTF_8);
-        final int bytesLength = utf8bytes.length;
+        final InputEncoder encoder = ENCODERS.get();
+        final ByteBuffer utf8bytes = encoder.encode(input);
 
         matchedIds.clear();
-        int hsError = ChimeraLibraryDirect.ch_scan(dbPointer, input, bytesLength,
-                0, scratch, chimeraMatchHandler, Pointer.NULL);
+        limitedIds.clear();
+        int hsError = ChimeraLibraryDirect.ch_scan(dbPointer, encoder.pointer(), utf8bytes.limit(),
+                0, scratch, chimeraMatchHandler, chimeraErrorHandler, Pointer.NULL);
 
-        if (hsError != 0)
+        if (hsError != 0 && !(hsError == CH_SCAN_TERMINATED && stopReason != null))
             throw new HyperscanException("Failed to scan.", HyperscanUtils.hsErrorIntToException(hsError));
 
         if (matchedIds.isEmpty())
             return noMatches;
 
-        final int[] byteToIndex = HyperscanUtils.utf8ByteIndexesMapping(input, bytesLength);
+        final OffsetMapping mapping = OffsetMapping.of(unit, input, utf8bytes);
         final LinkedList<Match> matches = new LinkedList<>();
 
         matchedIds.forEach(tuple -> {
             final int id = (int) tuple[0];
             final long from = tuple[1];
-            final long to = tuple[2] < 1 ? 1 : tuple[2]; //prevent index out of bound exception later
-
-            final int startIndex = byteToIndex[(int) from];
-            final int endIndex = byteToIndex[(int) to - 1] + 1;   //Adding the +1 here to make more sense in the string.substring().
-            //This is just for convenience and it can be adjusted later or configurable
-            //2018-12-04 ~Carpe
+            final long to = tuple[2];
             final ChimeraExpression matchingExpression = db.getExpression(id);
 
             if (matchingExpression.getFlags().contains(ChimeraExpressionFlag.EXTRACT_MATCHED)) {
                 // extract matched text from input and store in match
-                matches.add(new Match(startIndex, endIndex, input.substring(startIndex, endIndex), matchingExpression));
+                matches.add(new Match(mapping.start(from), mapping.end(to), mapping.text(from, to), matchingExpression));
             } else {
-                matches.add(new Match(startIndex, endIndex, matchingExpression));
+                matches.add(new Match(mapping.start(from), mapping.end(to), matchingExpression));
             }
         });
 
         return matches;
     }
 
+    /**
+     * scan for a match in a string using a compiled expression database, stopping once the deadline has passed
+     * Can only be executed one at a time on a per instance basis
+     *
+     * @param db       Database containing expressions to use for matching
+     * @param input    String to match against
+     * @param deadline Deadline after which the scan is stopped
+     * @return ScanResult with the matches found until the scan completed or stopped
+     * @throws HyperscanException Throws if out of memory, platform not supported or database is null
+     */
+    public ScanResult scan(final ChimeraDatabase db, final String input, final Deadline deadline) throws HyperscanException {
+        return scan(db, input, deadline, null);
+    }
+
+    /**
+     * scan for a match in a string using a compiled expression database, stopping once the token is cancelled
+     * Can only be executed one at a time on a per instance basis
+     *
+     * @param db    Database containing expressions to use for matching
+     * @param input String to match against
+     * @param token CancellationToken to stop the scan with
+     * @return ScanResult with the matches found until the scan completed or stopped
+     * @throws HyperscanException Throws if out of memory, platform not supported or database is null
+     */
+    public ScanResult scan(final ChimeraDatabase db, final String input, final CancellationToken token) throws HyperscanException {
+        return scan(db, input, null, token);
+    }
+
+    /**
+     * scan for a match in a string using a compiled expression database, stopping once the deadline has passed
+     * or the token is cancelled, whichever comes first
+     * Can only be executed one at a time on a per instance basis
+     *
+     * @param db       Database containing expressions to use for matching
+     * @param input    String to match against
+     * @param deadline Deadline after which the scan is stopped, or null
+     * @param token    CancellationToken to stop the scan with, or null
+     * @return ScanResult with the matches found until the scan completed or stopped
+     * @throws HyperscanException Throws if out of memory, platform not supported or database is null
+     */
+    public ScanResult scan(final ChimeraDatabase db, final String input, final Deadline deadline,
+                           final CancellationToken token) throws HyperscanException {
+        startLimitedScan(deadline, token);
+
+        try {
+            final List<Match> matches = stopReason == null ? scan(db, input, offsetUnit) : noMatches;
+            return new ScanResult(matches, stopReason == null ? ScanResult.Status.COMPLETED : stopReason, limitedExpressions(db));
+        } finally {
+            endLimitedScan();
+        }
+    }
+
+    /**
+     * scan for a match in the remaining bytes of a buffer using a compiled expression database, stopping once the
+     * deadline has passed or the token is cancelled, whichever comes first
+     * Can only be executed one at a time on a per instance basis
+     *
+     * @param db       Database containing expressions to use for matching
+     * @param input    Buffer to match against, the position of the buffer is not changed
+     * @param deadline Deadline after which the scan is stopped, or null
+     * @param token    CancellationToken to stop the scan with, or null
+     * @return ScanResult with the matches found until the scan completed or stopped, with byte offsets relative to
+     * the position of the buffer
+     * @throws HyperscanException Throws if out of memory, platform not supported or database is null
+     */
+    public ScanResult scan(final ChimeraDatabase db, final ByteBuffer input, final Deadline deadline,
+                           final CancellationToken token) throws HyperscanException {
+        startLimitedScan(deadline, token);
+
+        try {
+            final List<Match> matches = stopReason == null ? scan(db, input) : noMatches;
+            return new ScanResult(matches, stopReason == null ? ScanResult.Status.COMPLETED : stopReason, limitedExpressions(db));
+        } finally {
+            endLimitedScan();
+        }
+    }
+
+    private void startLimitedScan(final Deadline deadline, final CancellationToken token) {
+        currentDeadline = deadline;
+        currentToken = token;
+        stopReason = null;
+        callbacks = 0;
+
+        // don't even start if there is no time left
+        shouldStop();
+    }
+
+    private void endLimitedScan() {
+        currentDeadline = null;
+        currentToken = null;
+        stopReason = null;
+    }
+
+    /**
+     * Check the deadline and cancellation token of the current scan, called from the engine callbacks
+     *
+     * @return true if the scan has to stop, otherwise false
+     */
+    private boolean shouldStop() {
+        if (currentToken != null && currentToken.isCancelled()) {
+            stopReason = ScanResult.Status.CANCELLED;
+            return true;
+        }
+
+        if (currentDeadline != null && callbacks++ % DEADLINE_CHECK_INTERVAL == 0 && currentDeadline.isExpired()) {
+            stopReason = ScanResult.Status.TIMED_OUT;
+            return true;
+        }
+
+        return false;
+    }
+
+    private List<Expression> limitedExpressions(final ChimeraDatabase db) {
+        if (limitedIds.isEmpty())
+            return Collections.emptyList();
+
+        final List<Expression> expressions = new ArrayList<>(limitedIds.size());
+        for (final int id : limitedIds) {
+            expressions.add(db.getExpression(id));
+        }
+
+        return expressions;
+    }
+
+    /**
+     * scan for a match in the remaining bytes of a buffer using a compiled expression database
+     * Can only be executed one at a time on a per instance basis
+     * <p>
+     * Direct buffers, including memory-mapped files, are handed to the engine without copying. Heap buffers are
+     * copied into a temporary direct buffer first. The position of the buffer is not changed.
+     *
+     * @param db    Database containing expressions to use for matching
+     * @param input Buffer to match against
+     * @return List of Matches with byte offsets relative to the position of the buffer
+     * @throws HyperscanException Throws if out of memory, platform not supported or database is null
+     */
+    public List<Match> scan(final ChimeraDatabase db, final ByteBuffer input) throws HyperscanException {
+        final Telemetry.Span span = Telemetry.get().scan(Telemetry.CHIMERA, input.remaining());
+
+        try {
+            return recorded(span, scanUnrecorded(db, input));
+        } catch (final HyperscanException | RuntimeException e) {
+            span.setError(e);
+            throw e;
+        } finally {
+            span.finish();
+        }
+    }
+
+    private List<Match> scanUnrecorded(final ChimeraDatabase db, final ByteBuffer input) throws HyperscanException {
+        if (input.remaining() < db.getMinWidth())
+            return noMatches;
+
+        final Pointer dbPointer = db.getPointer();
+        final ByteBuffer directInput = input.isDirect() ? input.duplicate() : copyToDirect(input);
+        final int bytesLength = directInput.remaining();
+        final Pointer data = Native.getDirectBufferPointer(directInput).share(directInput.position());
+
+        matchedIds.clear();
+        limitedIds.clear();
+        int hsError = ChimeraLibraryDirect.ch_scan(dbPointer, data, bytesLength,
+                0, scratch, chimeraMatchHandler, chimeraErrorHandler, Pointer.NULL);
+
+        if (hsError != 0 && !(hsError == CH_SCAN_TERMINATED && stopReason != null))
+            throw new HyperscanException("Failed to scan.", HyperscanUtils.hsErrorIntToException(hsError));
+
+        if (matchedIds.isEmpty())
+            return noMatches;
+
+        final LinkedList<Match> matches = new LinkedList<>();
+        matchedIds.forEach(tuple -> matches.add(byteMatch(db, directInput, (int) tuple[0], tuple[1], tuple[2])));
+
+        return matches;
+    }
+
+    /**
+     * scan the remaining bytes of a buffer, handing every match to the sink as soon as it is found
+     * instead of collecting them
+     *
+     * @return false if the sink terminated the scan, otherwise true
+     */
+    boolean scan(final ChimeraDatabase db, final ByteBuffer input, final MatchSink sink) throws HyperscanException {
+        if (input.remaining() < db.getMinWidth())
+            return true;
+
+        final ByteBuffer directInput = input.isDirect() ? input.duplicate() : copyToDirect(input);
+        final Pointer data = Native.getDirectBufferPointer(directInput).share(directInput.position());
+        final ChimeraLibrary.match_event_handler sinkHandler = new ChimeraLibrary.match_event_handler() {
+            public int invoke(int id, long from, long to, int flags, Pointer context) {
+                // a non-zero return value terminates the scan
+                return sink.accept(byteMatch(db, directInput, id, from, to)) ? 0 : 1;
+            }
+        };
+
+        int hsError = ChimeraLibraryDirect.ch_scan(db.getPointer(), data, directInput.remaining(),
+                0, scratch, sinkHandler, null, Pointer.NULL);
+
+        if (hsError == CH_SCAN_TERMINATED)
+            return false;
+
+        if (hsError != 0)
+            throw new HyperscanException("Failed to scan.", HyperscanUtils.hsErrorIntToException(hsError));
+
+        return true;
+    }
+
+    private static Match byteMatch(final ChimeraDatabase db, final ByteBuffer directInput, final int id,
+                                   final long from, final long to) {
+        final ChimeraExpression matchingExpression = db.getExpression(id);
+
+        if (matchingExpression.getFlags().contains(ChimeraExpressionFlag.EXTRACT_MATCHED)) {
+            // decode the matched bytes only, the rest of the input stays off-heap
+            final int basePosition = directInput.position();
+            final ByteBuffer matched = directInput.duplicate();
+            matched.limit(basePosition + (int) to).position(basePosition + (int) from);
+            return new Match(from, to, StandardCharsets.UTF_8.decode(matched).toString(), matchingExpression);
+        }
+
+        return new Match(from, to, matchingExpression);
+    }
+
+    /**
+     * scan for a match in a string using a compiled literal database
+     * Can only be executed one at a time on a per instance basis
+     *
+     * @param db    LiteralDatabase containing literals to use for matching
+     * @param input String to match against
+     * @return List of Matches with positions in the offset unit of the scanner
+     * @throws HyperscanException Throws if out of memory, platform not supported or database is null
+     */
+    public List<Match> scan(final LiteralDatabase db, final String input) throws HyperscanException {
+        return scan(db, input, offsetUnit);
+    }
+
+    /**
+     * scan for a match in a string using a compiled literal database
+     * Can only be executed one at a time on a per instance basis
+     *
+     * @param db    LiteralDatabase containing literals to use for matching
+     * @param input String to match against
+     * @param unit  unit of the positions of the matches
+     * @return List of Matches
+     * @throws HyperscanException Throws if out of memory, platform not supported or database is null
+     */
+    public List<Match> scan(final LiteralDatabase db, final String input, final OffsetUnit unit) throws HyperscanException {
+        final Telemetry.Span span = Telemetry.get().scan(Telemetry.HYPERSCAN, input);
+
+        try {
+            return recorded(span, scanUnrecorded(db, input, unit));
+        } catch (final HyperscanException | RuntimeException e) {
+            span.setError(e);
+            throw e;
+        } finally {
+            span.finish();
+        }
+    }
+
+    private List<Match> scanUnrecorded(final LiteralDatabase db, final String input, final OffsetUnit unit) throws HyperscanException {
+        if (isTooShort(db.getMinWidth(), input))
+            return noMatches;
+
+        final InputEncoder encoder = ENCODERS.get();
+        final ByteBuffer utf8bytes = encoder.encode(input);
+
+        matchedLiterals.clear();
+        int hsError = HyperscanLibraryDirect.hs_scan(db.getPointer(), encoder.pointer(), utf8bytes.limit(),
+                0, literalScratch, literalMatchHandler, Pointer.NULL);
+
+        if (hsError != 0)
+            throw new HyperscanException("Failed to scan.", HyperscanUtils.hsErrorIntToException(hsError));
+
+        if (matchedLiterals.isEmpty())
+            return noMatches;
+
+        final OffsetMapping mapping = OffsetMapping.of(unit, input, utf8bytes);
+        final LinkedList<Match> matches = new LinkedList<>();
+
+        matchedLiterals.forEach(tuple -> {
+            final LiteralExpression matchingExpression = db.getExpression((int) tuple[0]);
+            final long to = tuple[1];
+            // every match of a literal is exactly as long as the literal, so the start is known without SOM
+            final long from = to - matchingExpression.getLength();
+
+            matches.add(new Match(mapping.start(from), mapping.end(to), matchingExpression));
+        });
+
+        return matches;
+    }
+
+    /**
+     * scan for a match in the remaining bytes of a buffer using a compiled literal database
+     * Can only be executed one at a time on a per instance basis
+     *
+     * @param db    LiteralDatabase containing literals to use for matching
+     * @param input Buffer to match against, the position of the buffer is not changed
+     * @return List of Matches with byte offsets relative to the position of the buffer
+     * @throws HyperscanException Throws if out of memory, platform not supported or database is null
+     */
+    public List<Match> scan(final LiteralDatabase db, final ByteBuffer input) throws HyperscanException {
+        final Telemetry.Span span = Telemetry.get().scan(Telemetry.HYPERSCAN, input.remaining());
+
+        try {
+            return recorded(span, scanUnrecorded(db, input));
+        } catch (final HyperscanException | RuntimeException e) {
+            span.setError(e);
+            throw e;
+        } finally {
+            span.finish();
+        }
+    }
+
+    private List<Match> scanUnrecorded(final LiteralDatabase db, final ByteBuffer input) throws HyperscanException {
+        if (input.remaining() < db.getMinWidth())
+            return noMatches;
+
+        final ByteBuffer directInput = input.isDirect() ? input.duplicate() : copyToDirect(input);
+        final Pointer data = Native.getDirectBufferPointer(directInput).share(directInput.position());
+
+        matchedLiterals.clear();
+        int hsError = HyperscanLibraryDirect.hs_scan(db.getPointer(), data, directInput.remaining(),
+                0, literalScratch, literalMatchHandler, Pointer.NULL);
+
+        if (hsError != 0)
+            throw new HyperscanException("Failed to scan.", HyperscanUtils.hsErrorIntToException(hsError));
+
+        if (matchedLiterals.isEmpty())
+            return noMatches;
+
+        final LinkedList<Match> matches = new LinkedList<>();
+
+        matchedLiterals.forEach(tuple -> {
+            final LiteralExpression matchingExpression = db.getExpression((int) tuple[0]);
+            final long to = tuple[1];
+
+            matches.add(new Match(to - matchingExpression.getLength(), to, matchingExpression));
+        });
+
+        return matches;
+    }
+
+    /**
+     * scan for a match in a string using both a compiled expression database and a compiled literal database,
+     * so plain string rules don't have to be compiled as regexes
+     * Can only be executed one at a time on a per instance basis
+     *
+     * @param db       Database containing expressions to use for matching
+     * @param literals LiteralDatabase containing literals to use for matching
+     * @param input    String to match against
+     * @return List of Matches of both databases with positions in the offset unit of the scanner,
+     * ordered by end position
+     * @throws HyperscanException Throws if out of memory, platform not supported or database is null
+     */
+    public List<Match> scan(final ChimeraDatabase db, final LiteralDatabase literals, final String input) throws HyperscanException {
+        return merge(scan(db, input, offsetUnit), scan(literals, input, offsetUnit));
+    }
+
+    /**
+     * scan for a match in the remaining bytes of a buffer using both a compiled expression database and a compiled
+     * literal database
+     * Can only be executed one at a time on a per instance basis
+     *
+     * @param db       Database containing expressions to use for matching
+     * @param literals LiteralDatabase containing literals to use for matching
+     * @param input    Buffer to match against, the position of the buffer is not changed
+     * @return List of Matches of both databases with byte offsets relative to the position of the buffer,
+     * ordered by end position
+     * @throws HyperscanException Throws if out of memory, platform not supported or database is null
+     */
+    public List<Match> scan(final ChimeraDatabase db, final LiteralDatabase literals, final ByteBuffer input) throws HyperscanException {
+        final ByteBuffer directInput = input.isDirect() ? input : copyToDirect(input);
+        return merge(scan(db, directInput), scan(literals, directInput));
+    }
+
+    private static List<Match> recorded(final Telemetry.Span span, final List<Match> matches) {
+        span.setMatchCount(matches.size());
+        return matches;
+    }
+
+    private static void finish(final Telemetry.Span span, final int hsError, final long databaseSize) {
+        span.setDatabaseSize(databaseSize);
+
+        if (hsError != 0) {
+            span.setError(HyperscanUtils.hsErrorIntToException(hsError));
+        }
+
+        span.finish();
+    }
+
+    private List<Match> merge(final List<Match> expressionMatches, final List<Match> literalMatches) {
+        if (literalMatches.isEmpty())
+            return expressionMatches;
+
+        if (expressionMatches.isEmpty())
+            return literalMatches;
+
+        final ArrayList<Match> matches = new ArrayList<>(expressionMatches.size() + literalMatches.size());
+        matches.addAll(expressionMatches);
+        matches.addAll(literalMatches);
+        matches.sort(MATCH_ORDER);
+        return matches;
+    }
+
+    /**
+     * Check if an input is shorter than any match of the database could be, without encoding it
+     */
+    private static boolean isTooShort(final ChimeraDatabase db, final String input) {
+        return isTooShort(db.getMinWidth(), input);
+    }
+
+    private static boolean isTooShort(final long minWidth, final String input) {
+
+        // every char takes one to three bytes in UTF-8, surrogate pairs take four
+        if (input.length() >= minWidth)
+            return false;
+
+        return 3L * input.length() < minWidth || HyperscanUtils.utf8Length(input) < minWidth;
+    }
+
+    private static ByteBuffer copyToDirect(final ByteBuffer input) {
+        final ByteBuffer copy = ByteBuffer.allocateDirect(input.remaining());
+        copy.put(input.duplicate());
+        copy.flip();
+        return copy;
+    }
+
     @Override
     protected void finalize() {
         //check and setting scratch pointer to null to avoid double free
         if (scratch != null) {
-            HyperscanLibrary.INSTANCE.hs_free_scratch(scratch);
+            ChimeraLibrary.INSTANCE.ch_free_scratch(scratch);
             scratch = null;
             scratchReference = null;
         }
+
+        if (literalScratch != null) {
+            HyperscanLibrary.INSTANCE.hs_free_scratch(literalScratch);
+            literalScratch = null;
+        }
     }
 
     @Override
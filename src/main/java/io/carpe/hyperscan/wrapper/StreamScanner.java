@@ -0,0 +1,292 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.HyperscanUtils;
+import io.carpe.hyperscan.db.HyperscanDatabase;
+import io.carpe.hyperscan.jna.HyperscanLibrary;
+import io.carpe.hyperscan.jna.HyperscanLibraryDirect;
+import io.carpe.hyperscan.wrapper.flags.HyperscanModeFlag;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.PointerByReference;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Scanner for inputs too large to be held in memory at once.
+ * <p>
+ * Input is read in fixed-size chunks into a reusable direct buffer and fed to a streaming database, so the whole
+ * input never has to be materialized on the heap. Positions of the matches are absolute byte offsets from the
+ * start of the input.
+ * <p>
+ * In case of multithreaded scanning, you need one scanner instance per thread.
+ */
+public class StreamScanner implements Closeable {
+    /**
+     * Default size of the chunks handed to the engine in bytes
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    private static final int HS_SCAN_TERMINATED = -3;
+
+    private final List<Match> noMatches = Collections.emptyList();
+    private final ByteBuffer buffer;
+    private final Pointer bufferPointer;
+    private final ArrayList<Match> matches = new ArrayList<>();
+    private final MatchSink collector = match -> {
+        matches.add(match);
+        return true;
+    };
+    private HyperscanDatabase currentDatabase;
+    private MatchSink currentSink;
+    private final HyperscanLibrary.match_event_handler matchHandler = new HyperscanLibrary.match_event_handler() {
+        public int invoke(int id, long from, long to, int flags, Pointer context) {
+            // a non-zero return value terminates the scan
+            return currentSink.accept(new Match(from, to, currentDatabase.getExpression(id))) ? 0 : 1;
+        }
+    };
+    private PointerByReference scratchReference = new PointerByReference();
+    private Pointer scratch;
+
+    /**
+     * Create a scanner reading chunks of {@link #DEFAULT_CHUNK_SIZE} bytes
+     */
+    public StreamScanner() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Create a scanner reading chunks of the given size
+     *
+     * @param chunkSize size of the reusable chunk buffer in bytes
+     */
+    public StreamScanner(int chunkSize) {
+        if (chunkSize < 16) {
+            throw new IllegalArgumentException("Chunk size must be at least 16 bytes");
+        }
+
+        this.buffer = ByteBuffer.allocateDirect(chunkSize);
+        this.bufferPointer = Native.getDirectBufferPointer(buffer);
+    }
+
+    /**
+     * Allocate a scratch space.  Must be called at least once with each
+     * database that will be used before scan is called.
+     *
+     * @param db Database containing expressions to use for matching
+     * @throws HyperscanException Throws if out of memory or platform not supported
+     *                            or if the allocation fails
+     */
+    public void allocScratch(final HyperscanDatabase db) throws HyperscanException {
+        if (scratchReference == null) {
+            scratchReference = new PointerByReference();
+        }
+
+        final int hsError = HyperscanLibrary.INSTANCE.hs_alloc_scratch(db.getPointer(), scratchReference);
+
+        if (hsError != 0)
+            throw new HyperscanException("Failed to allocScratch.", HyperscanUtils.hsErrorIntToException(hsError));
+
+        scratch = scratchReference.getValue();
+    }
+
+    /**
+     * scan an input stream until its end using a streaming database.
+     * The stream is not closed by this method.
+     *
+     * @param db    Database compiled in {@link HyperscanModeFlag#STREAM} mode
+     * @param input InputStream to match against
+     * @return List of Matches with absolute byte offsets
+     * @throws IOException Throws if reading fails, or a HyperscanException if the engine fails
+     */
+    public List<Match> scan(final HyperscanDatabase db, final InputStream input) throws IOException {
+        return scan(db, Channels.newChannel(input));
+    }
+
+    /**
+     * scan a blocking channel until its end using a streaming database.
+     * The channel is not closed by this method.
+     *
+     * @param db      Database compiled in {@link HyperscanModeFlag#STREAM} mode
+     * @param channel ReadableByteChannel to match against
+     * @return List of Matches with absolute byte offsets
+     * @throws IOException Throws if reading fails, or a HyperscanException if the engine fails
+     */
+    public List<Match> scan(final HyperscanDatabase db, final ReadableByteChannel channel) throws IOException {
+        scan(db, channel, collector);
+        return drainMatches();
+    }
+
+    /**
+     * scan a blocking channel until its end or until the sink terminates the scan,
+     * handing every match to the sink as soon as it is found
+     */
+    void scan(final HyperscanDatabase db, final ReadableByteChannel channel, final MatchSink sink) throws IOException {
+        final Pointer stream = openStream(db, sink);
+
+        try {
+            while (channel.read(buffer) >= 0) {
+                if (!buffer.hasRemaining() && !scanBuffer(stream)) {
+                    abortStream(stream);
+                    return;
+                }
+            }
+
+            if (!scanBuffer(stream)) {
+                abortStream(stream);
+                return;
+            }
+        } catch (final IOException | RuntimeException e) {
+            abortStream(stream);
+            throw e;
+        }
+
+        closeStream(stream);
+    }
+
+    /**
+     * scan characters of a reader until its end using a streaming database.
+     * Characters are encoded incrementally, so match offsets are byte offsets in the given charset.
+     * Malformed or unmappable characters are replaced. The reader is not closed by this method.
+     *
+     * @param db      Database compiled in {@link HyperscanModeFlag#STREAM} mode
+     * @param reader  Reader to match against
+     * @param charset Charset the expressions expect the input to be encoded in, usually UTF-8
+     * @return List of Matches with absolute byte offsets
+     * @throws IOException Throws if reading fails, or a HyperscanException if the engine fails
+     */
+    public List<Match> scan(final HyperscanDatabase db, final Reader reader, final Charset charset) throws IOException {
+        final CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final CharBuffer chars = CharBuffer.allocate(buffer.capacity());
+        final Pointer stream = openStream(db, collector);
+
+        try {
+            boolean endOfInput = false;
+
+            while (!endOfInput) {
+                endOfInput = reader.read(chars) < 0;
+                chars.flip();
+
+                CoderResult result;
+                while ((result = encoder.encode(chars, buffer, endOfInput)).isOverflow()) {
+                    scanBuffer(stream);
+                }
+
+                if (result.isError()) {
+                    result.throwException();
+                }
+
+                chars.compact();
+            }
+
+            while (encoder.flush(buffer).isOverflow()) {
+                scanBuffer(stream);
+            }
+
+            scanBuffer(stream);
+        } catch (final IOException | RuntimeException e) {
+            abortStream(stream);
+            throw e;
+        }
+
+        closeStream(stream);
+        return drainMatches();
+    }
+
+    private Pointer openStream(final HyperscanDatabase db, final MatchSink sink) throws HyperscanException {
+        if (db.getMode() != HyperscanModeFlag.STREAM) {
+            throw new IllegalArgumentException("Database has not been compiled in stream mode");
+        }
+
+        final PointerByReference streamReference = new PointerByReference();
+        final int hsError = HyperscanLibrary.INSTANCE.hs_open_stream(db.getPointer(), 0, streamReference);
+
+        if (hsError != 0)
+            throw new HyperscanException("Failed to open stream.", HyperscanUtils.hsErrorIntToException(hsError));
+
+        currentDatabase = db;
+        currentSink = sink;
+        matches.clear();
+        buffer.clear();
+
+        return streamReference.getValue();
+    }
+
+    /**
+     * Hand the buffered chunk to the engine
+     *
+     * @return false if the sink terminated the scan, otherwise true
+     */
+    private boolean scanBuffer(final Pointer stream) throws HyperscanException {
+        buffer.flip();
+
+        if (buffer.hasRemaining()) {
+            final int hsError = HyperscanLibraryDirect.hs_scan_stream(stream, bufferPointer, buffer.remaining(),
+                    0, scratch, matchHandler, Pointer.NULL);
+
+            if (hsError == HS_SCAN_TERMINATED)
+                return false;
+
+            if (hsError != 0)
+                throw new HyperscanException("Failed to scan.", HyperscanUtils.hsErrorIntToException(hsError));
+        }
+
+        buffer.clear();
+        return true;
+    }
+
+    private void closeStream(final Pointer stream) throws HyperscanException {
+        // closing the stream reports matches which can only be decided at the end of the input, like $
+        final int hsError = HyperscanLibrary.INSTANCE.hs_close_stream(stream, scratch, matchHandler, Pointer.NULL);
+        currentDatabase = null;
+        currentSink = null;
+
+        if (hsError != 0 && hsError != HS_SCAN_TERMINATED)
+            throw new HyperscanException("Failed to close stream.", HyperscanUtils.hsErrorIntToException(hsError));
+    }
+
+    private List<Match> drainMatches() {
+        if (matches.isEmpty())
+            return noMatches;
+
+        final List<Match> result = new ArrayList<>(matches);
+        matches.clear();
+        return result;
+    }
+
+    private void abortStream(final Pointer stream) {
+        HyperscanLibrary.INSTANCE.hs_close_stream(stream, Pointer.NULL, null, Pointer.NULL);
+        currentDatabase = null;
+        currentSink = null;
+        matches.clear();
+    }
+
+    @Override
+    protected void finalize() {
+        //check and setting scratch pointer to null to avoid double free
+        if (scratch != null) {
+            HyperscanLibrary.INSTANCE.hs_free_scratch(scratch);
+            scratch = null;
+            scratchReference = null;
+        }
+    }
+
+    @Override
+    public void close() throws HyperscanException {
+        this.finalize();
+    }
+}
@@ -0,0 +1,429 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.HyperscanUtils;
+import io.carpe.hyperscan.db.HyperscanDatabase;
+import io.carpe.hyperscan.jna.HyperscanLibrary;
+import io.carpe.hyperscan.jna.HyperscanLibraryDirect;
+import io.carpe.hyperscan.jna.SizeT;
+import io.carpe.hyperscan.jna.SizeTByReference;
+import io.carpe.hyperscan.wrapper.flags.HyperscanModeFlag;
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.PointerByReference;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stream state of many concurrent sessions, like network flows or chat conversations, of which only few are active.
+ * <p>
+ * At most a fixed count of native streams is kept open. When another session needs a stream, the state of the least
+ * recently used one is compressed with {@code hs_compress_stream} and its stream is reused for the other session with
+ * {@code hs_reset_and_expand_stream}. Compressed states take a fraction of the memory of an open stream, and once
+ * they exceed their bound the oldest ones are handed to the {@link Spill}, or dropped if there is none. So memory
+ * grows with the count of active sessions instead of the count of all sessions.
+ * <p>
+ * Positions of the matches are absolute byte offsets from the start of each session.
+ * In case of multithreaded scanning, you need one store instance per thread.
+ *
+ * @param <K> session key type, with proper equals and hashCode
+ */
+public class StreamSessionStore<K> implements Closeable {
+    private static final int HS_SCAN_TERMINATED = -3;
+    private static final int HS_INSUFFICIENT_SPACE = -12;
+
+    private final HyperscanDatabase db;
+    private final int maxActive;
+    private final long maxIdleBytes;
+    private final Spill<K> spill;
+    private final LinkedHashMap<K, Pointer> active = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, byte[]> idle = new LinkedHashMap<>();
+    private final ArrayDeque<Pointer> freeStreams = new ArrayDeque<>();
+    private final SizeTByReference usedSpace = new SizeTByReference();
+    private final ArrayList<Match> matches = new ArrayList<>();
+    private final HyperscanLibrary.match_event_handler matchHandler = new HyperscanLibrary.match_event_handler() {
+        public int invoke(int id, long from, long to, int flags, Pointer context) {
+            matches.add(new Match(from, to, db.getExpression(id)));
+            return 0;
+        }
+    };
+    private long idleBytes;
+    private Memory stateBuffer;
+    private ByteBuffer inputBuffer;
+    private Pointer scratch;
+
+    /**
+     * Create a store dropping the compressed state of idle sessions once it exceeds its bound
+     *
+     * @param db        Database compiled in {@link HyperscanModeFlag#STREAM} mode
+     * @param maxActive maximum count of open native streams
+     * @throws HyperscanException Throws if the scratch space can't be allocated
+     */
+    public StreamSessionStore(HyperscanDatabase db, int maxActive) throws HyperscanException {
+        this(db, maxActive, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Create a store
+     *
+     * @param db           Database compiled in {@link HyperscanModeFlag#STREAM} mode
+     * @param maxActive    maximum count of open native streams
+     * @param maxIdleBytes maximum size of the compressed states of all idle sessions kept in memory
+     * @param spill        receives the compressed state of sessions evicted from memory, or null to drop them
+     * @throws HyperscanException Throws if the scratch space can't be allocated
+     */
+    public StreamSessionStore(HyperscanDatabase db, int maxActive, long maxIdleBytes, Spill<K> spill) throws HyperscanException {
+        if (db.getMode() != HyperscanModeFlag.STREAM) {
+            throw new IllegalArgumentException("Database has not been compiled in stream mode");
+        }
+
+        if (maxActive < 1 || maxIdleBytes < 0) {
+            throw new IllegalArgumentException("Store bounds must be positive");
+        }
+
+        this.db = db;
+        this.maxActive = maxActive;
+        this.maxIdleBytes = maxIdleBytes;
+        this.spill = spill;
+        // compressed states are usually smaller than the state of an open stream, larger ones grow the buffer
+        this.stateBuffer = new Memory(db.getStreamSize());
+
+        final PointerByReference scratchReference = new PointerByReference();
+        final int hsError = HyperscanLibrary.INSTANCE.hs_alloc_scratch(db.getPointer(), scratchReference);
+
+        if (hsError != 0)
+            throw new HyperscanException("Failed to allocScratch.", HyperscanUtils.hsErrorIntToException(hsError));
+
+        scratch = scratchReference.getValue();
+    }
+
+    /**
+     * scan the next chunk of a session, starting the session if it is new.
+     * The position of the buffer is not changed.
+     *
+     * @param session key of the session
+     * @param data    Buffer with the next bytes of the session
+     * @return List of Matches with absolute byte offsets in the session
+     * @throws HyperscanException Throws if out of memory or if the engine fails
+     */
+    public List<Match> scan(final K session, final ByteBuffer data) throws HyperscanException {
+        final Pointer stream = acquire(session);
+        final ByteBuffer directData = data.isDirect() ? data.duplicate() : copyToDirect(data);
+
+        matches.clear();
+        final int hsError = HyperscanLibraryDirect.hs_scan_stream(stream,
+                Native.getDirectBufferPointer(directData).share(directData.position()), directData.remaining(),
+                0, scratch, matchHandler, Pointer.NULL);
+
+        if (hsError != 0 && hsError != HS_SCAN_TERMINATED)
+            throw new HyperscanException("Failed to scan.", HyperscanUtils.hsErrorIntToException(hsError));
+
+        return drainMatches();
+    }
+
+    /**
+     * End a session, reporting the matches which can only be decided at the end of its input, like $
+     *
+     * @param session key of the session
+     * @return List of Matches with absolute byte offsets in the session, empty if the session is unknown
+     * @throws HyperscanException Throws if the engine fails
+     */
+    public List<Match> end(final K session) throws HyperscanException {
+        Pointer stream = active.remove(session);
+
+        if (stream == null) {
+            final byte[] state = takeIdle(session);
+
+            if (state == null)
+                return Collections.emptyList();
+
+            final Pointer free = takeFreeStream();
+
+            try {
+                stream = free == null ? expand(state) : resetAndExpand(free, state);
+            } catch (final HyperscanException e) {
+                restore(session, state, free);
+                throw e;
+            }
+        }
+
+        // resetting reports the end of the session and keeps the stream for the next one
+        matches.clear();
+        final int hsError = HyperscanLibrary.INSTANCE.hs_reset_stream(stream, 0, scratch, matchHandler, Pointer.NULL);
+
+        if (active.size() + freeStreams.size() < maxActive) {
+            freeStreams.push(stream);
+        } else {
+            // the stream was expanded only to end an idle session, keeping it would exceed the bound
+            HyperscanLibrary.INSTANCE.hs_close_stream(stream, Pointer.NULL, null, Pointer.NULL);
+        }
+
+        if (hsError != 0 && hsError != HS_SCAN_TERMINATED)
+            throw new HyperscanException("Failed to close stream.", HyperscanUtils.hsErrorIntToException(hsError));
+
+        return drainMatches();
+    }
+
+    private Pointer acquire(final K session) throws HyperscanException {
+        final Pointer open = active.get(session);
+
+        if (open != null)
+            return open;
+
+        final byte[] state = takeIdle(session);
+        Pointer stream = takeFreeStream();
+
+        try {
+            if (stream == null && active.size() >= maxActive) {
+                stream = suspendLeastRecentlyUsed();
+
+                if (state == null) {
+                    // a new session must not continue the state and offsets of the suspended one
+                    final int hsError = HyperscanLibrary.INSTANCE.hs_reset_stream(stream, 0, Pointer.NULL, null, Pointer.NULL);
+
+                    if (hsError != 0)
+                        throw new HyperscanException("Failed to reset stream.", HyperscanUtils.hsErrorIntToException(hsError));
+                }
+            }
+
+            if (state != null) {
+                stream = stream == null ? expand(state) : resetAndExpand(stream, state);
+            } else if (stream == null) {
+                final PointerByReference streamReference = new PointerByReference();
+                final int hsError = HyperscanLibrary.INSTANCE.hs_open_stream(db.getPointer(), 0, streamReference);
+
+                if (hsError != 0)
+                    throw new HyperscanException("Failed to open stream.", HyperscanUtils.hsErrorIntToException(hsError));
+
+                stream = streamReference.getValue();
+            }
+        } catch (final HyperscanException e) {
+            restore(session, state, stream);
+            throw e;
+        }
+
+        active.put(session, stream);
+        return stream;
+    }
+
+    private Pointer takeFreeStream() {
+        return freeStreams.poll();
+    }
+
+    /**
+     * Undo taking the state of a session and a stream for it, after the engine failed to set the stream up
+     */
+    private void restore(final K session, final byte[] state, final Pointer stream) {
+        if (stream != null) {
+            // the stream is in no known state after the failure, it is not reused
+            HyperscanLibrary.INSTANCE.hs_close_stream(stream, Pointer.NULL, null, Pointer.NULL);
+        }
+
+        if (state != null) {
+            idle.put(session, state);
+            idleBytes += state.length;
+            evictIdle();
+        }
+    }
+
+    private byte[] takeIdle(final K session) {
+        final byte[] state = idle.remove(session);
+
+        if (state != null) {
+            idleBytes -= state.length;
+            return state;
+        }
+
+        return spill != null ? spill.load(session) : null;
+    }
+
+    /**
+     * Compress the state of the least recently used session and hand its stream over
+     */
+    private Pointer suspendLeastRecentlyUsed() throws HyperscanException {
+        final Iterator<Map.Entry<K, Pointer>> iterator = active.entrySet().iterator();
+        final Map.Entry<K, Pointer> eldest = iterator.next();
+        final byte[] state = compress(eldest.getValue());
+
+        iterator.remove();
+        idle.put(eldest.getKey(), state);
+        idleBytes += state.length;
+        evictIdle();
+
+        return eldest.getValue();
+    }
+
+    private void evictIdle() {
+        final Iterator<Map.Entry<K, byte[]>> iterator = idle.entrySet().iterator();
+
+        while (idleBytes > maxIdleBytes && iterator.hasNext()) {
+            final Map.Entry<K, byte[]> eldest = iterator.next();
+            idleBytes -= eldest.getValue().length;
+            iterator.remove();
+
+            if (spill != null) {
+                spill.store(eldest.getKey(), eldest.getValue());
+            }
+        }
+    }
+
+    private byte[] compress(final Pointer stream) throws HyperscanException {
+        int hsError = HyperscanLibrary.INSTANCE.hs_compress_stream(stream, stateBuffer,
+                new SizeT(stateBuffer.size()), usedSpace);
+
+        if (hsError == HS_INSUFFICIENT_SPACE) {
+            // the required size has been reported, the buffer is kept for the following states
+            stateBuffer = new Memory(usedSpace.getValue().longValue());
+            hsError = HyperscanLibrary.INSTANCE.hs_compress_stream(stream, stateBuffer,
+                    new SizeT(stateBuffer.size()), usedSpace);
+        }
+
+        if (hsError != 0)
+            throw new HyperscanException("Failed to compress stream.", HyperscanUtils.hsErrorIntToException(hsError));
+
+        return stateBuffer.getByteArray(0, (int) usedSpace.getValue().longValue());
+    }
+
+    private Pointer expand(final byte[] state) throws HyperscanException {
+        final PointerByReference streamReference = new PointerByReference();
+        final int hsError = HyperscanLibrary.INSTANCE.hs_expand_stream(db.getPointer(), streamReference,
+                writeState(state), new SizeT(state.length));
+
+        if (hsError != 0)
+            throw new HyperscanException("Failed to expand stream.", HyperscanUtils.hsErrorIntToException(hsError));
+
+        return streamReference.getValue();
+    }
+
+    private Pointer resetAndExpand(final Pointer stream, final byte[] state) throws HyperscanException {
+        // without a callback the previous owner of the stream doesn't get its end of input reported
+        final int hsError = HyperscanLibrary.INSTANCE.hs_reset_and_expand_stream(stream, writeState(state),
+                new SizeT(state.length), Pointer.NULL, null, Pointer.NULL);
+
+        if (hsError != 0)
+            throw new HyperscanException("Failed to expand stream.", HyperscanUtils.hsErrorIntToException(hsError));
+
+        return stream;
+    }
+
+    private Pointer writeState(final byte[] state) {
+        if (stateBuffer.size() < state.length) {
+            stateBuffer = new Memory(state.length);
+        }
+
+        stateBuffer.write(0, state, 0, state.length);
+        return stateBuffer;
+    }
+
+    private ByteBuffer copyToDirect(final ByteBuffer input) {
+        if (inputBuffer == null || inputBuffer.capacity() < input.remaining()) {
+            inputBuffer = ByteBuffer.allocateDirect(Math.max(input.remaining(), 4096));
+        }
+
+        inputBuffer.clear();
+        inputBuffer.put(input.duplicate());
+        inputBuffer.flip();
+        return inputBuffer;
+    }
+
+    private List<Match> drainMatches() {
+        if (matches.isEmpty())
+            return Collections.emptyList();
+
+        final List<Match> result = new ArrayList<>(matches);
+        matches.clear();
+        return result;
+    }
+
+    /**
+     * Get the count of sessions with an open native stream
+     *
+     * @return count of sessions
+     */
+    public int getActiveCount() {
+        return active.size();
+    }
+
+    /**
+     * Get the count of open native streams, of active sessions and kept for the next ones
+     */
+    int getOpenStreamCount() {
+        return active.size() + freeStreams.size();
+    }
+
+    /**
+     * Get the count of sessions whose compressed state is held in memory
+     *
+     * @return count of sessions
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Get the size of the compressed states held in memory
+     *
+     * @return count of bytes
+     */
+    public long getIdleBytes() {
+        return idleBytes;
+    }
+
+    @Override
+    protected void finalize() {
+        // sessions are discarded without reporting the end of their input
+        for (final Pointer stream : active.values()) {
+            HyperscanLibrary.INSTANCE.hs_close_stream(stream, Pointer.NULL, null, Pointer.NULL);
+        }
+
+        for (final Pointer stream : freeStreams) {
+            HyperscanLibrary.INSTANCE.hs_close_stream(stream, Pointer.NULL, null, Pointer.NULL);
+        }
+
+        active.clear();
+        freeStreams.clear();
+        idle.clear();
+        idleBytes = 0;
+
+        if (scratch != null) {
+            HyperscanLibrary.INSTANCE.hs_free_scratch(scratch);
+            scratch = null;
+        }
+    }
+
+    @Override
+    public void close() throws HyperscanException {
+        this.finalize();
+    }
+
+    /**
+     * Second tier for the compressed state of idle sessions, like a file or key-value store
+     *
+     * @param <K> session key type
+     */
+    public interface Spill<K> {
+        /**
+         * Keep the state of a session evicted from memory
+         *
+         * @param session key of the session
+         * @param state   compressed stream state, only valid for the database of the store
+         */
+        void store(K session, byte[] state);
+
+        /**
+         * Take back the state of a session, it is not asked for again afterwards
+         *
+         * @param session key of the session
+         * @return compressed stream state, or null if the session is unknown
+         */
+        byte[] load(K session);
+    }
+}
@@ -0,0 +1,426 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.db.ChimeraDatabase;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Scanner moving expressions which are consistently expensive to confirm out of the hot path.
+ * <p>
+ * Expressions are compiled with match limits, and the cost of each one is measured while scanning: every scan in
+ * which it exceeded a limit, and every sampled scan slower than a threshold in which it matched, counts against it.
+ * Every few thousand scans the costs are reviewed, and an expression expensive in several reviews in a row is moved
+ * into a secondary database, which is scanned asynchronously or only on a sampled fraction of the inputs. Expressions
+ * of the secondary database which turn cheap again are moved back.
+ * <p>
+ * Databases are recompiled in the background and swapped in atomically, scans keep using the previous databases
+ * until they are done. Matches resolve to the given expression objects and their contexts, no matter the tier.
+ * Instances can be shared between threads, each thread scans with its own scratch space.
+ */
+public class TieredScanner implements Closeable {
+    private final Options options;
+    private final List<ChimeraExpression> expressions;
+    private final Map<ChimeraExpression, Cost> costs = new LinkedHashMap<>();
+    private final ThreadLocal<ThreadScanners> scanners = ThreadLocal.withInitial(ThreadScanners::new);
+    private final AtomicLong scans = new AtomicLong();
+    private final AtomicBoolean rebalancing = new AtomicBoolean();
+    private volatile Generation current;
+    private volatile boolean closed;
+
+    /**
+     * Create a scanner with all expressions in the primary database
+     *
+     * @param expressions ChimeraExpressions to scan for
+     * @param options     Options of the tiering
+     * @throws HyperscanException CompileErrorException on errors concerning the pattern, otherwise different Throwable's
+     */
+    public TieredScanner(Collection<ChimeraExpression> expressions, Options options) throws HyperscanException {
+        this.options = options;
+        this.expressions = new ArrayList<>(expressions);
+
+        for (final ChimeraExpression expression : this.expressions) {
+            costs.put(expression, new Cost());
+        }
+
+        this.current = compile(this.expressions, Collections.emptyList());
+    }
+
+    /**
+     * scan for matches of the primary expressions, and of the secondary expressions if the input is sampled
+     * or they are scanned asynchronously
+     *
+     * @param input String to match against
+     * @return List of Matches of the primary expressions, plus those of the secondary expressions for sampled inputs
+     * @throws HyperscanException Throws if out of memory, platform not supported or the scanner is closed
+     */
+    public List<Match> scan(final String input) throws HyperscanException {
+        final Generation generation = acquire();
+
+        try {
+            final ThreadScanners threadScanners = scanners.get().prepare(generation);
+            final List<Match> matches = new ArrayList<>();
+
+            if (generation.primary != null) {
+                matches.addAll(measure(threadScanners.primary, generation.primary, input));
+            }
+
+            if (generation.secondary != null) {
+                scanSecondary(generation, input, matches);
+            }
+
+            if (scans.incrementAndGet() % options.rebalanceInterval == 0) {
+                rebalanceAsync();
+            }
+
+            return matches;
+        } finally {
+            generation.release();
+        }
+    }
+
+    private void scanSecondary(final Generation generation, final String input, final List<Match> matches) throws HyperscanException {
+        if (options.secondaryListener != null) {
+            // the task owns a reference, so the databases stay open until it is done
+            generation.retain();
+            options.executor.execute(() -> {
+                try {
+                    final ThreadScanners threadScanners = scanners.get().prepare(generation);
+                    options.secondaryListener.accept(input, measure(threadScanners.secondary, generation.secondary, input));
+                } catch (final HyperscanException e) {
+                    // asynchronous results are best effort, the next rebalance recompiles the databases anyway
+                } finally {
+                    generation.release();
+                }
+            });
+        } else if (ThreadLocalRandom.current().nextDouble() < options.secondarySampleRate) {
+            matches.addAll(measure(scanners.get().secondary, generation.secondary, input));
+        }
+    }
+
+    /**
+     * scan with match limits, charging the expressions which exceeded a limit or matched in a slow sampled scan
+     */
+    private List<Match> measure(final Scanner scanner, final ChimeraDatabase db, final String input) throws HyperscanException {
+        final boolean sampled = ThreadLocalRandom.current().nextDouble() < options.sampleRate;
+        final long start = sampled ? System.nanoTime() : 0;
+
+        final ScanResult result = scanner.scan(db, input, (Deadline) null, null);
+
+        for (final Expression expression : result.getLimitedExpressions()) {
+            costs.get(expression).limitHits.increment();
+        }
+
+        if (sampled && System.nanoTime() - start > options.slowScanNanos) {
+            final Set<Expression> matched = new HashSet<>();
+            for (final Match match : result.getMatches()) {
+                if (matched.add(match.getMatchedExpression())) {
+                    costs.get(match.getMatchedExpression()).slowHits.increment();
+                }
+            }
+        }
+
+        return result.getMatches();
+    }
+
+    private void rebalanceAsync() {
+        if (rebalancing.compareAndSet(false, true)) {
+            options.executor.execute(() -> {
+                try {
+                    rebalance();
+                } catch (final HyperscanException e) {
+                    // keep scanning with the current databases
+                } finally {
+                    rebalancing.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Review the costs measured since the last review and recompile the databases if an expression changes tiers.
+     * Called automatically every {@link Options#withRebalanceInterval(long, long, int)} scans.
+     *
+     * @return true if the databases were recompiled, otherwise false
+     * @throws HyperscanException if recompiling fails, the current databases are kept
+     */
+    public synchronized boolean rebalance() throws HyperscanException {
+        if (closed)
+            return false;
+
+        final Set<ChimeraExpression> secondary = new HashSet<>(current.secondaryExpressions);
+        boolean changed = false;
+
+        for (final Map.Entry<ChimeraExpression, Cost> entry : costs.entrySet()) {
+            final Cost cost = entry.getValue();
+            final long score = cost.limitHits.sumThenReset() + cost.slowHits.sumThenReset();
+            final boolean expensive = score >= options.expensiveScore;
+
+            cost.streak = expensive == cost.expensive ? cost.streak + 1 : 1;
+            cost.expensive = expensive;
+
+            if (cost.streak >= options.reviews) {
+                if (expensive && secondary.add(entry.getKey())) {
+                    changed = true;
+                } else if (!expensive && secondary.remove(entry.getKey())) {
+                    changed = true;
+                }
+            }
+        }
+
+        if (!changed)
+            return false;
+
+        final List<ChimeraExpression> primaryExpressions = new ArrayList<>();
+        final List<ChimeraExpression> secondaryExpressions = new ArrayList<>();
+        for (final ChimeraExpression expression : expressions) {
+            (secondary.contains(expression) ? secondaryExpressions : primaryExpressions).add(expression);
+        }
+
+        final Generation previous = current;
+        current = compile(primaryExpressions, secondaryExpressions);
+        previous.release();
+
+        return true;
+    }
+
+    private Generation compile(final List<ChimeraExpression> primaryExpressions,
+                               final List<ChimeraExpression> secondaryExpressions) throws HyperscanException {
+        final ChimeraDatabase primary = primaryExpressions.isEmpty() ? null : ChimeraDatabase.compile(primaryExpressions,
+                options.matchLimit, options.matchLimitRecursion, null);
+
+        try {
+            final ChimeraDatabase secondary = secondaryExpressions.isEmpty() ? null : ChimeraDatabase.compile(secondaryExpressions,
+                    options.matchLimit, options.matchLimitRecursion, null);
+
+            return new Generation(primary, secondary, secondaryExpressions);
+        } catch (final HyperscanException | RuntimeException e) {
+            if (primary != null) {
+                primary.close();
+            }
+            throw e;
+        }
+    }
+
+    private Generation acquire() throws HyperscanException {
+        while (!closed) {
+            final Generation generation = current;
+
+            if (generation.retain()) {
+                return generation;
+            }
+        }
+
+        throw new HyperscanException("Scanner has been closed");
+    }
+
+    /**
+     * Get the expressions currently scanned off the hot path
+     *
+     * @return secondary expressions
+     */
+    public List<ChimeraExpression> getSecondaryExpressions() {
+        return Collections.unmodifiableList(current.secondaryExpressions);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            current.release();
+        }
+    }
+
+    /**
+     * Options of the tiering, every option has a default
+     */
+    public static class Options {
+        private long matchLimit = 10_000_000;
+        private long matchLimitRecursion = 10_000_000;
+        private double sampleRate = 0.01;
+        private long slowScanNanos = 1_000_000;
+        private long rebalanceInterval = 10_000;
+        private long expensiveScore = 1;
+        private int reviews = 3;
+        private double secondarySampleRate = 0.1;
+        private BiConsumer<String, List<Match>> secondaryListener;
+        private Executor executor = ForkJoinPool.commonPool();
+
+        /**
+         * Set the PCRE match limits, exceeding one counts against an expression
+         *
+         * @param matchLimit          maximum count of PCRE backtracking steps per match attempt
+         * @param matchLimitRecursion maximum PCRE recursion depth per match attempt
+         * @return Options
+         */
+        public Options withMatchLimits(long matchLimit, long matchLimitRecursion) {
+            this.matchLimit = matchLimit;
+            this.matchLimitRecursion = matchLimitRecursion;
+            return this;
+        }
+
+        /**
+         * Set the fraction of scans which are timed, a slow one counts against every expression matched in it
+         *
+         * @param sampleRate    fraction between 0 and 1
+         * @param slowScanNanos duration from which a scan is slow
+         * @return Options
+         */
+        public Options withTimingSamples(double sampleRate, long slowScanNanos) {
+            this.sampleRate = sampleRate;
+            this.slowScanNanos = slowScanNanos;
+            return this;
+        }
+
+        /**
+         * Set how often and how strictly costs are reviewed
+         *
+         * @param rebalanceInterval count of scans between reviews
+         * @param expensiveScore    count of limit hits and slow scans per review from which an expression is expensive
+         * @param reviews           count of reviews in a row an expression has to be expensive to be moved to the
+         *                          secondary database, or cheap to be moved back
+         * @return Options
+         */
+        public Options withRebalanceInterval(long rebalanceInterval, long expensiveScore, int reviews) {
+            if (rebalanceInterval < 1 || expensiveScore < 1 || reviews < 1) {
+                throw new IllegalArgumentException("Rebalance options must be positive");
+            }
+
+            this.rebalanceInterval = rebalanceInterval;
+            this.expensiveScore = expensiveScore;
+            this.reviews = reviews;
+            return this;
+        }
+
+        /**
+         * Scan the secondary expressions inline, on a sampled fraction of the inputs
+         *
+         * @param secondarySampleRate fraction between 0 and 1
+         * @return Options
+         */
+        public Options withSampledSecondary(double secondarySampleRate) {
+            this.secondarySampleRate = secondarySampleRate;
+            this.secondaryListener = null;
+            return this;
+        }
+
+        /**
+         * Scan the secondary expressions on every input, asynchronously on the executor
+         *
+         * @param secondaryListener receives each input with the matches of the secondary expressions
+         * @return Options
+         */
+        public Options withAsyncSecondary(BiConsumer<String, List<Match>> secondaryListener) {
+            this.secondaryListener = secondaryListener;
+            return this;
+        }
+
+        /**
+         * Set the executor of background recompiles and asynchronous scans
+         *
+         * @param executor Executor, the common pool by default
+         * @return Options
+         */
+        public Options withExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+    }
+
+    /**
+     * Limit hits and slow scans of an expression since the last review, and its recent reviews
+     */
+    private static final class Cost {
+        private final LongAdder limitHits = new LongAdder();
+        private final LongAdder slowHits = new LongAdder();
+        private boolean expensive;
+        private int streak;
+    }
+
+    /**
+     * Databases of one tiering, closed once replaced and no longer scanned
+     */
+    private static final class Generation {
+        private final ChimeraDatabase primary;
+        private final ChimeraDatabase secondary;
+        private final List<ChimeraExpression> secondaryExpressions;
+        // one reference is held by the scanner until the generation is replaced
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Generation(ChimeraDatabase primary, ChimeraDatabase secondary, List<ChimeraExpression> secondaryExpressions) {
+            this.primary = primary;
+            this.secondary = secondary;
+            this.secondaryExpressions = secondaryExpressions;
+        }
+
+        boolean retain() {
+            int count;
+            do {
+                count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(count, count + 1));
+
+            return true;
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                close(primary);
+                close(secondary);
+            }
+        }
+
+        private static void close(ChimeraDatabase database) {
+            if (database == null)
+                return;
+
+            try {
+                database.close();
+            } catch (final HyperscanException ignored) {
+                // the native memory is gone either way
+            }
+        }
+    }
+
+    /**
+     * Scanners of a thread, with scratch space allocated for the generation scanned last
+     */
+    private static final class ThreadScanners {
+        private final Scanner primary = new Scanner();
+        private final Scanner secondary = new Scanner();
+        private Generation allocatedFor;
+
+        ThreadScanners prepare(Generation generation) throws HyperscanException {
+            if (allocatedFor != generation) {
+                if (generation.primary != null) {
+                    primary.allocScratch(generation.primary);
+                }
+
+                if (generation.secondary != null) {
+                    secondary.allocScratch(generation.secondary);
+                }
+
+                allocatedFor = generation;
+            }
+
+            return this;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package io.carpe.hyperscan.wrapper;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocator counting the live and peak bytes it handed out, for accounting native memory against container limits.
+ * <p>
+ * Memory is taken from malloc and aligned to the given boundary. The original address and the size of each
+ * allocation are kept in a header right before the aligned memory, so freeing needs no lookup.
+ */
+public class TrackingAllocator implements Allocator {
+    private static final int HEADER_LENGTH = 16;
+
+    private final int alignment;
+    private final AtomicLong liveBytes = new AtomicLong();
+    private final AtomicLong peakBytes = new AtomicLong();
+    private final AtomicLong allocations = new AtomicLong();
+
+    /**
+     * Create an allocator aligning memory to 16 bytes
+     */
+    public TrackingAllocator() {
+        this(16);
+    }
+
+    /**
+     * Create an allocator
+     *
+     * @param alignment boundary to align memory to, a power of two of at least 16 bytes, for example the
+     *                  64 bytes of a cache line
+     */
+    public TrackingAllocator(int alignment) {
+        if (alignment < HEADER_LENGTH || Integer.bitCount(alignment) != 1) {
+            throw new IllegalArgumentException("Alignment must be a power of two of at least 16 bytes");
+        }
+
+        this.alignment = alignment;
+    }
+
+    @Override
+    public Pointer allocate(long size) {
+        final long original = Native.malloc(size + alignment + HEADER_LENGTH);
+
+        if (original == 0) {
+            return null;
+        }
+
+        final long aligned = (original + HEADER_LENGTH + alignment - 1) & -alignment;
+        final Pointer memory = new Pointer(aligned);
+        memory.setLong(-16, original);
+        memory.setLong(-8, size);
+
+        allocations.incrementAndGet();
+        final long live = liveBytes.addAndGet(size);
+        peakBytes.accumulateAndGet(live, Math::max);
+
+        return memory;
+    }
+
+    @Override
+    public void free(Pointer pointer) {
+        liveBytes.addAndGet(-pointer.getLong(-8));
+        Native.free(pointer.getLong(-16));
+    }
+
+    /**
+     * Get the count of bytes allocated and not freed yet
+     *
+     * @return count of bytes
+     */
+    public long getLiveBytes() {
+        return liveBytes.get();
+    }
+
+    /**
+     * Get the highest count of live bytes so far
+     *
+     * @return count of bytes
+     */
+    public long getPeakBytes() {
+        return peakBytes.get();
+    }
+
+    /**
+     * Get the count of allocations so far
+     *
+     * @return count of allocations
+     */
+    public long getAllocationCount() {
+        return allocations.get();
+    }
+}
@@ -0,0 +1,38 @@
+package io.carpe.hyperscan.wrapper.flags;
+
+/**
+ * CPU features a database may be compiled to make use of
+ */
+public enum CpuFeatureFlag implements HyperscanBitFlag {
+
+    /**
+     * Intel(R) Advanced Vector Extensions 2 (Intel(R) AVX2).
+     */
+    AVX2(1 << 2),
+
+    /**
+     * Intel(R) Advanced Vector Extensions 512 (Intel(R) AVX512).
+     */
+    AVX512(1 << 3),
+
+    /**
+     * Intel(R) Advanced Vector Extensions 512 Vector Byte Manipulation Instructions (Intel(R) AVX512VBMI).
+     */
+    AVX512VBMI(1 << 4);
+
+    private final int bits;
+
+    CpuFeatureFlag(int bitPosition) {
+        this.bits = bitPosition;
+    }
+
+
+    /**
+     * Get the significant bits for the flag
+     *
+     * @return int containing the significant bit for the flag
+     */
+    public Integer getBits() {
+        return bits;
+    }
+}
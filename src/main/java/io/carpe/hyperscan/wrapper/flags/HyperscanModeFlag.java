@@ -0,0 +1,38 @@
+package io.carpe.hyperscan.wrapper.flags;
+
+/**
+ * Modes of operation a Hyperscan database can be compiled for
+ */
+public enum HyperscanModeFlag implements HyperscanBitFlag {
+
+    /**
+     * Block scan (non-streaming) database.
+     */
+    BLOCK(1),
+
+    /**
+     * Streaming database.
+     */
+    STREAM(2),
+
+    /**
+     * Vectored scanning database.
+     */
+    VECTORED(4);
+
+    private final int bits;
+
+    HyperscanModeFlag(int bitPosition) {
+        this.bits = bitPosition;
+    }
+
+
+    /**
+     * Get the significant bits for the flag
+     *
+     * @return int containing the significant bit for the flag
+     */
+    public Integer getBits() {
+        return bits;
+    }
+}
@@ -0,0 +1,40 @@
+package io.carpe.hyperscan.wrapper.flags;
+
+/**
+ * Precision of start of match offsets tracked by streaming databases, required if any expression has the
+ * {@link HyperscanExpressionFlag#SOM_LEFTMOST} flag. A smaller horizon means smaller stream state and faster scans,
+ * but start offsets further back than the horizon are not reported accurately.
+ */
+public enum SomHorizon implements HyperscanBitFlag {
+
+    /**
+     * Start of match offsets are accurate for any distance back in the stream, 64 bits of state per offset.
+     */
+    LARGE(1 << 24),
+
+    /**
+     * Start of match offsets are accurate within 2^32 bytes of the end of the match.
+     */
+    MEDIUM(1 << 25),
+
+    /**
+     * Start of match offsets are accurate within 2^16 bytes of the end of the match.
+     */
+    SMALL(1 << 26);
+
+    private final int bits;
+
+    SomHorizon(int bitPosition) {
+        this.bits = bitPosition;
+    }
+
+
+    /**
+     * Get the significant bits for the flag
+     *
+     * @return int containing the significant bit for the flag
+     */
+    public Integer getBits() {
+        return bits;
+    }
+}
@@ -0,0 +1,52 @@
+package io.carpe.hyperscan.jfr;
+
+import io.carpe.hyperscan.Telemetry;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("io.carpe.hyperscan.Compile")
+@Label("Compile")
+@Category("Hyperscan")
+@Description("Compilation of expressions into a database")
+class CompileEvent extends Event implements Telemetry.Span {
+    @Label("Engine")
+    String engine;
+
+    @Label("Pattern Count")
+    int patternCount;
+
+    @Label("Database Size")
+    @DataAmount
+    long databaseSize;
+
+    @Label("Error")
+    String error;
+
+    @Override
+    public boolean isRecording() {
+        return true;
+    }
+
+    @Override
+    public void setDatabaseSize(long bytes) {
+        databaseSize = bytes;
+    }
+
+    @Override
+    public void setError(Throwable error) {
+        this.error = error.getMessage();
+    }
+
+    @Override
+    public void finish() {
+        end();
+
+        if (shouldCommit()) {
+            commit();
+        }
+    }
+}
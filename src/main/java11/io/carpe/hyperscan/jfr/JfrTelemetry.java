@@ -0,0 +1,58 @@
+package io.carpe.hyperscan.jfr;
+
+import io.carpe.hyperscan.HyperscanUtils;
+import io.carpe.hyperscan.Telemetry;
+import jdk.jfr.EventType;
+
+/**
+ * Telemetry creating JDK Flight Recorder events, loaded reflectively on Java 11 and newer
+ */
+public class JfrTelemetry extends Telemetry {
+    private final EventType compileType = EventType.getEventType(CompileEvent.class);
+    private final EventType scratchType = EventType.getEventType(ScratchEvent.class);
+    private final EventType scanType = EventType.getEventType(ScanEvent.class);
+
+    public JfrTelemetry() {
+    }
+
+    @Override
+    public Span compile(String engine, int patternCount) {
+        if (!compileType.isEnabled())
+            return Span.NONE;
+
+        final CompileEvent event = new CompileEvent();
+        event.engine = engine;
+        event.patternCount = patternCount;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public Span allocScratch(String engine) {
+        if (!scratchType.isEnabled())
+            return Span.NONE;
+
+        final ScratchEvent event = new ScratchEvent();
+        event.engine = engine;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public Span scan(String engine, long inputLength) {
+        if (!scanType.isEnabled())
+            return Span.NONE;
+
+        final ScanEvent event = new ScanEvent();
+        event.engine = engine;
+        event.inputLength = inputLength;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public Span scan(String engine, String input) {
+        // only encoded lengths are worth the extra pass over the input
+        return scanType.isEnabled() ? scan(engine, HyperscanUtils.utf8Length(input)) : Span.NONE;
+    }
+}
@@ -0,0 +1,54 @@
+package io.carpe.hyperscan.jfr;
+
+import io.carpe.hyperscan.Telemetry;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("io.carpe.hyperscan.Scan")
+@Label("Scan")
+@Category("Hyperscan")
+@Description("Scan of an input, only recorded if slower than the threshold")
+@Threshold("10 ms")
+class ScanEvent extends Event implements Telemetry.Span {
+    @Label("Engine")
+    String engine;
+
+    @Label("Input Length")
+    @DataAmount
+    long inputLength;
+
+    @Label("Match Count")
+    long matchCount;
+
+    @Label("Error")
+    String error;
+
+    @Override
+    public boolean isRecording() {
+        return true;
+    }
+
+    @Override
+    public void setMatchCount(long count) {
+        matchCount = count;
+    }
+
+    @Override
+    public void setError(Throwable error) {
+        this.error = error.getMessage();
+    }
+
+    @Override
+    public void finish() {
+        end();
+
+        if (shouldCommit()) {
+            commit();
+        }
+    }
+}
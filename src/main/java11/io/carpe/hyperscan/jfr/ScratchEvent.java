@@ -0,0 +1,49 @@
+package io.carpe.hyperscan.jfr;
+
+import io.carpe.hyperscan.Telemetry;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("io.carpe.hyperscan.AllocScratch")
+@Label("Allocate Scratch")
+@Category("Hyperscan")
+@Description("Allocation or growth of a scratch space for a database")
+class ScratchEvent extends Event implements Telemetry.Span {
+    @Label("Engine")
+    String engine;
+
+    @Label("Database Size")
+    @DataAmount
+    long databaseSize;
+
+    @Label("Error")
+    String error;
+
+    @Override
+    public boolean isRecording() {
+        return true;
+    }
+
+    @Override
+    public void setDatabaseSize(long bytes) {
+        databaseSize = bytes;
+    }
+
+    @Override
+    public void setError(Throwable error) {
+        this.error = error.getMessage();
+    }
+
+    @Override
+    public void finish() {
+        end();
+
+        if (shouldCommit()) {
+            commit();
+        }
+    }
+}
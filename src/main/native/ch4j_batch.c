@@ -0,0 +1,85 @@
+/*
+ * Batch scanning shim for Chimera4j.
+ *
+ * Scans many small documents packed into one buffer with a single downcall from Java. Matches are written into a
+ * preallocated result array instead of calling back into the JVM for each one, which costs more than scanning a
+ * short document itself.
+ *
+ * Build it against the same Chimera the JVM loads and put it on the library path, e.g.
+ *
+ *     cc -O2 -shared -fPIC ch4j_batch.c -I/usr/local/include/hs -lchimera -o libch4jbatch.so
+ *
+ * The library is optional, BatchScanner falls back to scanning document by document without it.
+ */
+
+#include <stdint.h>
+#include <ch.h>
+
+/* layout must match BatchScanner.RECORD_SIZE and its field offsets */
+typedef struct {
+    uint32_t doc;
+    uint32_t id;
+    uint64_t from;
+    uint64_t to;
+} ch4j_match_t;
+
+typedef struct {
+    ch4j_match_t *results;
+    uint32_t capacity;
+    uint32_t count;
+    uint32_t doc;
+    int overflow;
+} ch4j_batch_t;
+
+static int ch4j_on_match(unsigned int id, unsigned long long from, unsigned long long to, unsigned int flags,
+                         unsigned int size, const ch_capture_t *captured, void *context) {
+    ch4j_batch_t *batch = (ch4j_batch_t *) context;
+
+    if (batch->count == batch->capacity) {
+        batch->overflow = 1;
+        return CH_CALLBACK_TERMINATE;
+    }
+
+    ch4j_match_t *match = &batch->results[batch->count++];
+    match->doc = batch->doc;
+    match->id = id;
+    match->from = from;
+    match->to = to;
+
+    return CH_CALLBACK_CONTINUE;
+}
+
+/*
+ * Scan documents first..count-1, document i being the bytes data[offsets[i]..offsets[i + 1]).
+ *
+ * Returns the index of the first document not scanned, which is count once all documents are done. If the result
+ * array fills up, the partial results of the document being scanned are discarded and its index is returned, so
+ * the caller can continue from it with an emptied (or larger) array. Returns a negative ch_error_t on failure.
+ * The count of results written is stored in result_count in every case.
+ */
+int ch4j_batch_scan(const ch_database_t *db, ch_scratch_t *scratch, const char *data, const uint64_t *offsets,
+                    uint32_t first, uint32_t count, ch4j_match_t *results, uint32_t capacity,
+                    uint32_t *result_count) {
+    ch4j_batch_t batch = {results, capacity, 0, 0, 0};
+
+    for (uint32_t doc = first; doc < count; doc++) {
+        const uint32_t doc_start = batch.count;
+        batch.doc = doc;
+
+        const ch_error_t error = ch_scan(db, data + offsets[doc], (unsigned int) (offsets[doc + 1] - offsets[doc]),
+                                         0, scratch, ch4j_on_match, NULL, &batch);
+
+        if (batch.overflow) {
+            *result_count = doc_start;
+            return (int) doc;
+        }
+
+        if (error != CH_SUCCESS) {
+            *result_count = batch.count;
+            return error;
+        }
+    }
+
+    *result_count = batch.count;
+    return (int) count;
+}
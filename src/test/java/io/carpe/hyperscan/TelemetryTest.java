@@ -0,0 +1,30 @@
+package io.carpe.hyperscan;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TelemetryTest {
+
+    @Test
+    void fallbackRecordsNothing() {
+        // the telemetry used on Java 8, or when the jdk.jfr module is missing
+        final Telemetry telemetry = new Telemetry();
+
+        assertThat(telemetry.compile(Telemetry.CHIMERA, 3)).isSameAs(Telemetry.Span.NONE);
+        assertThat(telemetry.allocScratch(Telemetry.HYPERSCAN)).isSameAs(Telemetry.Span.NONE);
+        assertThat(telemetry.scan(Telemetry.CHIMERA, 100)).isSameAs(Telemetry.Span.NONE);
+        assertThat(telemetry.scan(Telemetry.HYPERSCAN, "penny")).isSameAs(Telemetry.Span.NONE);
+        assertThat(Telemetry.Span.NONE.isRecording()).isFalse();
+
+        // spans which record nothing can still be used like any other
+        Telemetry.Span.NONE.setMatchCount(1);
+        Telemetry.Span.NONE.setError(new IllegalStateException());
+        Telemetry.Span.NONE.finish();
+    }
+
+    @Test
+    void nothingIsRecordedWithoutRecording() {
+        assertThat(Telemetry.get().scan(Telemetry.CHIMERA, 100)).isSameAs(Telemetry.Span.NONE);
+    }
+}
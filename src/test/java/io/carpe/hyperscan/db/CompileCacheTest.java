@@ -0,0 +1,73 @@
+package io.carpe.hyperscan.db;
+
+import io.carpe.hyperscan.wrapper.ChimeraExpression;
+import io.carpe.hyperscan.wrapper.HyperscanException;
+import io.carpe.hyperscan.wrapper.Match;
+import io.carpe.hyperscan.wrapper.Scanner;
+import io.carpe.hyperscan.wrapper.flags.ChimeraExpressionFlag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompileCacheTest {
+
+    @Test
+    void canonicalHashIgnoresOrderDuplicatesAndLeadingOptions() {
+        final String hash = CompileCache.canonicalHash(Arrays.asList(
+                new ChimeraExpression("penny", ChimeraExpressionFlag.CASELESS),
+                new ChimeraExpression("really")));
+
+        assertThat(CompileCache.canonicalHash(Arrays.asList(
+                new ChimeraExpression("really"),
+                new ChimeraExpression("(?i)penny"),
+                new ChimeraExpression("penny", ChimeraExpressionFlag.CASELESS)))).isEqualTo(hash);
+
+        assertThat(CompileCache.canonicalHash(Arrays.asList(
+                new ChimeraExpression("penny"),
+                new ChimeraExpression("really")))).isNotEqualTo(hash);
+    }
+
+    @Test
+    void expressionsDifferingInJavaFlagsAreKept() throws HyperscanException {
+        final ChimeraExpression plain = new ChimeraExpression("\\d+");
+        final ChimeraExpression extracting = new ChimeraExpression("\\d+", ChimeraExpressionFlag.EXTRACT_MATCHED);
+
+        assertThat(CompileCache.canonicalHash(Arrays.asList(plain, extracting)))
+                .isNotEqualTo(CompileCache.canonicalHash(Arrays.asList(plain)));
+
+        try (final ChimeraDatabase db = new CompileCache().compile(Arrays.asList(plain, extracting));
+             final Scanner scanner = new Scanner()) {
+            scanner.allocScratch(db);
+
+            assertThat(scanner.scan(db, "order 12345")).extracting(Match::getMatchedString)
+                    .containsExactlyInAnyOrder(null, "12345");
+        }
+    }
+
+    @Test
+    void equalSetsShareOneDatabase() throws HyperscanException {
+        final CompileCache cache = new CompileCache();
+        final ChimeraExpression first = new ChimeraExpression("(?i)penny", "first");
+        final ChimeraExpression second = new ChimeraExpression("penny", ChimeraExpressionFlag.CASELESS, "second");
+
+        try (final ChimeraDatabase a = cache.compile(Arrays.asList(first, new ChimeraExpression("(?i)penny")));
+             final ChimeraDatabase b = cache.compile(Arrays.asList(second))) {
+            assertThat(a.getPointer()).isEqualTo(b.getPointer());
+            assertThat(cache.size()).isEqualTo(1);
+
+            try (final Scanner scanner = new Scanner()) {
+                scanner.allocScratch(b);
+                final List<Match> matches = scanner.scan(b, "the PENNY!");
+
+                // duplicates are reported once, with the context of the caller's own expression
+                assertThat(matches).hasSize(1);
+                assertThat(matches.get(0).getMatchedExpression().getContext()).isEqualTo("second");
+            }
+        }
+
+        assertThat(cache.size()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,103 @@
+package io.carpe.hyperscan.db;
+
+import io.carpe.hyperscan.wrapper.HyperscanException;
+import com.sun.jna.Pointer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatExceptionOfType;
+
+class DatabaseRegistryTest {
+
+    @Test
+    void leastRecentlyUsedIdleDatabasesAreEvicted() throws HyperscanException {
+        final List<FakeDatabase> loaded = new ArrayList<>();
+        final DatabaseRegistry<String, FakeDatabase> registry = new DatabaseRegistry<>(key -> {
+            final FakeDatabase db = new FakeDatabase(100);
+            loaded.add(db);
+            return db;
+        }, 250);
+
+        registry.acquire("a").close();
+        registry.acquire("b").close();
+        registry.acquire("a").close();
+        registry.acquire("c").close();
+
+        // "b" was used least recently
+        assertThat(loaded).hasSize(3);
+        assertThat(loaded.get(1).closed).isTrue();
+        assertThat(loaded.get(0).closed).isFalse();
+        assertThat(registry.getResidentBytes()).isEqualTo(200);
+        assertThat(registry.size()).isEqualTo(2);
+    }
+
+    @Test
+    void leasedDatabasesAreNeverClosed() throws HyperscanException {
+        final DatabaseRegistry<String, FakeDatabase> registry = new DatabaseRegistry<>(key -> new FakeDatabase(100), 50);
+
+        try (final DatabaseRegistry.Lease<FakeDatabase> lease = registry.acquire("a")) {
+            registry.acquire("b").close();
+            registry.invalidate("a");
+
+            assertThat(lease.get().closed).isFalse();
+            assertThat(registry.getResidentBytes()).isEqualTo(100);
+
+            lease.close();
+            assertThatExceptionOfType(IllegalStateException.class).isThrownBy(lease::get);
+        }
+
+        assertThat(registry.getResidentBytes()).isEqualTo(0);
+    }
+
+    @Test
+    void loaderFailuresAreNotCached() {
+        final DatabaseRegistry<String, FakeDatabase> registry = new DatabaseRegistry<>(key -> {
+            throw new HyperscanException("no patterns for " + key);
+        }, 50);
+
+        assertThatExceptionOfType(HyperscanException.class).isThrownBy(() -> registry.acquire("a"));
+        assertThat(registry.size()).isEqualTo(0);
+    }
+
+    @Test
+    void databasesFailingToReportTheirSizeAreClosed() {
+        final FakeDatabase broken = new FakeDatabase(-1);
+        final DatabaseRegistry<String, FakeDatabase> registry = new DatabaseRegistry<>(key -> broken, 50);
+
+        assertThatExceptionOfType(HyperscanException.class).isThrownBy(() -> registry.acquire("a"));
+        assertThat(broken.closed).isTrue();
+        assertThat(registry.size()).isEqualTo(0);
+        assertThat(registry.getResidentBytes()).isEqualTo(0);
+    }
+
+    private static class FakeDatabase implements Database {
+        private final long size;
+        private boolean closed;
+
+        FakeDatabase(long size) {
+            this.size = size;
+        }
+
+        @Override
+        public Pointer getPointer() {
+            return Pointer.NULL;
+        }
+
+        @Override
+        public long getSize() {
+            if (size < 0) {
+                throw new IllegalStateException("Database has already been closed");
+            }
+
+            return size;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package io.carpe.hyperscan.db;
+
+import io.carpe.hyperscan.jna.PlatformInfoStruct;
+import io.carpe.hyperscan.wrapper.HyperscanException;
+import io.carpe.hyperscan.wrapper.HyperscanExpression;
+import io.carpe.hyperscan.wrapper.Match;
+import io.carpe.hyperscan.wrapper.StreamScanner;
+import io.carpe.hyperscan.wrapper.flags.CpuFeatureFlag;
+import io.carpe.hyperscan.wrapper.flags.HyperscanExpressionFlag;
+import io.carpe.hyperscan.wrapper.flags.HyperscanModeFlag;
+import io.carpe.hyperscan.wrapper.flags.SomHorizon;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class HyperscanDatabaseTest {
+
+    @Test
+    void sharedImagesAreDeserializedOnce() throws IOException {
+        final List<HyperscanExpression> expressions = Collections.singletonList(new HyperscanExpression("penny"));
+        final Path directory = Files.createTempDirectory("shared-images");
+
+        final byte[] serialized;
+        try (HyperscanDatabase db = HyperscanDatabase.compile(expressions, HyperscanModeFlag.STREAM)) {
+            serialized = db.serialize();
+        }
+
+        try (HyperscanDatabase first = HyperscanDatabase.deserializeShared(serialized, directory, expressions);
+             HyperscanDatabase second = HyperscanDatabase.deserializeShared(serialized, directory, expressions);
+             StreamScanner scanner = new StreamScanner()) {
+
+            assertThat(first.isShared()).isTrue();
+            assertThat(second.getMode()).isEqualTo(HyperscanModeFlag.STREAM);
+            try (Stream<Path> images = Files.list(directory)) {
+                assertThat(images).hasSize(1);
+            }
+
+            scanner.allocScratch(second);
+            final List<Match> matches = scanner.scan(second, new ByteArrayInputStream("a penny".getBytes(StandardCharsets.UTF_8)));
+            assertThat(matches).extracting(Match::getEndPosition).containsExactly(7L);
+        }
+    }
+
+    @Test
+    void smallerHorizonsShrinkTheStreamState() throws HyperscanException {
+        final List<HyperscanExpression> expressions = Collections.singletonList(
+                new HyperscanExpression("a.*b", EnumSet.of(HyperscanExpressionFlag.SOM_LEFTMOST)));
+
+        try (final HyperscanDatabase large = HyperscanDatabase.compile(expressions, HyperscanModeFlag.STREAM, SomHorizon.LARGE, null);
+             final HyperscanDatabase small = HyperscanDatabase.compile(expressions, HyperscanModeFlag.STREAM, SomHorizon.SMALL, null)) {
+            assertThat(small.getStreamSize()).isLessThan(large.getStreamSize());
+
+            // the horizon is part of the serialized database
+            try (final HyperscanDatabase restored = HyperscanDatabase.deserialize(small.serialize(), expressions)) {
+                assertThat(restored.getSomHorizon()).contains(SomHorizon.SMALL);
+                assertThat(restored.getStreamSize()).isEqualTo(small.getStreamSize());
+            }
+        }
+    }
+
+    @Test
+    void serializedDatabasesAreRestored() throws HyperscanException {
+        final List<HyperscanExpression> expressions = Collections.singletonList(new HyperscanExpression("penny"));
+
+        try (final HyperscanDatabase db = HyperscanDatabase.compile(expressions, HyperscanModeFlag.BLOCK);
+             final HyperscanDatabase restored = HyperscanDatabase.deserialize(db.serialize(), expressions)) {
+            assertThat(restored.getMode()).isEqualTo(HyperscanModeFlag.BLOCK);
+            assertThat(restored.getSomHorizon()).isEmpty();
+            assertThat(restored.getSize()).isEqualTo(db.getSize());
+            assertThat(restored.getPlatformInfo()).isEqualTo(db.getPlatformInfo());
+        }
+    }
+
+    @Test
+    void platformIsReadWithoutDeserializing() throws HyperscanException {
+        final PlatformInfo target = PlatformInfo.of(PlatformInfo.Tune.SKYLAKE, EnumSet.noneOf(CpuFeatureFlag.class));
+
+        try (final HyperscanDatabase db = HyperscanDatabase.compile(
+                Collections.singletonList(new HyperscanExpression("penny")), HyperscanModeFlag.BLOCK, null, target)) {
+            assertThat(HyperscanDatabase.readPlatformInfo(db.serialize())).isEqualTo(target);
+        }
+    }
+
+    @Test
+    void platformSurvivesTheNativeStruct() {
+        final PlatformInfo platform = PlatformInfo.of(PlatformInfo.Tune.ICELAKE_SERVER,
+                EnumSet.of(CpuFeatureFlag.AVX2, CpuFeatureFlag.AVX512));
+
+        final PlatformInfoStruct struct = platform.toStruct();
+        assertThat(struct.tune).isEqualTo(10);
+        assertThat(PlatformInfo.fromStruct(struct)).isEqualTo(platform);
+        assertThat(platform.withTune(PlatformInfo.Tune.GENERIC).getCpuFeatures()).isEqualTo(platform.getCpuFeatures());
+    }
+
+    @Test
+    void bytesWithoutHeaderAreRejected() {
+        assertThatExceptionOfType(HyperscanException.class)
+                .isThrownBy(() -> HyperscanDatabase.readPlatformInfo(new byte[]{1, 2, 3}))
+                .withMessageContaining("not a serialized database");
+    }
+
+    @Test
+    void corruptHeadersAreRejected() {
+        final byte[] corrupt = ByteBuffer.allocate(32).put(new byte[]{'C', '4', 'J', 'D'}).putInt(1).putInt(1000).array();
+
+        assertThatExceptionOfType(HyperscanException.class)
+                .isThrownBy(() -> HyperscanDatabase.readPlatformInfo(corrupt))
+                .withMessageContaining("not a serialized database");
+
+        final byte[] modeless = ByteBuffer.allocate(32).put(new byte[]{'C', '4', 'J', 'D'}).putInt(0).putInt(0).array();
+
+        assertThatExceptionOfType(HyperscanException.class)
+                .isThrownBy(() -> HyperscanDatabase.readPlatformInfo(modeless))
+                .withMessageContaining("not a serialized database");
+    }
+}
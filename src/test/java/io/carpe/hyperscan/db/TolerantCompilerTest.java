@@ -0,0 +1,77 @@
+package io.carpe.hyperscan.db;
+
+import io.carpe.hyperscan.wrapper.ChimeraExpression;
+import io.carpe.hyperscan.wrapper.ExpressionValidator;
+import io.carpe.hyperscan.wrapper.HyperscanException;
+import io.carpe.hyperscan.wrapper.Match;
+import io.carpe.hyperscan.wrapper.Scanner;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TolerantCompilerTest {
+
+    @Test
+    void invalidExpressionsAreExcludedAndReported() throws HyperscanException {
+        final ChimeraExpression valid = new ChimeraExpression("penny");
+        final ChimeraExpression unbalanced = new ChimeraExpression("(penny");
+        final ChimeraExpression alsoValid = new ChimeraExpression("really");
+
+        final TolerantCompiler.Result result = new TolerantCompiler()
+                .compile(Arrays.asList(valid, unbalanced, alsoValid));
+
+        assertThat(result.isComplete()).isFalse();
+        assertThat(result.getFailures()).containsOnlyKeys(unbalanced);
+        assertThat(result.getDatabase()).isPresent();
+
+        try (final ChimeraDatabase db = result.getDatabase().get();
+             final Scanner scanner = new Scanner()) {
+            scanner.allocScratch(db);
+
+            final List<Match> matches = scanner.scan(db, "penny? really!");
+            assertThat(matches).extracting(Match::getMatchedExpression).containsExactly(valid, alsoValid);
+        }
+    }
+
+    @Test
+    void bisectionIsolatesEveryFailure() throws HyperscanException {
+        final List<ChimeraExpression> expressions = Arrays.asList(
+                new ChimeraExpression("a"), new ChimeraExpression("(b"), new ChimeraExpression("c"),
+                new ChimeraExpression("d"), new ChimeraExpression("e)"), new ChimeraExpression("f"));
+        final Map<ChimeraExpression, String> failures = new LinkedHashMap<>();
+
+        final List<ChimeraExpression> compilable = new TolerantCompiler(new ExpressionValidator(), 2)
+                .bisect(expressions, failures).getExpressions();
+
+        assertThat(compilable).extracting(ChimeraExpression::getExpression).containsExactly("a", "c", "d", "f");
+        assertThat(failures.keySet()).extracting(ChimeraExpression::getExpression).containsExactlyInAnyOrder("(b", "e)");
+        assertThat(failures.values()).allSatisfy(message -> assertThat(message).isNotEmpty());
+    }
+
+    @Test
+    void expressionsFailingOnlyTogetherAreExcluded() throws HyperscanException {
+        final List<ChimeraExpression> expressions = Arrays.asList(
+                new ChimeraExpression("a"), new ChimeraExpression("b"), new ChimeraExpression("c"),
+                new ChimeraExpression("d"), new ChimeraExpression("e"));
+        final Map<ChimeraExpression, String> failures = new LinkedHashMap<>();
+
+        // "a" and "d" compile on their own but not together
+        final List<ChimeraExpression> compilable = new TolerantCompiler(new ExpressionValidator(), 2)
+                .bisect(expressions, failures, set -> {
+                    final List<String> patterns = set.stream().map(ChimeraExpression::getExpression).collect(Collectors.toList());
+                    if (patterns.contains("a") && patterns.contains("d")) {
+                        throw new CompileErrorException("Resource limit exceeded", set.get(0));
+                    }
+                    return null;
+                }).getExpressions();
+
+        assertThat(compilable).extracting(ChimeraExpression::getExpression).containsExactly("a", "b", "c", "e");
+        assertThat(failures.keySet()).extracting(ChimeraExpression::getExpression).containsExactly("d");
+    }
+}
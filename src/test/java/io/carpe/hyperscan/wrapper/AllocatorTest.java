@@ -0,0 +1,61 @@
+package io.carpe.hyperscan.wrapper;
+
+import com.sun.jna.Pointer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AllocatorTest {
+
+    @Test
+    void trackingAllocatorAlignsAndCounts() {
+        final TrackingAllocator allocator = new TrackingAllocator(64);
+
+        final Pointer first = allocator.allocate(100);
+        final Pointer second = allocator.allocate(1000);
+
+        assertThat(Pointer.nativeValue(first) % 64).isZero();
+        assertThat(Pointer.nativeValue(second) % 64).isZero();
+        assertThat(allocator.getLiveBytes()).isEqualTo(1100);
+
+        // the memory is usable up to its last byte
+        second.setByte(999, (byte) 1);
+
+        allocator.free(second);
+        allocator.free(first);
+
+        assertThat(allocator.getLiveBytes()).isZero();
+        assertThat(allocator.getPeakBytes()).isEqualTo(1100);
+        assertThat(allocator.getAllocationCount()).isEqualTo(2);
+    }
+
+    @Test
+    void arenaReusesChunksOnceEmpty() {
+        final ArenaAllocator arena = new ArenaAllocator(4096);
+        final List<Pointer> streams = new ArrayList<>();
+
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 20; i++) {
+                final Pointer stream = arena.allocate(500);
+                assertThat(Pointer.nativeValue(stream) % 16).isZero();
+                streams.add(stream);
+            }
+
+            streams.forEach(arena::free);
+            streams.clear();
+        }
+
+        // 20 states of 528 bytes with their headers need 3 chunks, which are reused in every round
+        assertThat(arena.getLiveBytes()).isZero();
+        assertThat(arena.getPeakBytes()).isEqualTo(20 * 500);
+        assertThat(arena.getReservedBytes()).isEqualTo(3 * 4096);
+
+        final Pointer large = arena.allocate(10_000);
+        assertThat(arena.getReservedBytes()).isGreaterThan(3 * 4096);
+        arena.free(large);
+        assertThat(arena.getReservedBytes()).isEqualTo(3 * 4096);
+    }
+}
@@ -0,0 +1,70 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.db.ChimeraDatabase;
+import io.carpe.hyperscan.wrapper.flags.ChimeraExpressionFlag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class BatchScannerTest {
+
+    @Test
+    void matchesAreReportedPerInput() throws HyperscanException {
+        final ChimeraExpression expression = new ChimeraExpression("\\d{3}", EnumSet.of(ChimeraExpressionFlag.EXTRACT_MATCHED));
+
+        try (final ChimeraDatabase db = ChimeraDatabase.compile(expression)) {
+            final List<String> inputs = Arrays.asList("abc 123", "", "no digits", "测试 456 789");
+
+            for (final BatchScanner scanner : Arrays.asList(new BatchScanner(), new BatchScanner(1, false))) {
+                scanner.allocScratch(db);
+
+                final List<List<Match>> matches = scanner.scan(db, inputs);
+
+                assertThat(matches).hasSize(4);
+                assertThat(matches.get(0)).extracting(Match::getMatchedString).containsExactly("123");
+                assertThat(matches.get(1)).isEmpty();
+                assertThat(matches.get(2)).isEmpty();
+                // offsets are char indexes like those of Scanner
+                assertThat(matches.get(3)).extracting(Match::getMatchedString).containsExactly("456", "789");
+                assertThat(matches.get(3).get(0).getStartPosition()).isEqualTo(3);
+
+                // without a scratch space the engine fails, so inputs below the minimum width never reach it
+                scanner.close();
+                assertThat(scanner.scan(db, Arrays.asList("12", "", "é"))).allSatisfy(list -> assertThat(list).isEmpty());
+            }
+        }
+    }
+
+    @Test
+    void resultArrayGrowsForInputsWithMoreMatches() throws HyperscanException {
+        final ChimeraExpression expression = new ChimeraExpression("\\d", EnumSet.of(ChimeraExpressionFlag.EXTRACT_MATCHED));
+
+        try (final ChimeraDatabase db = ChimeraDatabase.compile(expression)) {
+            // the first input overflows the array twice, the others fill it up across inputs
+            final List<String> inputs = Arrays.asList("1 2 3 4 5", "", "6 7", "8");
+            final BatchScanner scanner = new BatchScanner(2, true);
+            assumeTrue(scanner.isUsingShim(), "libch4jbatch is not on the library path");
+            scanner.allocScratch(db);
+
+            final List<List<Match>> matches = scanner.scan(db, inputs);
+
+            assertThat(matches).hasSize(4);
+            assertThat(matches.get(0)).extracting(Match::getMatchedString).containsExactly("1", "2", "3", "4", "5");
+            assertThat(matches.get(1)).isEmpty();
+            assertThat(matches.get(2)).extracting(Match::getMatchedString).containsExactly("6", "7");
+            assertThat(matches.get(3)).extracting(Match::getMatchedString).containsExactly("8");
+            assertThat(matches.get(0).get(4).getStartPosition()).isEqualTo(8);
+
+            // the grown array is kept for the next batch
+            assertThat(scanner.scan(db, inputs).get(0)).extracting(Match::getMatchedString)
+                    .containsExactly("1", "2", "3", "4", "5");
+
+            scanner.close();
+        }
+    }
+}
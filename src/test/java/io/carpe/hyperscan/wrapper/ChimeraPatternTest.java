@@ -0,0 +1,111 @@
+package io.carpe.hyperscan.wrapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChimeraPatternTest {
+
+    @Test
+    void findsTheSameMatchesAsJavaRegex() {
+        final String input = "Penny paid 12 pennies, really 345 PENNIES?";
+
+        for (final String regex : Arrays.asList("penn(y|ies)", "\\d+", "[a-z]+ly", "(\\w)\\1")) {
+            assertThat(find(ChimeraPattern.compile(regex, Pattern.CASE_INSENSITIVE).matcher(input)))
+                    .as(regex)
+                    .isEqualTo(find(Pattern.compile(regex, Pattern.CASE_INSENSITIVE).matcher(input)));
+        }
+    }
+
+    @Test
+    void findFromAnIndexBehavesLikeJavaRegex() {
+        for (final String[] regexAndInput : new String[][]{{"a+", "aaa"}, {"pen+y", "penny penny"}, {"\\d{2}", "12345"}}) {
+            final ChimeraMatcher chimera = ChimeraPattern.compile(regexAndInput[0]).matcher(regexAndInput[1]);
+            final Matcher java = Pattern.compile(regexAndInput[0]).matcher(regexAndInput[1]);
+
+            for (int start = 0; start <= regexAndInput[1].length(); start++) {
+                assertThat(chimera.find(start)).as("%s from %d", regexAndInput[0], start).isEqualTo(java.find(start));
+                assertThat(find(chimera)).isEqualTo(find(java));
+            }
+        }
+
+        // the match begins inside the one found from the start
+        final ChimeraMatcher matcher = ChimeraPattern.compile("a+").matcher("aaa");
+        assertThat(matcher.find(1)).isTrue();
+        assertThat(matcher.start()).isEqualTo(1);
+        assertThat(matcher.group()).isEqualTo("aa");
+    }
+
+    @Test
+    void compilingAgainReturnsTheCachedPattern() {
+        assertThat(ChimeraPattern.compile("pen+y")).isSameAs(ChimeraPattern.compile("pen+y"));
+        assertThat(ChimeraPattern.compile("pen+y")).isNotSameAs(ChimeraPattern.compile("pen+y", Pattern.DOTALL));
+    }
+
+    @Test
+    void positionsAreCharIndexes() {
+        final ChimeraMatcher matcher = ChimeraPattern.compile("测试").matcher("a测试b测试");
+
+        assertThat(matcher.find()).isTrue();
+        assertThat(matcher.start()).isEqualTo(1);
+        assertThat(matcher.end()).isEqualTo(3);
+        assertThat(matcher.find(2)).isTrue();
+        assertThat(matcher.start()).isEqualTo(4);
+        assertThat(matcher.group()).isEqualTo("测试");
+        assertThat(matcher.find()).isFalse();
+    }
+
+    @Test
+    void matchesChecksTheWholeInput() {
+        assertThat(ChimeraPattern.matches("\\d{5}", "12345")).isTrue();
+        assertThat(ChimeraPattern.matches("\\d{5}", "123456")).isFalse();
+        assertThat(ChimeraPattern.compile("a.c", Pattern.LITERAL).matcher("a.c").matches()).isTrue();
+        assertThat(ChimeraPattern.compile("a.c", Pattern.LITERAL).matcher("abc").matches()).isFalse();
+        assertThat(ChimeraPattern.compile("a b # comment", Pattern.COMMENTS).matcher("ab").matches()).isTrue();
+    }
+
+    @Test
+    void errorsAreReportedLikeJavaRegex() {
+        assertThatThrownBy(() -> ChimeraPattern.compile("(penny")).isInstanceOf(PatternSyntaxException.class);
+        assertThatThrownBy(() -> ChimeraPattern.compile("penny", Pattern.CANON_EQ))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ChimeraPattern.compile("penny").matcher("penny").group())
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void overlappingMatchesAreDropped() {
+        final Expression expression = new ChimeraExpression("a+");
+        final List<Match> matches = Arrays.asList(
+                new Match(2, 4, expression), new Match(0, 3, expression), new Match(0, 1, expression),
+                new Match(5, 5, expression), new Match(5, 5, expression), new Match(5, 6, expression));
+
+        assertThat(ChimeraMatcher.resolve(matches))
+                .extracting(match -> match.getStartPosition() + "-" + match.getEndPosition())
+                .containsExactly("0-3", "5-6");
+    }
+
+    private static List<String> find(ChimeraMatcher matcher) {
+        final List<String> found = new ArrayList<>();
+        while (matcher.find()) {
+            found.add(matcher.start() + ":" + matcher.group());
+        }
+        return found;
+    }
+
+    private static List<String> find(Matcher matcher) {
+        final List<String> found = new ArrayList<>();
+        while (matcher.find()) {
+            found.add(matcher.start() + ":" + matcher.group());
+        }
+        return found;
+    }
+}
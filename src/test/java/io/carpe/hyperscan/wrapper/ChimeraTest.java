@@ -2,18 +2,24 @@ package io.carpe.hyperscan.wrapper;
 
 import io.carpe.hyperscan.db.ChimeraDatabase;
 import io.carpe.hyperscan.db.CompileErrorException;
+import io.carpe.hyperscan.db.LiteralDatabase;
 import io.carpe.hyperscan.jna.HyperscanLibrary;
 import io.carpe.hyperscan.wrapper.flags.ChimeraExpressionFlag;
 import io.carpe.hyperscan.wrapper.flags.HyperscanExpressionFlag;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatExceptionOfType;
 
 class ChimeraTest {
@@ -119,6 +125,55 @@ class ChimeraTest {
 
     }
 
+    @Test
+    void expressionsCanBeValidatedInBulk() {
+        final ChimeraExpression hyperscanExpression = new ChimeraExpression("penny[!]{1,3}");
+        final ChimeraExpression chimeraExpression = new ChimeraExpression("(\\w+) \\1");
+        final ChimeraExpression invalidExpression = new ChimeraExpression("test\\1");
+        final ExpressionValidator validator = new ExpressionValidator(2);
+
+        final Map<ChimeraExpression, ChimeraExpression.ValidationResult> results =
+                validator.validateAll(Arrays.asList(hyperscanExpression, chimeraExpression, invalidExpression));
+
+        assertThat(results.get(hyperscanExpression).isValidHyperscan()).isTrue();
+        assertThat(results.get(chimeraExpression).isValidHyperscan()).isFalse();
+        assertThat(results.get(chimeraExpression).isValidChimera()).isTrue();
+        assertThat(results.get(invalidExpression).isValid()).isFalse();
+
+        // widths are reported in bytes
+        final ExpressionInfo info = results.get(hyperscanExpression).getExpressionInfo().get();
+        assertThat(info.getMinWidth()).isEqualTo(6);
+        assertThat(info.getMaxWidth()).isEqualTo(8);
+        assertThat(results.get(chimeraExpression).getExpressionInfo()).isEmpty();
+
+        // equal expressions are only validated once
+        validator.validate(new ChimeraExpression("penny[!]{1,3}"));
+        assertThat(validator.getCacheSize()).isEqualTo(3);
+    }
+
+    @Test
+    void inputsShorterThanMinWidthAreSkipped() throws HyperscanException {
+        final LinkedList<ChimeraExpression> expressions = new LinkedList<>();
+        expressions.add(new ChimeraExpression("penny[!]{1,3}"));
+        expressions.add(new ChimeraExpression("(\\w{6}) \\1"));
+
+        try (final ChimeraDatabase db = ChimeraDatabase.compile(expressions);
+             final Scanner scanner = new Scanner()) {
+            // the backreference is only valid for chimera, its prefilter still needs more than 6 bytes
+            assertThat(db.getMinWidth()).isEqualTo(6);
+            assertThat(db.getMaxWidth()).isEqualTo(ExpressionInfo.UNBOUNDED);
+
+            scanner.allocScratch(db);
+            assertThat(scanner.scan(db, "penny!")).hasSize(1);
+
+            // without a scratch space the engine fails, so inputs below the minimum width never reach it
+            scanner.close();
+            assertThat(scanner.scan(db, "penny")).isEmpty();
+            assertThat(scanner.scan(db, "测")).isEmpty();
+            assertThatThrownBy(() -> scanner.scan(db, "测试")).isInstanceOf(HyperscanException.class);
+        }
+    }
+
     @Test
     void infiniteRegex() throws HyperscanException {
         final ChimeraDatabase db = ChimeraDatabase.compile(new ChimeraExpression("a|", EnumSet.of(ChimeraExpressionFlag.SINGLEMATCH)));
@@ -194,4 +249,142 @@ class ChimeraTest {
             assertThat(matches.get(0).getMatchedString()).isNull();
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void literalsAreScannedAlongsideExpressions() throws HyperscanException {
+        final ChimeraExpression expr = new ChimeraExpression("\\d{5}");
+        final List<LiteralExpression> literals = Arrays.asList(
+                new LiteralExpression("a.b"),
+                new LiteralExpression(new byte[]{'x', 0, 'y'}));
+
+        try (ChimeraDatabase db = ChimeraDatabase.compile(expr);
+             LiteralDatabase literalDb = LiteralDatabase.compile(literals)) {
+            final Scanner scanner = new Scanner();
+            scanner.allocScratch(db);
+            scanner.allocScratch(literalDb);
+            final List<Match> matches = scanner.scan(db, literalDb, "axb a.b 12345 x\u0000y");
+
+            assertThat(matches).extracting(Match::getMatchedExpression)
+                    .containsExactly(literals.get(0), expr, literals.get(1));
+            assertThat(matches.get(0).getStartPosition()).isEqualTo(4);
+            assertThat(matches.get(0).getEndPosition()).isEqualTo(7);
+        }
+    }
+
+    @Test
+    void offsetsAreReportedInTheRequestedUnit() throws HyperscanException {
+        final ChimeraExpression expr = new ChimeraExpression("abc", EnumSet.of(ChimeraExpressionFlag.EXTRACT_MATCHED));
+        // "\uD83D\uDE00" is one code point, two UTF-16 chars and four UTF-8 bytes
+        final String input = "测\uD83D\uDE00abc";
+
+        try (ChimeraDatabase db = ChimeraDatabase.compile(expr)) {
+            final Scanner scanner = new Scanner();
+            scanner.allocScratch(db);
+
+            final Match bytes = scanner.scan(db, input, OffsetUnit.BYTES).get(0);
+            final Match chars = scanner.scan(db, input, OffsetUnit.UTF16).get(0);
+            final Match codePoints = scanner.scan(db, input, OffsetUnit.CODE_POINTS).get(0);
+
+            assertThat(bytes.getStartPosition()).isEqualTo(7);
+            assertThat(bytes.getEndPosition()).isEqualTo(10);
+            assertThat(chars.getStartPosition()).isEqualTo(3);
+            assertThat(chars.getEndPosition()).isEqualTo(6);
+            assertThat(codePoints.getStartPosition()).isEqualTo(2);
+            assertThat(codePoints.getEndPosition()).isEqualTo(5);
+            assertThat(Arrays.asList(bytes, chars, codePoints)).extracting(Match::getMatchedString).containsOnly("abc");
+        }
+    }
+
+    @Test
+    void inputsOfChangingSizeAndEncodingReuseTheEncodeBuffer() throws HyperscanException {
+        final ChimeraExpression expr = new ChimeraExpression("end", EnumSet.of(ChimeraExpressionFlag.EXTRACT_MATCHED));
+
+        try (ChimeraDatabase db = ChimeraDatabase.compile(expr)) {
+            final Scanner scanner = new Scanner();
+            scanner.allocScratch(db);
+
+            final String large = new String(new char[10_000]).replace('\0', '测') + "end";
+            assertThat(scanner.scan(db, large)).extracting(Match::getStartPosition).containsExactly(10_000L);
+            // a shorter ASCII input must not see stale bytes of the previous one
+            assertThat(scanner.scan(db, "the end")).extracting(Match::getStartPosition).containsExactly(4L);
+            assertThat(scanner.scan(db, "en")).isEmpty();
+        }
+    }
+
+    @Test
+    void scansStopAtDeadlinesAndCancellation() throws HyperscanException {
+        final ChimeraExpression expr = new ChimeraExpression("a");
+        final String input = new String(new char[1000]).replace('\0', 'a');
+
+        try (ChimeraDatabase db = ChimeraDatabase.compile(expr)) {
+            final Scanner scanner = new Scanner();
+            scanner.allocScratch(db);
+
+            final ScanResult completed = scanner.scan(db, input, Deadline.after(1, TimeUnit.MINUTES));
+            assertThat(completed.getStatus()).isEqualTo(ScanResult.Status.COMPLETED);
+            assertThat(completed.getMatches()).hasSize(1000);
+
+            final ScanResult timedOut = scanner.scan(db, input, Deadline.after(-1, TimeUnit.SECONDS));
+            assertThat(timedOut.getStatus()).isEqualTo(ScanResult.Status.TIMED_OUT);
+            assertThat(timedOut.getMatches()).isEmpty();
+
+            final CancellationToken token = new CancellationToken();
+            token.cancel();
+            assertThat(scanner.scan(db, input, token).getStatus()).isEqualTo(ScanResult.Status.CANCELLED);
+
+            // the scanner is still usable without limits afterwards
+            assertThat(scanner.scan(db, input)).hasSize(1000);
+        }
+    }
+
+    @Test
+    void scansStoppedMidwayKeepTheirPartialMatches() throws Exception {
+        final ChimeraExpression expr = new ChimeraExpression("a");
+        final String input = new String(new char[200_000]).replace('\0', 'a');
+
+        try (ChimeraDatabase db = ChimeraDatabase.compile(expr)) {
+            final Scanner scanner = new Scanner();
+            scanner.allocScratch(db);
+
+            // every match is a callback into Java, so the deadline passes long before the end of the input
+            final ScanResult timedOut = scanner.scan(db, input, Deadline.after(1, TimeUnit.MILLISECONDS));
+            assertThat(timedOut.getStatus()).isEqualTo(ScanResult.Status.TIMED_OUT);
+            assertThat(timedOut.getMatches()).isNotEmpty();
+            assertThat(timedOut.getMatches().size()).isLessThan(input.length());
+            assertThat(timedOut.getMatches()).extracting(Match::getEndPosition).startsWith(1L, 2L, 3L);
+
+            final CancellationToken token = new CancellationToken();
+            final Thread canceller = new Thread(() -> {
+                try {
+                    Thread.sleep(1);
+                } catch (final InterruptedException ignored) {
+                    // cancel right away
+                }
+                token.cancel();
+            });
+            canceller.start();
+
+            final ScanResult cancelled = scanner.scan(db, input, token);
+            canceller.join();
+            assertThat(cancelled.getStatus()).isEqualTo(ScanResult.Status.CANCELLED);
+            assertThat(cancelled.getMatches().size()).isLessThan(input.length());
+        }
+    }
+
+    @Test
+    void expressionsExceedingTheMatchLimitAreReported() throws HyperscanException {
+        // the back reference can only be confirmed by PCRE, which gives up after a single step
+        final ChimeraExpression limited = new ChimeraExpression("(\\w+)\\s\\1");
+
+        try (ChimeraDatabase db = ChimeraDatabase.compile(Collections.singletonList(limited), 1, 1, null)) {
+            final Scanner scanner = new Scanner();
+            scanner.allocScratch(db);
+
+            final ScanResult result = scanner.scan(db, "the penny penny", Deadline.after(1, TimeUnit.MINUTES));
+            // the scan goes on without the expression
+            assertThat(result.getStatus()).isEqualTo(ScanResult.Status.COMPLETED);
+            assertThat(result.getLimitedExpressions()).containsExactly(limited);
+            assertThat(result.getMatches()).isEmpty();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.db.ChimeraDatabase;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileScannerTest {
+
+    @Test
+    void matchesInOverlapsAreReportedOnce() throws IOException {
+        final Path file = Files.createTempFile("chimera4j", ".log");
+
+        try (final ChimeraDatabase db = ChimeraDatabase.compile(new ChimeraExpression("penny"))) {
+            // with 8 byte regions every "penny" is cut by at least one region boundary
+            final StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                content.append("the penny! ");
+            }
+            Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+
+            final List<Match> matches = new FileScanner(4, 8, 16).scanFile(db, file);
+
+            assertThat(matches).hasSize(100);
+            assertThat(matches.stream().map(Match::getStartPosition).distinct().collect(Collectors.toList())).hasSize(100);
+            assertThat(matches.get(99).getStartPosition()).isEqualTo(99 * 11 + 4);
+            assertThat(matches.get(99).getEndPosition()).isEqualTo(99 * 11 + 9);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
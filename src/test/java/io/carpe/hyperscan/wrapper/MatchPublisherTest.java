@@ -0,0 +1,85 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.db.ChimeraDatabase;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MatchPublisherTest {
+
+    @Test
+    void scanWaitsForDemand() throws Exception {
+        try (final ChimeraDatabase db = ChimeraDatabase.compile(new ChimeraExpression("a"))) {
+            final ByteBuffer input = ByteBuffer.wrap(new String(new char[10_000]).replace('\0', 'a').getBytes(StandardCharsets.UTF_8));
+            final RecordingSubscriber subscriber = new RecordingSubscriber(3);
+
+            MatchPublisher.of(db, input).subscribe(subscriber);
+
+            assertThat(subscriber.received.await(10, TimeUnit.SECONDS)).isTrue();
+            // nothing beyond the requested matches has been delivered or buffered
+            Thread.sleep(100);
+            assertThat(subscriber.matches).hasSize(3);
+
+            subscriber.subscription.cancel();
+            assertThat(subscriber.done.await(100, TimeUnit.MILLISECONDS)).isFalse();
+        }
+    }
+
+    @Test
+    void completesOnceAllMatchesAreDelivered() throws Exception {
+        try (final ChimeraDatabase db = ChimeraDatabase.compile(new ChimeraExpression("test"))) {
+            final ByteBuffer input = ByteBuffer.wrap("test test test".getBytes(StandardCharsets.UTF_8));
+            final RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+
+            MatchPublisher.of(db, input).subscribe(subscriber);
+
+            assertThat(subscriber.done.await(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(subscriber.error).isNull();
+            assertThat(subscriber.matches).extracting(Match::getEndPosition).containsExactly(4L, 9L, 14L);
+        }
+    }
+
+    private static class RecordingSubscriber implements MatchPublisher.Subscriber<Match> {
+        private final long requested;
+        private final List<Match> matches = new CopyOnWriteArrayList<>();
+        private final CountDownLatch received;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile MatchPublisher.Subscription subscription;
+        private volatile Throwable error;
+
+        private RecordingSubscriber(long requested) {
+            this.requested = requested;
+            this.received = new CountDownLatch((int) Math.min(requested, Integer.MAX_VALUE));
+        }
+
+        @Override
+        public void onSubscribe(MatchPublisher.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(requested);
+        }
+
+        @Override
+        public void onNext(Match item) {
+            matches.add(item);
+            received.countDown();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package io.carpe.hyperscan.wrapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PatternAnalyzerTest {
+
+    @Test
+    void everyExpressionIsReported() throws HyperscanException {
+        final ChimeraExpression literal = new ChimeraExpression("penny");
+        final ChimeraExpression repetition = new ChimeraExpression("[a-z]{20,200}x");
+        final ChimeraExpression backReference = new ChimeraExpression("(a)\\1");
+        final ChimeraExpression unbalanced = new ChimeraExpression("(penny");
+
+        final PatternAnalyzer.Analysis analysis = new PatternAnalyzer(2, 1).analyze(
+                Arrays.asList(literal, repetition, backReference, unbalanced),
+                Arrays.asList("penny is really aa", "no match here"));
+
+        assertThat(analysis.getDatabaseSize()).isPositive();
+        assertThat(analysis.getScanNanos()).isPositive();
+        assertThat(analysis.getReports()).extracting(PatternAnalyzer.Report::getExpression)
+                .containsExactlyInAnyOrder(literal, repetition, backReference, unbalanced);
+
+        for (final PatternAnalyzer.Report report : analysis.getReports()) {
+            if (report.getExpression() == unbalanced) {
+                assertThat(report.getError()).isPresent();
+                continue;
+            }
+
+            assertThat(report.getError()).isEmpty();
+            assertThat(report.getCompileNanos()).isPositive();
+
+            if (report.getExpression() == literal) {
+                assertThat(report.isChimeraOnly()).isFalse();
+                assertThat(report.getMinWidth()).isEqualTo(5);
+                assertThat(report.getMaxWidth()).isEqualTo(5);
+            } else if (report.getExpression() == backReference) {
+                assertThat(report.isChimeraOnly()).isTrue();
+            }
+        }
+    }
+
+    @Test
+    void singleExpressionContributesTheWholeDatabase() throws HyperscanException {
+        final PatternAnalyzer.Analysis analysis = new PatternAnalyzer(1, 1)
+                .analyze(Collections.singletonList(new ChimeraExpression("penny")), Collections.emptyList());
+
+        assertThat(analysis.getScanNanos()).isZero();
+        assertThat(analysis.getReports()).hasSize(1);
+        assertThat(analysis.getReports().get(0).getSizeContribution()).isEqualTo(analysis.getDatabaseSize());
+    }
+
+    @Test
+    void invalidSettingsAreRejected() {
+        assertThatThrownBy(() -> new PatternAnalyzer(0, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new PatternAnalyzer(1, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
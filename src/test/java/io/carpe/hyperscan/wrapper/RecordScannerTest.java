@@ -0,0 +1,71 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.db.ChimeraDatabase;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecordScannerTest {
+    private static final String LOG = "INFO started\nWARN disk low\nINFO ok\nERROR disk full\nINFO ok\nERROR disk gone\n";
+
+    @Test
+    void delimiterIndexFindsEveryDelimiter() {
+        final ByteBuffer buffer = ByteBuffer.wrap(LOG.getBytes(StandardCharsets.UTF_8));
+        final DelimiterIndex index = new DelimiterIndex((byte) '\n');
+        index.build(buffer, 0, buffer.limit());
+
+        assertThat(index.getDelimiterCount()).isEqualTo(6);
+        assertThat(index.delimiterAt(0)).isEqualTo(12);
+        assertThat(index.lastDelimiter()).isEqualTo(LOG.length() - 1);
+        assertThat(index.delimitersBefore(13)).isEqualTo(1);
+        assertThat(index.newlinesBefore(13)).isEqualTo(1);
+    }
+
+    @Test
+    void customDelimitersStillCountLines() {
+        final ByteBuffer buffer = ByteBuffer.wrap("a;b\nc;d\ne".getBytes(StandardCharsets.UTF_8));
+        final DelimiterIndex index = new DelimiterIndex((byte) ';');
+        index.build(buffer, 0, buffer.limit());
+
+        assertThat(index.getDelimiterCount()).isEqualTo(2);
+        assertThat(index.getNewlineCount()).isEqualTo(2);
+        assertThat(index.newlinesBefore(6)).isEqualTo(1);
+    }
+
+    @Test
+    void matchesAreMappedToRecords() throws IOException {
+        try (final ChimeraDatabase db = ChimeraDatabase.compile(new ChimeraExpression("ERROR disk \\w+"));
+             final RecordScanner scanner = new RecordScanner((byte) '\n', 32)) {
+            scanner.allocScratch(db);
+
+            final List<RecordMatch> matches = scanner.scan(db, new ByteArrayInputStream(LOG.getBytes(StandardCharsets.UTF_8)));
+
+            assertThat(matches).hasSize(2);
+            assertThat(matches.get(0).getRecordIndex()).isEqualTo(3);
+            assertThat(matches.get(0).getLineNumber()).isEqualTo(4);
+            assertThat(matches.get(0).getRecordOffset()).isEqualTo(0);
+            assertThat(matches.get(0).getStartPosition()).isEqualTo(LOG.indexOf("ERROR"));
+            assertThat(matches.get(1).getRecordIndex()).isEqualTo(5);
+            assertThat(matches.get(1).getLineNumber()).isEqualTo(6);
+        }
+    }
+
+    @Test
+    void matchesSpanningRecordsAreDropped() throws IOException {
+        try (final ChimeraDatabase db = ChimeraDatabase.compile(new ChimeraExpression("ok\\sERROR|low"));
+             final RecordScanner scanner = new RecordScanner()) {
+            scanner.allocScratch(db);
+
+            final List<RecordMatch> matches = scanner.scan(db, new ByteArrayInputStream(LOG.getBytes(StandardCharsets.UTF_8)));
+
+            assertThat(matches).hasSize(1);
+            assertThat(matches.get(0).getRecordIndex()).isEqualTo(1);
+        }
+    }
+}
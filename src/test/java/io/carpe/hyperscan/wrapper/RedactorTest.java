@@ -0,0 +1,58 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.db.ChimeraDatabase;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RedactorTest {
+
+    @Test
+    void overlappingMatchesAreResolvedByPolicy() throws HyperscanException {
+        final ChimeraExpression phone = new ChimeraExpression("\\d{3}-\\d{4}", (Object) 1);
+        final ChimeraExpression digits = new ChimeraExpression("\\d+", (Object) 2);
+
+        try (final ChimeraDatabase db = ChimeraDatabase.compile(Arrays.asList(phone, digits));
+             final Scanner scanner = new Scanner()) {
+            scanner.allocScratch(db);
+
+            final String input = "call 555-1234 or 测试 now";
+            // shows which expression won
+            final Redactor.Replacer priority = match -> "[" + match.getMatchedExpression().getContext() + "]";
+
+            assertThat(new Redactor(scanner, Redactor.OverlapPolicy.LEFTMOST_LONGEST)
+                    .redact(db, input, priority))
+                    .isEqualTo("call [1] or 测试 now");
+            assertThat(new Redactor(scanner, Redactor.OverlapPolicy.PRIORITY)
+                    .redact(db, input, priority))
+                    .isEqualTo("call [2]-[2] or 测试 now");
+            assertThat(new Redactor(scanner, Redactor.OverlapPolicy.PRIORITY)
+                    .redact(db, input, Redactor.Replacer.mask('#')))
+                    .isEqualTo("call ###-#### or 测试 now");
+            assertThat(new Redactor(scanner, Redactor.OverlapPolicy.PRIORITY)
+                    .redact(db, "nothing here", Redactor.Replacer.with("x")))
+                    .isEqualTo("nothing here");
+        }
+    }
+
+    @Test
+    void buffersAreRedactedWithoutDecoding() throws HyperscanException {
+        try (final ChimeraDatabase db = ChimeraDatabase.compile(new ChimeraExpression("secret"));
+             final Scanner scanner = new Scanner()) {
+            scanner.allocScratch(db);
+
+            final ByteBuffer input = ByteBuffer.wrap("测试 secret, secret!".getBytes(StandardCharsets.UTF_8));
+            input.position(3);
+
+            final ByteBuffer output = new Redactor(scanner, Redactor.OverlapPolicy.LEFTMOST_LONGEST)
+                    .redact(db, input, Redactor.Replacer.with("█"));
+
+            assertThat(input.position()).isEqualTo(3);
+            assertThat(StandardCharsets.UTF_8.decode(output).toString()).isEqualTo("试 █, █!");
+        }
+    }
+}
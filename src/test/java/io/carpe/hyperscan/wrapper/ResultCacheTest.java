@@ -0,0 +1,82 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.db.ChimeraDatabase;
+import io.carpe.hyperscan.wrapper.flags.ChimeraExpressionFlag;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResultCacheTest {
+
+    @Test
+    void repeatedInputsAreAnsweredFromTheCache() throws HyperscanException {
+        final ChimeraExpression expression = new ChimeraExpression("\\d+", EnumSet.of(ChimeraExpressionFlag.EXTRACT_MATCHED));
+        final ResultCache cache = new ResultCache(100, 1024 * 1024);
+
+        try (final ChimeraDatabase db = ChimeraDatabase.compile(expression);
+             final Scanner scanner = new Scanner()) {
+            scanner.allocScratch(db);
+
+            final List<Match> scanned = cache.scan(scanner, db, "order 12345 shipped");
+            final List<Match> cached = cache.scan(scanner, db, "order 12345 shipped");
+
+            assertThat(cache.getMisses()).isEqualTo(1);
+            assertThat(cache.getHits()).isEqualTo(1);
+            assertThat(cached).extracting(Match::getMatchedString).containsExactly("12345");
+            assertThat(scanned).extracting(Match::getMatchedString).containsExactly("12345");
+            assertThat(cached.get(0).getMatchedExpression()).isSameAs(expression);
+            assertThat(cached.get(0).getEndPosition()).isEqualTo(scanned.get(0).getEndPosition());
+        }
+
+        // closing the database drops its results
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getWeight()).isZero();
+    }
+
+    @Test
+    void resultsOfDatabasesClosedDuringTheScanAreDropped() throws HyperscanException {
+        final ResultCache cache = new ResultCache(100, 1024 * 1024);
+        final ChimeraDatabase db = ChimeraDatabase.compile(new ChimeraExpression("\\d+"));
+
+        try (final Scanner scanner = new Scanner() {
+            @Override
+            public List<Match> scan(ChimeraDatabase scanned, String input) throws HyperscanException {
+                final List<Match> matches = super.scan(scanned, input);
+                scanned.close();
+                return matches;
+            }
+        }) {
+            scanner.allocScratch(db);
+
+            assertThat(cache.scan(scanner, db, "order 12345 shipped")).hasSize(1);
+            assertThat(cache.size()).isZero();
+            assertThat(cache.getWeight()).isZero();
+        }
+    }
+
+    @Test
+    void leastRecentlyUsedResultsAreEvicted() throws HyperscanException {
+        final ResultCache cache = new ResultCache(2, 1024 * 1024);
+
+        try (final ChimeraDatabase db = ChimeraDatabase.compile(new ChimeraExpression("a"));
+             final Scanner scanner = new Scanner()) {
+            scanner.allocScratch(db);
+
+            cache.scan(scanner, db, "a");
+            cache.scan(scanner, db, "aa");
+            cache.scan(scanner, db, "a");
+            cache.scan(scanner, db, "aaa");
+
+            assertThat(cache.size()).isEqualTo(2);
+
+            // "aa" has been evicted, "a" is still cached
+            cache.scan(scanner, db, "a");
+            assertThat(cache.getHits()).isEqualTo(2);
+            cache.scan(scanner, db, "aa");
+            assertThat(cache.getMisses()).isEqualTo(4);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.db.HyperscanDatabase;
+import io.carpe.hyperscan.wrapper.flags.HyperscanExpressionFlag;
+import io.carpe.hyperscan.wrapper.flags.HyperscanModeFlag;
+import io.carpe.hyperscan.wrapper.flags.SomHorizon;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatExceptionOfType;
+
+class StreamScannerTest {
+
+    @Test
+    void matchesAcrossChunkBoundariesHaveAbsoluteOffsets() throws IOException {
+        final HyperscanExpression expression = new HyperscanExpression("penny", EnumSet.of(HyperscanExpressionFlag.SOM_LEFTMOST));
+
+        try (final HyperscanDatabase db = HyperscanDatabase.compile(Collections.singletonList(expression),
+                HyperscanModeFlag.STREAM, SomHorizon.SMALL, null);
+             final StreamScanner scanner = new StreamScanner(16)) {
+            scanner.allocScratch(db);
+
+            // the first "penny" spans bytes 14 to 19, across the end of the first 16 byte chunk
+            final String input = "i really like penny! the penny!";
+            final List<Match> matches = scanner.scan(db, new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+
+            assertThat(matches).hasSize(2);
+            assertThat(matches.get(0).getStartPosition()).isEqualTo(14);
+            assertThat(matches.get(0).getEndPosition()).isEqualTo(19);
+            assertThat(matches.get(1).getStartPosition()).isEqualTo(25);
+            assertThat(matches.get(1).getEndPosition()).isEqualTo(30);
+        }
+    }
+
+    @Test
+    void readerIsEncodedIncrementally() throws IOException {
+        final HyperscanExpression expression = new HyperscanExpression("测试$", EnumSet.of(HyperscanExpressionFlag.UTF8));
+
+        try (final HyperscanDatabase db = HyperscanDatabase.compile(expression, HyperscanModeFlag.STREAM);
+             final StreamScanner scanner = new StreamScanner(16)) {
+            scanner.allocScratch(db);
+
+            final List<Match> matches = scanner.scan(db, new StringReader("这是一个测试这是一个测试"), StandardCharsets.UTF_8);
+
+            // only the match at the end of the input is reported, offsets are in bytes
+            assertThat(matches).hasSize(1);
+            assertThat(matches.get(0).getEndPosition()).isEqualTo(36);
+        }
+    }
+
+    @Test
+    void blockDatabasesAreRejected() throws IOException {
+        try (final HyperscanDatabase db = HyperscanDatabase.compile(new HyperscanExpression("test"), HyperscanModeFlag.BLOCK);
+             final StreamScanner scanner = new StreamScanner()) {
+            scanner.allocScratch(db);
+
+            assertThatExceptionOfType(IllegalArgumentException.class)
+                    .isThrownBy(() -> scanner.scan(db, new ByteArrayInputStream(new byte[0])));
+        }
+    }
+}
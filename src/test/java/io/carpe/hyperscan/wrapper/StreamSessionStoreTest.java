@@ -0,0 +1,124 @@
+package io.carpe.hyperscan.wrapper;
+
+import io.carpe.hyperscan.db.HyperscanDatabase;
+import io.carpe.hyperscan.wrapper.flags.HyperscanModeFlag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StreamSessionStoreTest {
+
+    @Test
+    void matchesSpanSuspendedSessions() throws HyperscanException {
+        try (final HyperscanDatabase db = HyperscanDatabase.compile(new HyperscanExpression("penny"), HyperscanModeFlag.STREAM);
+             final StreamSessionStore<String> store = new StreamSessionStore<>(db, 1)) {
+
+            assertThat(store.scan("a", bytes("the pe"))).isEmpty();
+            assertThat(store.scan("b", bytes("a pen"))).isEmpty();
+
+            // "a" was suspended while "b" used the only stream
+            assertThat(store.getActiveCount()).isEqualTo(1);
+            assertThat(store.getIdleCount()).isEqualTo(1);
+            assertThat(store.getIdleBytes()).isPositive();
+
+            assertThat(store.scan("a", bytes("nny"))).extracting(Match::getEndPosition).containsExactly(9L);
+            assertThat(store.scan("b", bytes("ny!"))).extracting(Match::getEndPosition).containsExactly(7L);
+            assertThat(store.end("a")).isEmpty();
+            assertThat(store.end("unknown")).isEmpty();
+        }
+    }
+
+    @Test
+    void endingIdleSessionsKeepsTheStreamBound() throws HyperscanException {
+        try (final HyperscanDatabase db = HyperscanDatabase.compile(new HyperscanExpression("penny$"), HyperscanModeFlag.STREAM);
+             final StreamSessionStore<String> store = new StreamSessionStore<>(db, 2)) {
+
+            store.scan("a", bytes("pen"));
+            store.scan("b", bytes("pen"));
+            store.scan("c", bytes("pen"));
+            store.scan("d", bytes("pen"));
+            assertThat(store.getIdleCount()).isEqualTo(2);
+
+            // no stream is free, so the idle sessions are expanded into streams of their own
+            assertThat(store.end("a")).isEmpty();
+            assertThat(store.end("b")).isEmpty();
+            assertThat(store.getOpenStreamCount()).isEqualTo(2);
+
+            assertThat(store.end("c")).isEmpty();
+            store.scan("e", bytes("penny"));
+            store.scan("f", bytes("penny"));
+            store.scan("g", bytes("penny"));
+            assertThat(store.getOpenStreamCount()).isEqualTo(2);
+            assertThat(store.end("e")).extracting(Match::getEndPosition).containsExactly(5L);
+        }
+    }
+
+    @Test
+    void evictedSessionsAreSpilled() throws HyperscanException {
+        final Map<String, byte[]> spilled = new HashMap<>();
+        final StreamSessionStore.Spill<String> spill = new StreamSessionStore.Spill<String>() {
+            public void store(String session, byte[] state) {
+                spilled.put(session, state);
+            }
+
+            public byte[] load(String session) {
+                return spilled.remove(session);
+            }
+        };
+
+        try (final HyperscanDatabase db = HyperscanDatabase.compile(new HyperscanExpression("penny$"), HyperscanModeFlag.STREAM);
+             final StreamSessionStore<String> store = new StreamSessionStore<>(db, 1, 0, spill)) {
+
+            store.scan("a", bytes("pen"));
+            store.scan("b", bytes("other"));
+
+            assertThat(store.getIdleCount()).isZero();
+            assertThat(spilled).containsOnlyKeys("a");
+
+            store.scan("a", bytes("ny"));
+            assertThat(spilled).containsOnlyKeys("b");
+            // the end of the input is only known once the session ends
+            assertThat(store.end("a")).extracting(Match::getEndPosition).containsExactly(5L);
+        }
+    }
+
+    @Test
+    void sessionsFailingToResumeKeepTheirState() throws HyperscanException {
+        final Map<String, byte[]> spilled = new HashMap<>();
+        final StreamSessionStore.Spill<String> spill = new StreamSessionStore.Spill<String>() {
+            public void store(String session, byte[] state) {
+                spilled.put(session, state);
+            }
+
+            public byte[] load(String session) {
+                return spilled.remove(session);
+            }
+        };
+        // far too short to be the state of any stream
+        spilled.put("b", new byte[]{1, 2, 3});
+
+        try (final HyperscanDatabase db = HyperscanDatabase.compile(new HyperscanExpression("penny"), HyperscanModeFlag.STREAM);
+             final StreamSessionStore<String> store = new StreamSessionStore<>(db, 1, Long.MAX_VALUE, spill)) {
+
+            store.scan("a", bytes("the pe"));
+
+            assertThatThrownBy(() -> store.scan("b", bytes("nny"))).isInstanceOf(HyperscanException.class);
+            // the stream handed over to "b" is closed, both states are kept
+            assertThat(store.getOpenStreamCount()).isZero();
+            assertThat(store.getIdleCount()).isEqualTo(2);
+
+            assertThat(store.scan("a", bytes("nny"))).extracting(Match::getEndPosition).containsExactly(9L);
+            assertThat(store.getOpenStreamCount()).isEqualTo(1);
+        }
+    }
+
+    private static ByteBuffer bytes(String input) {
+        return ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,38 @@
+package io.carpe.hyperscan.wrapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TieredScannerTest {
+
+    @Test
+    void expressionsHittingMatchLimitsAreMovedOffTheHotPath() throws HyperscanException {
+        final ChimeraExpression cheap = new ChimeraExpression("penny", "cheap");
+        // the lookahead is confirmed by PCRE only, and backtracks exponentially on a run of a's without b
+        final ChimeraExpression expensive = new ChimeraExpression("a(?=(a+)+b)", "expensive");
+
+        final TieredScanner.Options options = new TieredScanner.Options()
+                .withMatchLimits(1000, 1000)
+                .withRebalanceInterval(10, 1, 2)
+                .withSampledSecondary(1.0)
+                .withExecutor(Runnable::run);
+
+        try (final TieredScanner scanner = new TieredScanner(Arrays.asList(cheap, expensive), options)) {
+            final String pathological = new String(new char[30]).replace('\0', 'a') + "c";
+
+            for (int i = 0; i < 20; i++) {
+                scanner.scan(pathological);
+            }
+
+            // expensive in two reviews in a row
+            assertThat(scanner.getSecondaryExpressions()).containsExactly(expensive);
+
+            // matches of the primary database still resolve to the given expressions
+            assertThat(scanner.scan("a penny")).extracting(match -> match.getMatchedExpression().getContext())
+                    .containsExactly("cheap");
+        }
+    }
+}
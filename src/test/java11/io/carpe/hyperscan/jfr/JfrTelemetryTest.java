@@ -0,0 +1,103 @@
+package io.carpe.hyperscan.jfr;
+
+import io.carpe.hyperscan.Telemetry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JfrTelemetryTest {
+
+    @Test
+    void javaElevenRuntimesUseFlightRecorder() {
+        assertThat(Telemetry.get()).isInstanceOf(JfrTelemetry.class);
+    }
+
+    @Test
+    void eventsAreCommittedWithTheirFields() throws IOException {
+        final List<RecordedEvent> events = record(recording -> {
+            recording.enable("io.carpe.hyperscan.Compile");
+            recording.enable("io.carpe.hyperscan.Scan").withThreshold(Duration.ZERO);
+        }, () -> {
+            final Telemetry.Span compile = Telemetry.get().compile(Telemetry.CHIMERA, 3);
+            compile.setDatabaseSize(1024);
+            compile.finish();
+
+            final Telemetry.Span scan = Telemetry.get().scan(Telemetry.HYPERSCAN, 100);
+            assertThat(scan.isRecording()).isTrue();
+            scan.setMatchCount(7);
+            scan.setError(new IllegalStateException("Failed to scan."));
+            scan.finish();
+        });
+
+        assertThat(events).extracting(event -> event.getEventType().getName())
+                .containsExactly("io.carpe.hyperscan.Compile", "io.carpe.hyperscan.Scan");
+
+        final RecordedEvent compile = events.get(0);
+        assertThat(compile.getString("engine")).isEqualTo(Telemetry.CHIMERA);
+        assertThat(compile.getInt("patternCount")).isEqualTo(3);
+        assertThat(compile.getLong("databaseSize")).isEqualTo(1024);
+
+        final RecordedEvent scan = events.get(1);
+        assertThat(scan.getString("engine")).isEqualTo(Telemetry.HYPERSCAN);
+        assertThat(scan.getLong("inputLength")).isEqualTo(100);
+        assertThat(scan.getLong("matchCount")).isEqualTo(7);
+        assertThat(scan.getString("error")).isEqualTo("Failed to scan.");
+    }
+
+    @Test
+    void stringsAreRecordedWithTheirEncodedLength() throws IOException {
+        final List<RecordedEvent> events = record(
+                recording -> recording.enable("io.carpe.hyperscan.Scan").withThreshold(Duration.ZERO),
+                () -> Telemetry.get().scan(Telemetry.CHIMERA, "测试 penny").finish());
+
+        assertThat(events).extracting(event -> event.getLong("inputLength")).containsExactly(12L);
+    }
+
+    @Test
+    void scansFasterThanTheThresholdAreNotCommitted() throws IOException {
+        final List<RecordedEvent> events = record(recording -> recording.enable("io.carpe.hyperscan.Scan"), () -> {
+            // well below the default threshold of 10 ms
+            Telemetry.get().scan(Telemetry.CHIMERA, 1).finish();
+
+            final Telemetry.Span slow = Telemetry.get().scan(Telemetry.CHIMERA, 2);
+            sleep(Duration.ofMillis(20));
+            slow.finish();
+        });
+
+        assertThat(events).extracting(event -> event.getLong("inputLength")).containsExactly(2L);
+    }
+
+    private static List<RecordedEvent> record(Consumer<Recording> settings, Runnable recorded) throws IOException {
+        final Path file = Files.createTempFile("telemetry", ".jfr");
+
+        try (final Recording recording = new Recording()) {
+            settings.accept(recording);
+            recording.start();
+            recorded.run();
+            recording.stop();
+            recording.dump(file);
+
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}